@@ -0,0 +1,367 @@
+package com.googlecode.vkapi.benchmarks;
+
+import java.util.Random;
+
+/**
+ * Generates json responses shaped like the ones returned by vk.com
+ */
+final class Fixtures {
+
+    private static final String[] FIRST_NAMES = { "Алексей", "Мария", "Иван", "Анна", "Дмитрий", "Ольга" };
+    private static final String[] LAST_NAMES = { "Иванов", "Смирнова", "Кузнецов", "Попова", "Соколов" };
+    private static final String[] GROUP_NAMES = { "Путешествия по России", "Музыка 80-х", "Подслушано",
+            "Кулинарные рецепты", "IT новости" };
+    private static final String[] TEXTS = { "Всем привет! Сегодня в 19:00 встреча участников",
+            "Новый выпуск уже на сайте", "", "Опрос: куда поедем летом?\\nПишите в комментариях" };
+    private static final String[] GROUP_TYPES = { "group", "page", "event" };
+    private static final String[] SIZE_TYPES = { "s", "m", "x", "o", "p", "q", "y", "z", "w" };
+
+    private Fixtures() {
+    }
+
+    /**
+     * @param size amount of users
+     * @return response of friends.get with fields from HttpVkApi.USER_FIELDS
+     */
+    public static String users(int size) {
+        Random random = new Random(size);
+        StringBuilder json = new StringBuilder(size * 256);
+        json.append("{\"response\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendUser(json, random, 1000000 + random.nextInt(300000000));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * @param ids of the users
+     * @return response of users.get with fields from HttpVkApi.USER_FIELDS,
+     * with the users in the order of the ids
+     */
+    public static String usersById(int[] ids) {
+        Random random = new Random(ids.length);
+        StringBuilder json = new StringBuilder(ids.length * 256);
+        json.append("{\"response\":[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendUser(json, random, ids[i]);
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static void appendUser(StringBuilder json, Random random, int uid) {
+        json.append("{\"uid\":").append(uid);
+        json.append(",\"first_name\":\"").append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append('"');
+        json.append(",\"last_name\":\"").append(LAST_NAMES[random.nextInt(LAST_NAMES.length)]).append('"');
+        json.append(",\"sex\":").append(1 + random.nextInt(2));
+        if (random.nextInt(10) == 0) {
+            json.append(",\"deactivated\":\"deleted\"");
+        }
+        if (random.nextBoolean()) {
+            json.append(",\"bdate\":\"").append(1 + random.nextInt(28)).append('.').append(1 + random.nextInt(12));
+            json.append('.').append(1960 + random.nextInt(40)).append('"');
+        }
+        json.append(",\"photo_max_orig\":\"https://pp.vk.me/c").append(600000 + random.nextInt(30000));
+        json.append("/v").append(random.nextInt(100000)).append("/").append(Integer.toHexString(uid));
+        json.append("/a").append(Integer.toHexString(random.nextInt())).append(".jpg\"");
+        json.append(",\"photo_100\":\"https://pp.vk.me/c").append(600000 + random.nextInt(30000));
+        json.append("/v").append(random.nextInt(100000)).append("/").append(Integer.toHexString(uid));
+        json.append("/b").append(Integer.toHexString(random.nextInt())).append(".jpg\"");
+        json.append(",\"about\":\"").append(random.nextInt(4) == 0 ? "Люблю путешествия и музыку" : "")
+                .append('"');
+        json.append('}');
+    }
+
+    /**
+     * @param size amount of messages
+     * @return response of wall.get: total count followed by the messages,
+     * some of them with link and photo attachments
+     */
+    public static String wallMessages(int size) {
+        Random random = new Random(size);
+        StringBuilder json = new StringBuilder(size * 320);
+        json.append("{\"response\":[").append(size * 3);
+        for (int i = 0; i < size; i++) {
+            json.append(',');
+            appendWallMessage(json, random, size - i, 1420070400 + random.nextInt(100000000));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * @param totalCount amount of messages on the wall
+     * @param offset of the first message of the page, from the newest one
+     * @param count amount of messages in the page
+     * @return response of wall.get for one page of the wall, where the ids
+     * and the dates decrease from the newest message to the oldest
+     */
+    public static String wallPage(int totalCount, int offset, int count) {
+        Random random = new Random(offset);
+        int end = Math.min(totalCount, offset + count);
+        StringBuilder json = new StringBuilder(Math.max(0, end - offset) * 320 + 32);
+        json.append("{\"response\":[").append(totalCount);
+        for (int i = offset; i < end; i++) {
+            json.append(',');
+            appendWallMessage(json, random, totalCount - i, 1500000000 - i * 3600);
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static void appendWallMessage(StringBuilder json, Random random, int id, int date) {
+        int fromId = -(1 + random.nextInt(100000000));
+        json.append("{\"id\":").append(id);
+        json.append(",\"from_id\":").append(fromId);
+        json.append(",\"to_id\":").append(fromId);
+        json.append(",\"date\":").append(date);
+        json.append(",\"post_type\":\"post\"");
+        json.append(",\"text\":\"").append(TEXTS[random.nextInt(TEXTS.length)]).append('"');
+        if (random.nextInt(3) == 0) {
+            json.append(",\"signer_id\":").append(1000000 + random.nextInt(300000000));
+        }
+        json.append(",\"comments\":{\"count\":").append(random.nextInt(100)).append(",\"can_post\":1}");
+        json.append(",\"likes\":{\"count\":").append(random.nextInt(1000)).append(",\"user_likes\":0}");
+        json.append(",\"reposts\":{\"count\":").append(random.nextInt(50)).append(",\"user_reposted\":0}");
+        if (random.nextBoolean()) {
+            json.append(",\"attachments\":[{\"type\":\"link\",\"link\":{\"url\":\"http://example.com/news/");
+            json.append(random.nextInt(1000000)).append("\",\"title\":\"");
+            json.append(TEXTS[random.nextInt(TEXTS.length)]).append("\",\"description\":\"\"}}");
+            json.append(",{\"type\":\"photo\",\"photo\":{\"pid\":").append(random.nextInt(400000000));
+            json.append(",\"src\":\"").append(photoUrl(random, fromId)).append("\"}}]");
+        }
+        json.append('}');
+    }
+
+    /**
+     * @param size amount of groups
+     * @return response of groups.get with extended=1 and fields from
+     * HttpVkApi.GROUP_FIELDS: total count followed by the groups
+     */
+    public static String groups(int size) {
+        return groups(size, true);
+    }
+
+    /**
+     * @param size amount of groups
+     * @return response of groups.getById: the groups without total count
+     */
+    public static String groupsById(int size) {
+        return groups(size, false);
+    }
+
+    private static String groups(int size, boolean withCount) {
+        Random random = new Random(size);
+        StringBuilder json = new StringBuilder(size * 384);
+        json.append("{\"response\":[");
+        if (withCount) {
+            json.append(size);
+        }
+        for (int i = 0; i < size; i++) {
+            if (withCount || i > 0) {
+                json.append(',');
+            }
+            appendGroup(json, random, 1 + random.nextInt(100000000));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * @param ids of the groups
+     * @return response of groups.getById with group_ids and fields from
+     * HttpVkApi.GROUP_FIELDS, with the groups in the order of the ids
+     */
+    public static String groupsById(long[] ids) {
+        Random random = new Random(ids.length);
+        StringBuilder json = new StringBuilder(ids.length * 384);
+        json.append("{\"response\":[");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendGroup(json, random, ids[i]);
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private static void appendGroup(StringBuilder json, Random random, long gid) {
+        json.append("{\"gid\":").append(gid);
+        json.append(",\"name\":\"").append(GROUP_NAMES[random.nextInt(GROUP_NAMES.length)]).append('"');
+        json.append(",\"screen_name\":\"club").append(gid).append('"');
+        json.append(",\"is_closed\":").append(random.nextInt(3));
+        json.append(",\"type\":\"").append(GROUP_TYPES[random.nextInt(GROUP_TYPES.length)]).append('"');
+        json.append(",\"is_admin\":0,\"is_member\":1");
+        json.append(",\"members_count\":").append(random.nextInt(5000000));
+        json.append(",\"verified\":").append(random.nextInt(20) == 0 ? 1 : 0);
+        json.append(",\"photo\":\"").append(photoUrl(random, gid)).append('"');
+        json.append(",\"photo_medium\":\"").append(photoUrl(random, gid)).append('"');
+        json.append(",\"photo_big\":\"").append(photoUrl(random, gid)).append('"');
+        json.append('}');
+    }
+
+    /**
+     * @param size amount of ids
+     * @return response of friends.getMutual
+     */
+    public static String userIds(int size) {
+        Random random = new Random(size);
+        StringBuilder json = new StringBuilder(size * 10 + 16);
+        json.append("{\"response\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(1 + random.nextInt(300000000));
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * @param targetIds users compared with the source
+     * @param size maximal amount of common friends with each target
+     * @return response of friends.getMutual with target_uids
+     */
+    public static String mutualFriends(int[] targetIds, int size) {
+        Random random = new Random(targetIds.length);
+        StringBuilder json = new StringBuilder(targetIds.length * (size * 10 + 64));
+        json.append("{\"response\":[");
+        for (int i = 0; i < targetIds.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            int count = random.nextInt(size + 1);
+            json.append("{\"id\":").append(targetIds[i]).append(",\"common_friends\":[");
+            for (int j = 0; j < count; j++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                json.append(1 + random.nextInt(300000000));
+            }
+            json.append("],\"common_count\":").append(count).append('}');
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * @param size amount of photos
+     * @return response of photos.get, photos.getProfile or photos.getById
+     */
+    public static String photos(int size) {
+        Random random = new Random(size);
+        int ownerId = 1000000 + random.nextInt(300000000);
+        StringBuilder json = new StringBuilder(size * 640);
+        json.append("{\"response\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"pid\":").append(300000000 + random.nextInt(100000000));
+            json.append(",\"aid\":-6,\"owner_id\":").append(ownerId);
+            json.append(",\"src\":\"").append(photoUrl(random, ownerId)).append('"');
+            json.append(",\"src_big\":\"").append(photoUrl(random, ownerId)).append('"');
+            json.append(",\"src_small\":\"").append(photoUrl(random, ownerId)).append('"');
+            if (random.nextBoolean()) {
+                json.append(",\"src_xbig\":\"").append(photoUrl(random, ownerId)).append('"');
+                json.append(",\"src_xxbig\":\"").append(photoUrl(random, ownerId)).append('"');
+            }
+            json.append(",\"width\":1280,\"height\":960,\"text\":\"\"");
+            json.append(",\"created\":").append(1420070400 + random.nextInt(100000000));
+            json.append(",\"likes\":{\"user_likes\":0,\"count\":").append(random.nextInt(300)).append("}}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * @param size amount of member ids on the page
+     * @return response of groups.getMembers
+     */
+    public static String groupUsers(int size) {
+        Random random = new Random(size);
+        StringBuilder json = new StringBuilder(size * 10 + 64);
+        json.append("{\"response\":{\"count\":").append(size * 4).append(",\"users\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(1 + random.nextInt(300000000));
+        }
+        json.append("]}}");
+        return json.toString();
+    }
+
+    /**
+     * @param size amount of albums
+     * @return response of photos.getAlbums with need_covers=1 and
+     * photo_sizes=1
+     */
+    public static String albums(int size) {
+        Random random = new Random(size);
+        int ownerId = 1000000 + random.nextInt(300000000);
+        StringBuilder json = new StringBuilder(size * 1024);
+        json.append("{\"response\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"aid\":").append(i < 3 ? -6 - i * 9 : 100000000 + random.nextInt(100000000));
+            json.append(",\"thumb_id\":").append(random.nextInt(400000000));
+            json.append(",\"owner_id\":").append(ownerId);
+            json.append(",\"title\":\"").append(TEXTS[random.nextInt(TEXTS.length)]).append('"');
+            json.append(",\"description\":\"\"");
+            json.append(",\"created\":").append(1420070400 + random.nextInt(100000000));
+            json.append(",\"updated\":").append(1420070400 + random.nextInt(100000000));
+            json.append(",\"size\":").append(random.nextInt(500));
+            json.append(",\"sizes\":[");
+            for (int j = 0; j < SIZE_TYPES.length; j++) {
+                if (j > 0) {
+                    json.append(',');
+                }
+                json.append("{\"src\":\"").append(photoUrl(random, ownerId)).append('"');
+                json.append(",\"width\":").append(75 + j * 100).append(",\"height\":").append(50 + j * 70);
+                json.append(",\"type\":\"").append(SIZE_TYPES[j]).append("\"}");
+            }
+            json.append("]}");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * @param size amount of request parameters echoed back in the error
+     * @return error returned by any method
+     */
+    public static String error(int size) {
+        Random random = new Random(size);
+        StringBuilder json = new StringBuilder(size * 48 + 128);
+        json.append("{\"error\":{\"error_code\":5");
+        json.append(",\"error_msg\":\"User authorization failed: invalid access_token (4).\"");
+        json.append(",\"request_params\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"key\":\"param").append(i).append("\",\"value\":\"");
+            json.append(random.nextInt(1000000)).append("\"}");
+        }
+        json.append("]}}");
+        return json.toString();
+    }
+
+    private static String photoUrl(Random random, long ownerId) {
+        return "https://pp.vk.me/c" + (600000 + random.nextInt(30000)) + "/v" + random.nextInt(100000) + "/"
+                + Long.toHexString(ownerId) + "/" + Integer.toHexString(random.nextInt()) + ".jpg";
+    }
+
+}
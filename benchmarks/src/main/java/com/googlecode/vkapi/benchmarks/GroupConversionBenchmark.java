@@ -0,0 +1,54 @@
+package com.googlecode.vkapi.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.vkapi.convert.JsonConverter;
+import com.googlecode.vkapi.domain.group.VkGroup;
+
+/**
+ * Compares streaming conversion of groups.get response with conversion
+ * through the json tree
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupConversionBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    private int size;
+
+    private final JsonConverter converter = JsonConverter.INSTANCE;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        json = Fixtures.groups(size);
+    }
+
+    @Benchmark
+    public List<VkGroup> streaming() {
+        return converter.jsonToVkGroups(json);
+    }
+
+    @Benchmark
+    public List<VkGroup> tree() {
+        return converter.nodeToVkGroups(converter.jsonToResponseNode(json));
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.googlecode.vkapi.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.vkapi.convert.JsonConverter;
+import com.googlecode.vkapi.domain.user.GroupUserIds;
+import com.googlecode.vkapi.domain.user.GroupUsers;
+
+/**
+ * Compares conversion of groups.getMembers page into boxed set and into
+ * primitive ids
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupUsersConversionBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    private int size;
+
+    private final JsonConverter converter = JsonConverter.INSTANCE;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        json = Fixtures.groupUsers(size);
+    }
+
+    @Benchmark
+    public GroupUsers boxed() {
+        return converter.jsonToGroupUsers(json);
+    }
+
+    @Benchmark
+    public GroupUserIds primitive() {
+        return converter.jsonToGroupUserIds(json);
+    }
+
+}
@@ -0,0 +1,239 @@
+package com.googlecode.vkapi.benchmarks;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.googlecode.vkapi.HttpClientConfigBuilder;
+import com.googlecode.vkapi.HttpVkApi;
+import com.googlecode.vkapi.RequestScheduler;
+import com.googlecode.vkapi.WallFiler;
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.metrics.SimpleVkMetrics;
+
+/**
+ * End-to-end load test of {@link HttpVkApi} against {@link MockVkServer}:
+ * requests go through the whole stack, from the pooled http client to the
+ * converters. Each thread authorizes its own token and then calls a mix of
+ * the api methods for the given time. Prints latency percentiles of the
+ * calls, throughput of the calls and of the http requests, and errors.<br>
+ * <br>
+ *
+ * Run with
+ * <code>java -cp target/benchmarks.jar com.googlecode.vkapi.benchmarks.LoadDriver threads=32 seconds=30</code>.
+ * Parameters: threads, seconds, warmup (seconds), size (elements in
+ * collections), latency (ms of the server), errors (share of each of the
+ * errors 5, 6 and 8), rps (rate limit of the server per token), limit (rate
+ * limit of the client per token, 0 for none), metrics (true for printing
+ * the time of each method split by the phases of the requests), coalesce
+ * (true for sharing identical requests in flight)
+ */
+public class LoadDriver {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> params = new HashMap<String, String>();
+        for (String arg : args) {
+            String[] keyValue = arg.split("=", 2);
+            params.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+        }
+
+        int threads = Integer.parseInt(param(params, "threads", "16"));
+        int seconds = Integer.parseInt(param(params, "seconds", "10"));
+        int warmup = Integer.parseInt(param(params, "warmup", "3"));
+        int size = Integer.parseInt(param(params, "size", "100"));
+        long latency = Long.parseLong(param(params, "latency", "20"));
+        double errors = Double.parseDouble(param(params, "errors", "0"));
+        int serverRps = Integer.parseInt(param(params, "rps", "0"));
+        double clientRps = Double.parseDouble(param(params, "limit", "0"));
+        boolean measure = Boolean.parseBoolean(param(params, "metrics", "false"));
+        boolean coalesce = Boolean.parseBoolean(param(params, "coalesce", "false"));
+
+        try (MockVkServer server = new MockVkServer(0, size)) {
+            server.withLatency(latency / 2, latency * 3 / 2).withRateLimit(serverRps);
+            if (errors > 0) {
+                server.withErrorRate(5, errors).withErrorRate(6, errors).withErrorRate(8, errors);
+            }
+            server.start();
+
+            HttpVkApi api = new HttpVkApi("1", "key", "http://localhost/");
+            api.setBaseUris(server.getMethodUri(), server.getOauthUri());
+            api.setHttpClientConfig(HttpClientConfigBuilder.httpClientConfig()
+                    .withMaxConnectionsPerRoute(threads)
+                    .withMaxConnectionsTotal(threads)
+                    .build());
+            api.setRequestScheduler(clientRps > 0
+                    ? new RequestScheduler(clientRps, (int) Math.ceil(clientRps))
+                    : RequestScheduler.unlimited());
+            if (coalesce) {
+                api.enableCoalescing();
+            }
+            SimpleVkMetrics metrics = new SimpleVkMetrics();
+            if (measure) {
+                api.setMetrics(metrics);
+            }
+
+            System.out.println("threads=" + threads + ", seconds=" + seconds + ", size=" + size + ", latency="
+                    + latency + "ms, errors=" + errors + ", server rps=" + serverRps + ", client rps=" + clientRps
+                    + ", coalesce=" + coalesce);
+
+            Worker[] workers = run(api, threads, warmup);
+            report("warmup", workers, warmup);
+            long served = server.getRequestCount();
+            workers = run(api, threads, seconds);
+            report("measurement", workers, seconds);
+
+            // paged methods make several http requests per call
+            served = server.getRequestCount() - served;
+            System.out.printf("server: %d requests, %.1f req/s%n", served, (double) served / seconds);
+
+            System.out.println("pool: " + api.getConnectionPoolStats());
+            System.out.println("retries: " + api.getRetryMetrics());
+            if (measure) {
+                System.out.println("methods, including warmup:");
+                System.out.println(metrics);
+            }
+            api.close();
+        }
+    }
+
+    private static String param(Map<String, String> params, String name, String defaultValue) {
+        return params.containsKey(name) ? params.get(name) : defaultValue;
+    }
+
+    private static Worker[] run(HttpVkApi api, int threads, int seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        CountDownLatch done = new CountDownLatch(threads);
+        Worker[] workers = new Worker[threads];
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(api, "code" + i, deadline, done);
+            Thread thread = new Thread(workers[i], "load-driver-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        return workers;
+    }
+
+    private static void report(String phase, Worker[] workers, int seconds) {
+        long count = 0;
+        for (Worker worker : workers) {
+            count = count + worker.count;
+        }
+
+        long[] latencies = new long[(int) count];
+        int position = 0;
+        Map<String, Integer> errors = new TreeMap<String, Integer>();
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, position, worker.count);
+            position = position + worker.count;
+            for (Map.Entry<String, Integer> error : worker.errors.entrySet()) {
+                Integer previous = errors.get(error.getKey());
+                errors.put(error.getKey(), (previous != null ? previous : 0) + error.getValue());
+            }
+        }
+        Arrays.sort(latencies);
+
+        System.out.printf("%s: %d calls, %.1f calls/s, p50=%.2fms, p90=%.2fms, p99=%.2fms, max=%.2fms%n", phase,
+                count, (double) count / seconds, millis(latencies, 0.50), millis(latencies, 0.90),
+                millis(latencies, 0.99), millis(latencies, 1.0));
+        if (!errors.isEmpty()) {
+            System.out.println(phase + " errors: " + errors);
+        }
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static class Worker implements Runnable {
+        private final HttpVkApi api;
+        private final String code;
+        private final long deadline;
+        private final CountDownLatch done;
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private final Map<String, Integer> errors = new HashMap<String, Integer>();
+
+        Worker(HttpVkApi api, String code, long deadline, CountDownLatch done) {
+            this.api = api;
+            this.code = code;
+            this.deadline = deadline;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                OAuthToken token = api.authUser(code);
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        call(token);
+                    } catch (VkException e) {
+                        error(e);
+                    } catch (RuntimeException e) {
+                        error(e);
+                    }
+                    record(System.nanoTime() - start);
+                }
+            } catch (Exception e) {
+                error(e);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void call(OAuthToken token) throws VkException {
+            switch (ThreadLocalRandom.current().nextInt(8)) {
+                case 0:
+                    api.currentUserInfo(token);
+                    break;
+                case 1:
+                    api.getFriends(token);
+                    break;
+                case 2:
+                    api.getGroups(token, 100);
+                    break;
+                case 3:
+                    api.lastGroupWallMessages(1, WallFiler.ALL, 100, token);
+                    break;
+                case 4:
+                    api.albums(token);
+                    break;
+                case 5:
+                    api.get(token, 1);
+                    break;
+                case 6:
+                    api.mutualFriendIds(1, 2, token);
+                    break;
+                default:
+                    api.groupUserIds(1, token);
+                    break;
+            }
+        }
+
+        private void record(long latency) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = latency;
+        }
+
+        private void error(Exception e) {
+            String name = e.getClass().getSimpleName();
+            Integer previous = errors.get(name);
+            errors.put(name, (previous != null ? previous : 0) + 1);
+        }
+    }
+
+}
@@ -0,0 +1,435 @@
+package com.googlecode.vkapi.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for api.vk.com and oauth.vk.com. Serves generated responses
+ * for all the methods used by vk-sdk, so the whole stack from the http client
+ * to the converters can be load-tested without touching vk.com. Latency,
+ * errors and the rate limit of vk.com can be simulated.<br>
+ * <br>
+ *
+ * Point the api to it with
+ * <code>api.setBaseUris(server.getMethodUri(), server.getOauthUri())</code>
+ */
+public class MockVkServer implements Closeable {
+
+    private static final Pattern EXECUTE_CALL = Pattern.compile("API\\.([a-zA-Z]+\\.[a-zA-Z]+)\\(\\{([^}]*)\\}\\)");
+    private static final Pattern EXECUTE_PARAM = Pattern.compile("\"([^\"]*)\":\"([^\"]*)\"");
+
+    private static final Set<String> PAGED = new HashSet<String>(Arrays.asList("friends.get", "groups.get",
+            "wall.get"));
+
+    private static final Map<Integer, String> ERROR_MESSAGES = new HashMap<Integer, String>();
+    static {
+        ERROR_MESSAGES.put(5, "User authorization failed: invalid access_token.");
+        ERROR_MESSAGES.put(6, "Too many requests per second");
+        ERROR_MESSAGES.put(8, "Invalid request: application is blocked");
+
+        // otherwise the body waits for the ack of the headers, and the
+        // delayed ack adds up to 40ms to the time of reading each response
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "mock-vk-server");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<String, String> responses = new HashMap<String, String>();
+    private final Map<Integer, Double> errorRates = new LinkedHashMap<Integer, Double>();
+    private final Map<String, Window> windows = new ConcurrentHashMap<String, Window>();
+    private final AtomicLong requests = new AtomicLong();
+
+    private volatile long minLatencyMillis;
+    private volatile long maxLatencyMillis;
+    private volatile int requestsPerSecond;
+    private volatile boolean gzip = true;
+    private volatile int groupMembers = 25000;
+    private volatile int wallPosts = -1;
+    private final int size;
+
+    /**
+     * @param port to listen on, 0 for any free port
+     * @param size amount of elements in the collections returned by the
+     * methods, such as friends or albums
+     * @throws IOException if the port can't be bound
+     */
+    public MockVkServer(int port, int size) throws IOException {
+        this.size = size;
+        responses.put("users.get", response(Fixtures.users(1)));
+        responses.put("friends.get", response(Fixtures.users(size)));
+        responses.put("groups.get", response(Fixtures.groups(size)));
+        responses.put("groups.getById", response(Fixtures.groupsById(1)));
+        responses.put("wall.get", response(Fixtures.wallMessages(Math.min(size, 100))));
+        responses.put("friends.getMutual", response(Fixtures.userIds(size)));
+        responses.put("photos.getProfile", response(Fixtures.photos(size)));
+        responses.put("photos.get", response(Fixtures.photos(size)));
+        responses.put("photos.getById", response(Fixtures.photos(size)));
+        responses.put("photos.getAlbums", response(Fixtures.albums(size)));
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/method/", this::handleMethod);
+        server.createContext("/access_token", this::handleAccessToken);
+    }
+
+    /**
+     * Cuts "response" value out of the generated answer, so it can be put
+     * into the answer of "execute"
+     */
+    private static String response(String json) {
+        return json.substring("{\"response\":".length(), json.length() - 1);
+    }
+
+    public MockVkServer start() {
+        server.start();
+        return this;
+    }
+
+    /**
+     * @param minMillis minimal delay before answering
+     * @param maxMillis maximal delay, the actual one is uniformly distributed
+     */
+    public MockVkServer withLatency(long minMillis, long maxMillis) {
+        this.minLatencyMillis = minMillis;
+        this.maxLatencyMillis = Math.max(minMillis, maxMillis);
+        return this;
+    }
+
+    /**
+     * @param errorCode vk.com error code, such as 5, 6 or 8
+     * @param probability share of the requests answered with the error
+     */
+    public synchronized MockVkServer withErrorRate(int errorCode, double probability) {
+        errorRates.put(errorCode, probability);
+        return this;
+    }
+
+    /**
+     * @param requestsPerSecond allowed requests per second for one token,
+     * the rest get error 6 as on vk.com; 0 for no limit
+     */
+    public MockVkServer withRateLimit(int requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        return this;
+    }
+
+    /**
+     * @param gzip whether responses are compressed when the client accepts it
+     */
+    public MockVkServer withGzip(boolean gzip) {
+        this.gzip = gzip;
+        return this;
+    }
+
+    /**
+     * @param groupMembers total amount of members returned by
+     * groups.getMembers page by page
+     */
+    public MockVkServer withGroupMembers(int groupMembers) {
+        this.groupMembers = groupMembers;
+        return this;
+    }
+
+    /**
+     * @param wallPosts total amount of messages on the walls returned by
+     * wall.get page by page; by default each wall is one page of generated
+     * messages
+     */
+    public MockVkServer withWallPosts(int wallPosts) {
+        this.wallPosts = wallPosts;
+        return this;
+    }
+
+    public String getMethodUri() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/method/";
+    }
+
+    public String getOauthUri() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return amount of requests served since the start
+     */
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleAccessToken(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        delay();
+        Map<String, String> params = params(exchange);
+        String code = params.containsKey("code") ? params.get("code") : "code";
+        send(exchange, "{\"access_token\":\"token-" + code + "\",\"expires_in\":86400,\"user_id\":1}");
+    }
+
+    private void handleMethod(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        delay();
+
+        String method = exchange.getRequestURI().getPath().substring("/method/".length());
+        Map<String, String> params = params(exchange);
+
+        String error = error(method, params.get("access_token"));
+        if (error != null) {
+            send(exchange, error);
+            return;
+        }
+
+        if ("execute".equals(method)) {
+            send(exchange, execute(params.get("code")));
+            return;
+        }
+
+        String response = methodResponse(method, params);
+        if (response == null) {
+            send(exchange, errorJson(3, "Unknown method passed", method));
+        } else {
+            send(exchange, "{\"response\":" + response + "}");
+        }
+    }
+
+    private String methodResponse(String method, Map<String, String> params) {
+        if ("groups.getMembers".equals(method)) {
+            return groupMembers(intParam(params, "count", 1000), intParam(params, "offset", 0));
+        }
+        if ("users.get".equals(method) && params.containsKey("uids")) {
+            return usersById(params.get("uids"));
+        }
+        if ("groups.getById".equals(method) && params.containsKey("group_ids")) {
+            return groupsById(params.get("group_ids"));
+        }
+        if ("friends.getMutual".equals(method) && params.containsKey("target_uids")) {
+            return response(Fixtures.mutualFriends(ints(params.get("target_uids")), size));
+        }
+        if ("wall.get".equals(method) && wallPosts >= 0) {
+            return response(Fixtures.wallPage(wallPosts, intParam(params, "offset", 0),
+                    intParam(params, "count", 20)));
+        }
+        if (intParam(params, "offset", 0) > 0 && PAGED.contains(method)) {
+            // the whole collection fits into the first page
+            return "[]";
+        }
+        return responses.get(method);
+    }
+
+    private String execute(String code) {
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\"response\":[");
+        Matcher calls = EXECUTE_CALL.matcher(code != null ? code : "");
+        boolean first = true;
+        while (calls.find()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            Map<String, String> params = new HashMap<String, String>();
+            Matcher param = EXECUTE_PARAM.matcher(calls.group(2));
+            while (param.find()) {
+                params.put(param.group(1), param.group(2));
+            }
+            String response = methodResponse(calls.group(1), params);
+            json.append(response != null ? response : "false");
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    /**
+     * Ids divisible by 1000 are treated as nonexistent and skipped, as vk.com
+     * does for unknown ids
+     */
+    private static String usersById(String uids) {
+        int[] ids = ints(uids);
+        int count = 0;
+        for (int id : ids) {
+            if (id % 1000 != 0) {
+                ids[count++] = id;
+            }
+        }
+        return response(Fixtures.usersById(Arrays.copyOf(ids, count)));
+    }
+
+    /**
+     * Ids divisible by 1000 are skipped the same way as the ones of users
+     */
+    private static String groupsById(String groupIds) {
+        String[] values = groupIds.split(",");
+        long[] ids = new long[values.length];
+        int count = 0;
+        for (String value : values) {
+            long id = Long.parseLong(value);
+            if (id % 1000 != 0) {
+                ids[count++] = id;
+            }
+        }
+        return response(Fixtures.groupsById(Arrays.copyOf(ids, count)));
+    }
+
+    private static int[] ints(String list) {
+        String[] values = list.split(",");
+        int[] result = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = Integer.parseInt(values[i]);
+        }
+        return result;
+    }
+
+    private String groupMembers(int count, int offset) {
+        StringBuilder json = new StringBuilder(count * 10 + 32);
+        json.append("{\"count\":").append(groupMembers).append(",\"users\":[");
+        int end = Math.min(groupMembers, offset + count);
+        for (int id = offset; id < end; id++) {
+            if (id > offset) {
+                json.append(',');
+            }
+            json.append(1000000 + id);
+        }
+        json.append("]}");
+        return json.toString();
+    }
+
+    private String error(String method, String accessToken) {
+        if (requestsPerSecond > 0 && accessToken != null && !windowFor(accessToken).tryAcquire(requestsPerSecond)) {
+            return errorJson(6, ERROR_MESSAGES.get(6), method);
+        }
+
+        double random = ThreadLocalRandom.current().nextDouble();
+        synchronized (this) {
+            for (Map.Entry<Integer, Double> rate : errorRates.entrySet()) {
+                random = random - rate.getValue();
+                if (random < 0) {
+                    int code = rate.getKey();
+                    String message = ERROR_MESSAGES.containsKey(code) ? ERROR_MESSAGES.get(code) : "Unknown error";
+                    return errorJson(code, message, method);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String errorJson(int code, String message, String method) {
+        return "{\"error\":{\"error_code\":" + code + ",\"error_msg\":\"" + message + "\",\"request_params\":"
+                + "[{\"key\":\"oauth\",\"value\":\"1\"},{\"key\":\"method\",\"value\":\"" + method + "\"}]}}";
+    }
+
+    private Window windowFor(String accessToken) {
+        Window window = windows.get(accessToken);
+        if (window == null) {
+            windows.putIfAbsent(accessToken, new Window());
+            window = windows.get(accessToken);
+        }
+        return window;
+    }
+
+    private void delay() {
+        long latency = minLatencyMillis;
+        if (maxLatencyMillis > minLatencyMillis) {
+            latency = ThreadLocalRandom.current().nextLong(minLatencyMillis, maxLatencyMillis + 1);
+        }
+        if (latency > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void send(HttpExchange exchange, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (gzip && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+                out.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<String, String>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return params;
+        }
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq > 0) {
+                params.put(URLDecoder.decode(param.substring(0, eq), "UTF-8"),
+                        URLDecoder.decode(param.substring(eq + 1), "UTF-8"));
+            }
+        }
+        return params;
+    }
+
+    private static int intParam(Map<String, String> params, String name, int defaultValue) {
+        String value = params.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Counts requests of one token within the current second
+     */
+    private static class Window {
+        private long second;
+        private int count;
+
+        synchronized boolean tryAcquire(int limit) {
+            long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+            if (now != second) {
+                second = now;
+                count = 0;
+            }
+            count++;
+            return count <= limit;
+        }
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.googlecode.vkapi.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.vkapi.convert.JsonConverter;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.domain.user.VkUserBatch;
+
+/**
+ * Compares streaming conversion of friends.get response with conversion
+ * through the json tree and with filling the columns of
+ * {@link VkUserBatch}. Run with <code>-prof gc</code> to see the allocation
+ * rate of each path
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserListConversionBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    private int size;
+
+    private final JsonConverter converter = JsonConverter.INSTANCE;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        json = Fixtures.users(size);
+    }
+
+    @Benchmark
+    public List<VkUser> streaming() {
+        return converter.jsonToUserList(json);
+    }
+
+    @Benchmark
+    public VkUserBatch columnar() {
+        return converter.jsonToUserBatch(json);
+    }
+
+    @Benchmark
+    public List<VkUser> tree() {
+        return converter.nodeToUserList(converter.jsonToResponseNode(json));
+    }
+
+}
@@ -0,0 +1,159 @@
+package com.googlecode.vkapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.entity.DeflateDecompressingEntity;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+
+import com.googlecode.vkapi.HttpClientWrapper.ContentHandler;
+import com.googlecode.vkapi.exceptions.VkIOException;
+
+/**
+ * Eases using non-blocking {@link CloseableHttpAsyncClient} for performing
+ * requests to vk.com. A few I/O threads serve all the requests in flight, so
+ * they only receive the responses: the content is handed to the handler on
+ * the given executor, and a large response doesn't hold up the others.
+ * Responses are requested compressed and are decompressed while the handler
+ * reads them
+ *
+ * @see HttpClientWrapper
+ */
+class AsyncHttpClientWrapper implements Closeable {
+
+    private final CloseableHttpAsyncClient httpclient;
+    private final Executor handlers;
+
+    /**
+     * @param ioThreads amount of I/O dispatcher threads
+     * @param maxConnections maximal amount of open connections to vk.com
+     * @param handlers executor the content is handled on
+     */
+    public AsyncHttpClientWrapper(int ioThreads, int maxConnections, Executor handlers) {
+        this(createClient(ioThreads, maxConnections), handlers);
+    }
+
+    AsyncHttpClientWrapper(CloseableHttpAsyncClient httpclient, Executor handlers) {
+        this.httpclient = httpclient;
+        this.handlers = handlers;
+        this.httpclient.start();
+    }
+
+    /**
+     * Executes GET request without blocking. The handler gets the content
+     * when the whole response is received and is called on the executor of
+     * handlers, which also completes the future
+     *
+     * @param uri for the request
+     * @param handler for processing the content
+     * @return future with the result of the handler, completed with
+     * {@link VkIOException} if the request failed
+     */
+    public <T> CompletableFuture<T> executeGet(String uri, final ContentHandler<T> handler) {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+
+        final HttpGet request = new HttpGet(uri);
+        request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip,deflate");
+
+        httpclient.execute(request, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                StatusLine status = response.getStatusLine();
+                if (status.getStatusCode() >= 300) {
+                    failed(new HttpResponseException(status.getStatusCode(), status.getReasonPhrase()));
+                    return;
+                }
+
+                try {
+                    handlers.execute(() -> handle(response));
+                } catch (RejectedExecutionException e) {
+                    failed(e);
+                }
+            }
+
+            /**
+             * The content is already received into memory, so it is read
+             * without I/O
+             */
+            private void handle(HttpResponse response) {
+                try {
+                    result.complete(handler.handle(decompressed(response.getEntity()).getContent()));
+                } catch (Exception e) {
+                    failed(e);
+                }
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                if (ex instanceof IOException) {
+                    result.completeExceptionally(new VkIOException("Request to " + request.getURI().getHost()
+                            + " failed", (IOException) ex));
+                } else {
+                    result.completeExceptionally(ex);
+                }
+            }
+
+            @Override
+            public void cancelled() {
+                result.cancel(false);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Unlike the blocking client, the non-blocking one doesn't decompress
+     * the content by itself
+     */
+    private static HttpEntity decompressed(HttpEntity entity) {
+        Header encoding = entity.getContentEncoding();
+        if (encoding == null) {
+            return entity;
+        }
+
+        String codec = encoding.getValue().trim();
+        if ("gzip".equalsIgnoreCase(codec) || "x-gzip".equalsIgnoreCase(codec)) {
+            return new GzipDecompressingEntity(entity);
+        }
+        if ("deflate".equalsIgnoreCase(codec)) {
+            return new DeflateDecompressingEntity(entity);
+        }
+        return entity;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpclient.close();
+    }
+
+    private static CloseableHttpAsyncClient createClient(int ioThreads, int maxConnections) {
+        try {
+            IOReactorConfig ioReactorConfig = IOReactorConfig.custom().setIoThreadCount(ioThreads).build();
+            return HttpAsyncClients.custom()
+                    .setDefaultIOReactorConfig(ioReactorConfig)
+                    .setSSLStrategy(new SSLIOSessionStrategy(HttpClientWrapper.trustingSslContext()))
+                    .setMaxConnPerRoute(maxConnections)
+                    .setMaxConnTotal(maxConnections)
+                    .build();
+        } catch (Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.googlecode.vkapi;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.photo.VkAlbum;
+import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.exceptions.VkException;
+
+/**
+ * Non-blocking counterpart of {@link VkApi}. Methods return immediately, and
+ * the returned futures are completed when vk.com answers. Errors returned by
+ * vk.com complete the futures exceptionally with the same subclasses of
+ * {@link VkException} as thrown by {@link VkApi}
+ *
+ * @see VkApi
+ * @see HttpAsyncVkApi
+ */
+public interface AsyncVkApi {
+
+    /**
+     * @return auth url, see {@link VkApi#getAuthUri()}
+     */
+    String getAuthUri();
+
+    /**
+     * @see VkApi#authUser(String)
+     */
+    CompletableFuture<OAuthToken> authUser(String code);
+
+    /**
+     * @see VkApi#currentUserInfo(OAuthToken)
+     */
+    CompletableFuture<VkUser> currentUserInfo(OAuthToken authToken);
+
+    /**
+     * @see VkApi#getFriends(OAuthToken)
+     */
+    CompletableFuture<Collection<VkUser>> getFriends(OAuthToken authToken);
+
+    /**
+     * @see VkUsersApi#usersInfo(int[], OAuthToken)
+     */
+    CompletableFuture<List<VkUser>> usersInfo(int[] userIds, OAuthToken authToken);
+
+    /**
+     * @see VkApi#getGroups(OAuthToken, int)
+     */
+    CompletableFuture<Collection<VkGroup>> getGroups(OAuthToken authToken, int count);
+
+    /**
+     * @see VkApi#lastGroupWallMessages(long, WallFiler, OAuthToken)
+     */
+    CompletableFuture<Collection<VkWallMessage>> lastGroupWallMessages(long groupId, WallFiler filter,
+            OAuthToken authToken);
+
+    /**
+     * @see VkApi#lastGroupWallMessages(long, WallFiler, int, OAuthToken)
+     */
+    CompletableFuture<Collection<VkWallMessage>> lastGroupWallMessages(long groupId, WallFiler filter, int limit,
+            OAuthToken authToken);
+
+    /**
+     * @see VkApi#mutualFriends(int, int, OAuthToken)
+     */
+    CompletableFuture<Set<Integer>> mutualFriends(int user1Id, int user2Id, OAuthToken authToken);
+
+    /**
+     * @see VkApi#mutualFriendIds(int, int, OAuthToken)
+     */
+    CompletableFuture<IntIdSet> mutualFriendIds(int user1Id, int user2Id, OAuthToken authToken);
+
+    /**
+     * @see VkApi#mutualFriendIds(int, int[], OAuthToken)
+     */
+    CompletableFuture<Map<Integer, IntIdSet>> mutualFriendIds(int sourceId, int[] targetIds, OAuthToken authToken);
+
+    /**
+     * @see VkApi#groupInfo(long, OAuthToken)
+     */
+    CompletableFuture<VkGroup> groupInfo(long groupId, OAuthToken authToken);
+
+    /**
+     * @see VkApi#groupsInfo(long[], OAuthToken)
+     */
+    CompletableFuture<List<VkGroup>> groupsInfo(long[] groupIds, OAuthToken authToken);
+
+    /**
+     * Extracts all users of the given group. After the first page, the rest of
+     * the pages are requested at once
+     *
+     * @see VkApi#groupUsers(long, OAuthToken)
+     */
+    CompletableFuture<Set<Integer>> groupUsers(long vkGroupId, OAuthToken authToken);
+
+    /**
+     * @see VkApi#groupUserIds(long, OAuthToken)
+     */
+    CompletableFuture<IntIdSet> groupUserIds(long vkGroupId, OAuthToken authToken);
+
+    /**
+     * @see VkApi#currentUserProfilePhotos(OAuthToken)
+     */
+    CompletableFuture<Collection<VkPhoto>> currentUserProfilePhotos(OAuthToken authToken);
+
+    /**
+     * @see VkApi#albums(OAuthToken)
+     */
+    CompletableFuture<Collection<VkAlbum>> albums(OAuthToken authToken);
+
+    /**
+     * @see VkApi#get(OAuthToken, long)
+     */
+    CompletableFuture<Collection<VkPhoto>> get(OAuthToken authToken, long albumId);
+
+    /**
+     * @see VkApi#photosGetById(OAuthToken, long[])
+     */
+    CompletableFuture<Collection<VkPhoto>> photosGetById(OAuthToken authToken, long[] photoIds);
+
+    /**
+     * @see VkApi#photosGetById(OAuthToken, String[])
+     */
+    CompletableFuture<Collection<VkPhoto>> photosGetById(OAuthToken authToken, String[] photoIds);
+
+}
@@ -0,0 +1,270 @@
+package com.googlecode.vkapi;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.convert.ResponseReader;
+import com.googlecode.vkapi.convert.ResponseReaders;
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.photo.VkAlbum;
+import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+
+/**
+ * {@link VkApi} which combines small calls made with the same token from
+ * different threads into one request to vk.com "execute" method, so up to
+ * {@link #MAX_CALLS} calls take one round-trip and one slot of the rate
+ * limit. Each thread still blocks until its own result is ready, and gets
+ * the same result or exception as from {@link HttpVkApi}.<br>
+ * <br>
+ *
+ * Paged methods, such as {@link #groupUsers(long, OAuthToken)}, and
+ * authorization are delegated to the wrapped api as is. The batches are
+ * performed through the wrapped api too, so they go through its http client,
+ * request scheduler, retry policy and metrics, and the users and groups are
+ * read with its compact strings
+ *
+ * @see HttpVkApi
+ */
+public class BatchingVkApi implements VkUsersApi, Closeable {
+
+    /**
+     * Maximal amount of calls combined in one request
+     */
+    public static final int MAX_CALLS = ExecuteBatcher.MAX_CALLS;
+
+    /**
+     * Default time a call waits for other calls to be combined with
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 20;
+
+    private final HttpVkApi api;
+    private final UriCreator uriCreator;
+    private final ExecuteBatcher batcher;
+
+    /**
+     * @param api for performing requests
+     */
+    public BatchingVkApi(HttpVkApi api) {
+        this(api, DEFAULT_WINDOW_MILLIS, MAX_CALLS);
+    }
+
+    /**
+     * @param api for performing requests
+     * @param windowMillis how long a call waits for other calls with the same
+     * token before the request is sent
+     * @param maxCalls amount of calls sent at once without waiting, not more
+     * than {@link #MAX_CALLS}
+     */
+    public BatchingVkApi(HttpVkApi api, long windowMillis, int maxCalls) {
+        Validate.notNull(api, "Expected api not to be null");
+        this.api = api;
+        this.uriCreator = api.getUriCreator();
+        this.batcher = new ExecuteBatcher(api::executeWith, uriCreator, api.getJsonConverter(), windowMillis,
+                maxCalls);
+    }
+
+    @Override
+    public String getAuthUri() {
+        return api.getAuthUri();
+    }
+
+    @Override
+    public OAuthToken authUser(String code) throws VkException {
+        return api.authUser(code);
+    }
+
+    @Override
+    public VkUser currentUserInfo(OAuthToken authToken) throws VkException {
+        String uri = uriCreator.userInfoUri(HttpVkApi.USER_FIELDS, authToken);
+        List<VkUser> result = batched(uri, authToken, api.getUserListReader());
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    /**
+     * Lists longer than one chunk are requested by the wrapped api, split into
+     * chunks
+     */
+    @Override
+    public List<VkGroup> groupsInfo(long[] groupIds, OAuthToken authToken) throws VkException {
+        if (groupIds.length == 0 || groupIds.length > HttpVkApi.GROUPS_BY_ID_CHUNK_SIZE) {
+            return api.groupsInfo(groupIds, authToken);
+        }
+
+        String uri = uriCreator.groupsInfoUri(HttpVkApi.GROUP_FIELDS, groupIds, 0, groupIds.length, authToken);
+        List<VkGroup> groups = batched(uri, authToken, api.getGroupListReader());
+        return HttpVkApi.inOrderOfGroups(groupIds, Collections.singletonList(groups));
+    }
+
+    @Override
+    public Collection<VkUser> getFriends(OAuthToken authToken) throws VkException {
+        String uri = uriCreator.userFriendsUri(HttpVkApi.USER_FIELDS, authToken);
+        return batched(uri, authToken, api.getUserListReader());
+    }
+
+    /**
+     * Lists longer than one chunk are requested by the wrapped api, split into
+     * chunks
+     */
+    @Override
+    public List<VkUser> usersInfo(int[] userIds, OAuthToken authToken) throws VkException {
+        if (userIds.length == 0 || userIds.length > HttpVkApi.USERS_CHUNK_SIZE) {
+            return api.usersInfo(userIds, authToken);
+        }
+
+        String uri = uriCreator.usersInfoUri(HttpVkApi.USER_FIELDS, userIds, 0, userIds.length, authToken);
+        List<VkUser> users = batched(uri, authToken, api.getUserListReader());
+        return HttpVkApi.inOrderOf(userIds, Collections.singletonList(users));
+    }
+
+    @Override
+    public Collection<VkGroup> getGroups(OAuthToken authToken, int count) throws VkException {
+        String uri = uriCreator.userGroupsUri(HttpVkApi.GROUP_FIELDS, authToken, count);
+        return batched(uri, authToken, api.getGroupListReader());
+    }
+
+    @Override
+    public Collection<VkWallMessage> lastGroupWallMessages(long groupId, WallFiler filter, OAuthToken authToken)
+            throws VkException {
+        return lastGroupWallMessages(groupId, filter, 0, authToken);
+    }
+
+    @Override
+    public Collection<VkWallMessage> lastGroupWallMessages(long groupId, WallFiler filter, int limit,
+            OAuthToken authToken) throws VkException {
+        Validate.inclusiveBetween(0, 100, limit, "limit must be between 0 and 100, got %d", limit);
+
+        String uri = uriCreator.groupWallMessages(groupId, filter, limit, authToken);
+        return batched(uri, authToken, ResponseReaders.WALL_MESSAGES);
+    }
+
+    @Override
+    public Set<Integer> mutualFriends(int user1Id, int user2Id, OAuthToken authToken) throws VkException {
+        String uri = uriCreator.mutualFriends(user1Id, user2Id, authToken);
+        return batched(uri, authToken, ResponseReaders.INTEGER_SET);
+    }
+
+    @Override
+    public IntIdSet mutualFriendIds(int user1Id, int user2Id, OAuthToken authToken) throws VkException {
+        String uri = uriCreator.mutualFriends(user1Id, user2Id, authToken);
+        return batched(uri, authToken, ResponseReaders.INT_ID_SET);
+    }
+
+    /**
+     * Targets of more than one request are looked up by the wrapped api
+     */
+    @Override
+    public Map<Integer, IntIdSet> mutualFriendIds(int sourceId, int[] targetIds, OAuthToken authToken)
+            throws VkException {
+        if (targetIds.length == 0 || targetIds.length > HttpVkApi.MUTUAL_TARGETS_CHUNK_SIZE) {
+            return api.mutualFriendIds(sourceId, targetIds, authToken);
+        }
+
+        String uri = uriCreator.mutualFriends(sourceId, targetIds, 0, targetIds.length, authToken);
+        Map<Integer, IntIdSet> result = batched(uri, authToken, ResponseReaders.MUTUAL_FRIENDS);
+        return HttpVkApi.inOrderOfTargets(targetIds, Collections.singletonList(result));
+    }
+
+    @Override
+    public VkGroup groupInfo(long groupId, OAuthToken authToken) throws VkException {
+        String uri = uriCreator.groupInfo(groupId, authToken);
+        List<VkGroup> result = batched(uri, authToken, api.getGroupListReader());
+        return result.isEmpty() ? null : result.get(0);
+    }
+
+    @Override
+    public Set<Integer> groupUsers(long vkGroupId, OAuthToken authToken) throws VkException {
+        return api.groupUsers(vkGroupId, authToken);
+    }
+
+    @Override
+    public IntIdSet groupUserIds(long vkGroupId, OAuthToken authToken) throws VkException {
+        return api.groupUserIds(vkGroupId, authToken);
+    }
+
+    @Override
+    public Collection<VkPhoto> currentUserProfilePhotos(OAuthToken authToken) throws VkException {
+        String uri = uriCreator.photosGetProfile(authToken);
+        return batched(uri, authToken, ResponseReaders.PHOTO_LIST);
+    }
+
+    @Override
+    public Collection<VkAlbum> albums(OAuthToken authToken) throws VkException {
+        String uri = uriCreator.photosGetAlbums(authToken);
+        return batched(uri, authToken, ResponseReaders.ALBUM_LIST);
+    }
+
+    @Override
+    public Collection<VkPhoto> get(OAuthToken authToken, long albumId) throws VkException {
+        String uri = uriCreator.photosGet(authToken, albumId);
+        return batched(uri, authToken, ResponseReaders.PHOTO_LIST);
+    }
+
+    /**
+     * The owner of the photos is remembered by the wrapped api
+     */
+    @Override
+    public Collection<VkPhoto> photosGetById(OAuthToken authToken, long[] photoIds) throws VkException {
+        int owner = api.ownerOf(authToken);
+        String[] photoIdStr = new String[photoIds.length];
+        for (int i = 0; i < photoIdStr.length; i++) {
+            photoIdStr[i] = owner + "_" + photoIds[i];
+        }
+
+        return photosGetById(authToken, photoIdStr);
+    }
+
+    /**
+     * Lists longer than one chunk are requested by the wrapped api, split into
+     * chunks
+     */
+    @Override
+    public Collection<VkPhoto> photosGetById(OAuthToken authToken, String[] photoIds) throws VkException {
+        if (photoIds.length > HttpVkApi.PHOTOS_BY_ID_CHUNK_SIZE) {
+            return api.photosGetById(authToken, photoIds);
+        }
+
+        String uri = uriCreator.photosGetById(authToken, photoIds);
+        return batched(uri, authToken, ResponseReaders.PHOTO_LIST);
+    }
+
+    private <T> T batched(String uri, OAuthToken authToken, ResponseReader<T> reader) throws VkException {
+        CompletableFuture<T> result = batcher.submit(authToken, uri, reader);
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VkException("Interrupted while waiting for the batched request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            VkExceptions.rethrowIfVkException(cause);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Sends the pending calls and stops the threads of the batcher. The
+     * wrapped api stays usable
+     */
+    @Override
+    public void close() {
+        batcher.close();
+    }
+
+}
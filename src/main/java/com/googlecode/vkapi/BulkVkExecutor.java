@@ -0,0 +1,247 @@
+package com.googlecode.vkapi;
+
+import java.io.Closeable;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+
+/**
+ * Runs large amounts of blocking {@link VkApi} calls concurrently, each call
+ * on its own thread. On Java 21 and later the threads are virtual, so tens of
+ * thousands of calls waiting for vk.com take little memory; on older runtimes
+ * a pool of platform threads is used instead.<br>
+ * <br>
+ *
+ * The amount of calls in flight is bounded both in total and per
+ * {@link OAuthToken}. Both permits are taken by the submitting thread, the
+ * permit of the token first, so submitting blocks while the token or the
+ * executor is at its bound. No more threads than the total bound are ever
+ * started, and the calls of a busy token don't take the slots of the other
+ * tokens while waiting. The permits of a token are kept only while it has
+ * calls submitted. The connection pool of the api should be large enough for
+ * the total bound, see
+ * {@link HttpClientConfigBuilder#withMaxConnectionsTotal(int)}
+ */
+public class BulkVkExecutor implements Closeable {
+
+    /**
+     * Blocking call of the api, e.g. <code>api -> api.getFriends(token)</code>
+     */
+    public interface BulkCall<T> {
+        T call(VkApi api) throws VkException;
+    }
+
+    private final VkApi api;
+    private final ExecutorService executor;
+    private final boolean virtual;
+    private final Semaphore total;
+    private final int maxConcurrentPerToken;
+    private final ConcurrentMap<String, TokenPermits> perToken = new ConcurrentHashMap<String, TokenPermits>();
+
+    /**
+     * @param api performing the calls
+     * @param maxConcurrent maximal amount of calls in flight
+     * @param maxConcurrentPerToken maximal amount of calls in flight with one
+     * token
+     */
+    public BulkVkExecutor(VkApi api, int maxConcurrent, int maxConcurrentPerToken) {
+        Validate.notNull(api, "Expected api not to be null");
+        Validate.isTrue(maxConcurrent > 0, "maxConcurrent must be positive, got %d", maxConcurrent);
+        Validate.isTrue(maxConcurrentPerToken > 0, "maxConcurrentPerToken must be positive, got %d",
+                maxConcurrentPerToken);
+        this.api = api;
+        this.total = new Semaphore(maxConcurrent);
+        this.maxConcurrentPerToken = maxConcurrentPerToken;
+
+        ExecutorService virtualExecutor = newVirtualThreadExecutor();
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "vk-bulk");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The library is compiled for Java 8, so virtual threads are looked up
+     * reflectively
+     *
+     * @return executor starting a virtual thread per task, or
+     * <code>null</code> if the runtime has no virtual threads
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            return null;
+        } catch (IllegalAccessException e) {
+            return null;
+        } catch (InvocationTargetException e) {
+            // Java 19 and 20 without --enable-preview
+            return null;
+        }
+    }
+
+    /**
+     * @return <code>true</code> if the calls run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Starts the call, waiting while the amount of calls in flight with the
+     * token or in total is at the bound
+     *
+     * @param authToken the call is performed with, for bounding the calls of
+     * the token
+     * @param call to be performed
+     * @return future completed with the result or with {@link VkException}
+     */
+    public <T> CompletableFuture<T> submit(OAuthToken authToken, BulkCall<T> call) throws VkException {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        final String key = authToken != null ? authToken.getAccessToken() : "";
+        final Semaphore tokenPermits = enter(key);
+
+        try {
+            acquire(tokenPermits);
+        } catch (VkException e) {
+            leave(key);
+            throw e;
+        }
+
+        try {
+            acquire(total);
+        } catch (VkException e) {
+            tokenPermits.release();
+            leave(key);
+            throw e;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    result.complete(call.call(api));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    release(key, tokenPermits);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            release(key, tokenPermits);
+            throw e;
+        }
+
+        return result;
+    }
+
+    private void release(String key, Semaphore tokenPermits) {
+        total.release();
+        tokenPermits.release();
+        leave(key);
+    }
+
+    /**
+     * Performs all the calls concurrently and waits for their completion
+     *
+     * @param authToken the calls are performed with
+     * @param calls to be performed
+     * @return results in the order of the calls
+     * @throws VkException if any of the calls fails with it
+     */
+    public <T> List<T> invokeAll(OAuthToken authToken, List<? extends BulkCall<T>> calls) throws VkException {
+        List<CompletableFuture<T>> futures = new ArrayList<CompletableFuture<T>>(calls.size());
+        for (BulkCall<T> call : calls) {
+            futures.add(submit(authToken, call));
+        }
+
+        List<T> results = new ArrayList<T>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(await(future));
+        }
+        return results;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws VkException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VkException("Interrupted while waiting for bulk calls");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            VkExceptions.rethrowIfVkException(cause);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws VkException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VkException("Interrupted while waiting for a slot for the call");
+        }
+    }
+
+    /**
+     * Registers one more submitted call of the token
+     *
+     * @return permits of the token, created for its first call
+     */
+    private Semaphore enter(String key) {
+        return perToken.compute(key, (ignored, permits) -> {
+            TokenPermits result = permits != null ? permits : new TokenPermits(maxConcurrentPerToken);
+            result.calls++;
+            return result;
+        }).semaphore;
+    }
+
+    /**
+     * Forgets the permits of the token when its last call is done, so tokens
+     * which come and go don't pile up
+     */
+    private void leave(String key) {
+        perToken.computeIfPresent(key, (ignored, permits) -> --permits.calls == 0 ? null : permits);
+    }
+
+    /**
+     * Lets the started calls finish and stops accepting new ones. The api is
+     * not closed
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Changed only within the atomic operations of the map
+     */
+    private static final class TokenPermits {
+        private final Semaphore semaphore;
+        private int calls;
+
+        TokenPermits(int permits) {
+            this.semaphore = new Semaphore(permits);
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.googlecode.vkapi;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Settings of {@link CachingVkApi}: time to live of the results of each
+ * method and the bound of the memory taken by all the results together
+ * 
+ * @see CacheConfigBuilder
+ */
+public final class CacheConfig {
+
+    private final Map<CachedMethod, Long> ttlMillis;
+    private final long maxWeightBytes;
+
+    CacheConfig(Map<CachedMethod, Long> ttlMillis, long maxWeightBytes) {
+        this.ttlMillis = new EnumMap<CachedMethod, Long>(ttlMillis);
+        this.maxWeightBytes = maxWeightBytes;
+    }
+
+    /**
+     * @return settings used when nothing is configured
+     */
+    public static CacheConfig defaults() {
+        return CacheConfigBuilder.cacheConfig().build();
+    }
+
+    /**
+     * @param method cached method
+     * @return time to live of the results of the method, 0 if the method is
+     * not cached
+     */
+    public long getTtlMillis(CachedMethod method) {
+        Long ttl = ttlMillis.get(method);
+        return ttl != null ? ttl : method.getDefaultTtlMillis();
+    }
+
+    /**
+     * @return approximate amount of memory the cached results may take
+     */
+    public long getMaxWeightBytes() {
+        return maxWeightBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheConfig [ttlMillis=" + ttlMillis + ", maxWeightBytes=" + maxWeightBytes + "]";
+    }
+
+}
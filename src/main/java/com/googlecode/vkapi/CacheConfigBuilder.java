@@ -0,0 +1,55 @@
+package com.googlecode.vkapi;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Builder for {@link CacheConfig} class
+ * 
+ * @see CacheConfig
+ */
+public class CacheConfigBuilder {
+
+    public static final long DEFAULT_MAX_WEIGHT_BYTES = 64L * 1024 * 1024;
+
+    private final Map<CachedMethod, Long> ttlMillis = new EnumMap<CachedMethod, Long>(CachedMethod.class);
+    private long maxWeightBytes = DEFAULT_MAX_WEIGHT_BYTES;
+
+    private CacheConfigBuilder() {
+    }
+
+    public static CacheConfigBuilder cacheConfig() {
+        return new CacheConfigBuilder();
+    }
+
+    /**
+     * @param method cached method
+     * @param ttl how long the results of the method are kept, 0 for not
+     * caching the method
+     * @param unit of the ttl
+     */
+    public CacheConfigBuilder withTtl(CachedMethod method, long ttl, TimeUnit unit) {
+        Validate.notNull(method, "Expected method not to be null");
+        Validate.isTrue(ttl >= 0, "ttl must not be negative, got %d", ttl);
+        this.ttlMillis.put(method, unit.toMillis(ttl));
+        return this;
+    }
+
+    /**
+     * @param maxWeightBytes approximate amount of memory the cached results
+     * may take, the least recently used are evicted when it's exceeded
+     */
+    public CacheConfigBuilder withMaxWeightBytes(long maxWeightBytes) {
+        Validate.isTrue(maxWeightBytes > 0, "maxWeightBytes must be positive, got %d", maxWeightBytes);
+        this.maxWeightBytes = maxWeightBytes;
+        return this;
+    }
+
+    public CacheConfig build() {
+        return new CacheConfig(ttlMillis, maxWeightBytes);
+    }
+
+}
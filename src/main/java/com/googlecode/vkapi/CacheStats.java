@@ -0,0 +1,78 @@
+package com.googlecode.vkapi;
+
+/**
+ * Snapshot of the counters of {@link CachingVkApi}
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final int size;
+    private final long weightBytes;
+
+    CacheStats(long hits, long misses, long evictions, long expirations, int size, long weightBytes) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.size = size;
+        this.weightBytes = weightBytes;
+    }
+
+    /**
+     * @return amount of calls answered from the cache
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return amount of calls which went to vk.com
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return amount of results removed for keeping the cache within its
+     * weight
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return amount of results removed because their time to live passed
+     */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /**
+     * @return amount of results in the cache
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return approximate amount of memory taken by the results
+     */
+    public long getWeightBytes() {
+        return weightBytes;
+    }
+
+    public double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStats [hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", expirations="
+                + expirations + ", size=" + size + ", weightBytes=" + weightBytes + "]";
+    }
+
+}
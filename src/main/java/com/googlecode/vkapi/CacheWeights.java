@@ -0,0 +1,107 @@
+package com.googlecode.vkapi;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.photo.VkAlbum;
+import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.VkUser;
+
+/**
+ * Rough estimation of the memory taken by the results of {@link VkApi}. The
+ * numbers are not exact: they only need to keep the cache within the same
+ * order of magnitude as its configured weight
+ */
+final class CacheWeights {
+
+    private static final int OBJECT = 16;
+    private static final int REFERENCE = 8;
+    private static final int BOXED_INTEGER = 16 + REFERENCE;
+    // node with hash, key, value and links, plus its slot in the table
+    private static final int MAP_ENTRY = OBJECT + REFERENCE * 5;
+
+    private CacheWeights() {
+    }
+
+    public static long of(String key, Object value) {
+        return string(key) + REFERENCE + value(value);
+    }
+
+    /**
+     * @param accessToken of the key
+     * @param params of the key, a string or a list of ids
+     * @param value kept under the key
+     */
+    public static long of(String accessToken, Object params, Object value) {
+        return of(accessToken, value) + REFERENCE + value(params);
+    }
+
+    private static long value(Object value) {
+        if (value instanceof String) {
+            return string((String) value);
+        }
+        if (value instanceof Collection) {
+            long weight = OBJECT * 3;
+            for (Object element : (Collection<?>) value) {
+                weight = weight + REFERENCE + OBJECT + value(element);
+            }
+            return weight;
+        }
+        if (value instanceof Map) {
+            long weight = OBJECT * 4;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                weight = weight + MAP_ENTRY + value(entry.getKey()) + value(entry.getValue());
+            }
+            return weight;
+        }
+        if (value instanceof IntIdSet) {
+            return OBJECT * 2 + 4L * ((IntIdSet) value).size();
+        }
+        if (value instanceof Integer) {
+            return BOXED_INTEGER;
+        }
+        if (value instanceof VkUser) {
+            return user((VkUser) value);
+        }
+        if (value instanceof VkGroup) {
+            return group((VkGroup) value);
+        }
+        if (value instanceof VkPhoto) {
+            return photo((VkPhoto) value);
+        }
+        if (value instanceof VkAlbum) {
+            VkAlbum album = (VkAlbum) value;
+            return OBJECT * 2 + string(album.getName()) + (album.getCover() != null ? photo(album.getCover()) : 0);
+        }
+        if (value instanceof VkWallMessage) {
+            VkWallMessage message = (VkWallMessage) value;
+            return OBJECT * 8 + string(message.getText()) + 256L * message.getAttachments().size();
+        }
+        return OBJECT * 8;
+    }
+
+    private static long user(VkUser user) {
+        return OBJECT * 3 + string(user.getFirstName()) + string(user.getLastName()) + string(user.getPhoto())
+                + string(user.getAvatar()) + string(user.getBdate()) + string(user.getAbout());
+    }
+
+    private static long group(VkGroup group) {
+        return OBJECT * 4 + string(group.getGroupName()) + string(group.getScreenName())
+                + string(group.getPhoto()) + string(group.getPhotoMedium()) + string(group.getPhotoBig());
+    }
+
+    private static long photo(VkPhoto photo) {
+        return OBJECT * 3 + string(photo.getUrl3ExtraBig()) + string(photo.getUrl2ExtraBig())
+                + string(photo.getUrlExtraBig()) + string(photo.getUrlBig()) + string(photo.getUrlMedium())
+                + string(photo.getUrlSmall()) + string(photo.getUrlPreviewBig())
+                + string(photo.getUrlPreviewMedium()) + string(photo.getUrlPreviewSmall());
+    }
+
+    private static long string(String value) {
+        return value == null ? 0 : 40 + 2L * value.length();
+    }
+
+}
@@ -0,0 +1,37 @@
+package com.googlecode.vkapi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Methods of {@link VkApi} which results are kept by {@link CachingVkApi},
+ * with default time to live of the results. Methods with zero time to live
+ * are not cached
+ * 
+ * @see CacheConfigBuilder#withTtl(CachedMethod, long, TimeUnit)
+ */
+public enum CachedMethod {
+
+    CURRENT_USER_INFO(TimeUnit.MINUTES.toMillis(10)),
+    FRIENDS(TimeUnit.MINUTES.toMillis(5)),
+    USERS_INFO(TimeUnit.MINUTES.toMillis(10)),
+    GROUPS(TimeUnit.MINUTES.toMillis(5)),
+    GROUP_INFO(TimeUnit.HOURS.toMillis(1)),
+    GROUP_WALL_MESSAGES(0),
+    MUTUAL_FRIENDS(TimeUnit.MINUTES.toMillis(5)),
+    GROUP_USERS(TimeUnit.MINUTES.toMillis(10)),
+    PROFILE_PHOTOS(TimeUnit.MINUTES.toMillis(10)),
+    ALBUMS(TimeUnit.MINUTES.toMillis(10)),
+    ALBUM_PHOTOS(TimeUnit.MINUTES.toMillis(10)),
+    PHOTOS_BY_ID(TimeUnit.MINUTES.toMillis(10));
+
+    private final long defaultTtlMillis;
+
+    private CachedMethod(long defaultTtlMillis) {
+        this.defaultTtlMillis = defaultTtlMillis;
+    }
+
+    public long getDefaultTtlMillis() {
+        return defaultTtlMillis;
+    }
+
+}
@@ -0,0 +1,489 @@
+package com.googlecode.vkapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.photo.VkAlbum;
+import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.exceptions.VkException;
+
+/**
+ * Decorator for {@link VkUsersApi} which keeps the results of the calls in
+ * memory for the time configured for each method, so the repeated calls with
+ * the same parameters and the same token don't go to vk.com. The cache is
+ * bounded by the approximate weight of the results in bytes, and the least
+ * recently used results are evicted first.<br>
+ * <br>
+ *
+ * Errors are not cached. Cached collections are shared between the callers,
+ * so they are returned unmodifiable. A missing result is loaded by one call at
+ * a time, the identical calls wait for it. Bulk methods keep their entities
+ * one by one under the keys of the methods for a single entity, so they only
+ * request the ones not in the cache.
+ *
+ * @see CacheConfigBuilder
+ * @see CachedMethod
+ */
+public class CachingVkApi implements VkUsersApi {
+
+    private final VkUsersApi api;
+    private final CacheConfig config;
+    private final WeightedLruCache<CacheKey, Object> cache;
+    private final ConcurrentMap<CacheKey, CompletableFuture<Object>> loading =
+            new ConcurrentHashMap<CacheKey, CompletableFuture<Object>>();
+
+    /**
+     * @param api to be cached
+     */
+    public CachingVkApi(VkUsersApi api) {
+        this(api, CacheConfig.defaults());
+    }
+
+    /**
+     * @param api to be cached
+     * @param config time to live of the methods and size of the cache
+     */
+    public CachingVkApi(VkUsersApi api, CacheConfig config) {
+        Validate.notNull(api, "Expected api not to be null");
+        Validate.notNull(config, "Expected config not to be null");
+        this.api = api;
+        this.config = config;
+        this.cache = new WeightedLruCache<CacheKey, Object>(config.getMaxWeightBytes());
+    }
+
+    /**
+     * @return hits, misses and evictions since the cache was created
+     */
+    public CacheStats getStats() {
+        return cache.stats();
+    }
+
+    /**
+     * Removes all the results obtained with the token, e.g. after the user
+     * changed something
+     *
+     * @param authToken which results are removed
+     */
+    public void invalidate(OAuthToken authToken) {
+        final String accessToken = authToken.getAccessToken();
+        cache.invalidateIf(key -> key.accessToken.equals(accessToken));
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public String getAuthUri() {
+        return api.getAuthUri();
+    }
+
+    @Override
+    public OAuthToken authUser(String code) throws VkException {
+        return api.authUser(code);
+    }
+
+    @Override
+    public VkUser currentUserInfo(OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.CURRENT_USER_INFO, authToken, "", () -> api.currentUserInfo(authToken));
+    }
+
+    @Override
+    public Collection<VkUser> getFriends(OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.FRIENDS, authToken, "",
+                () -> Collections.unmodifiableCollection(api.getFriends(authToken)));
+    }
+
+    /**
+     * Users are cached one by one, so only the ones not in the cache are
+     * requested
+     */
+    @Override
+    public List<VkUser> usersInfo(int[] userIds, OAuthToken authToken) throws VkException {
+        List<VkUser> users = cachedEach(CachedMethod.USERS_INFO, authToken, "", longs(userIds), ids -> {
+            Map<Long, VkUser> loaded = new HashMap<Long, VkUser>();
+            for (VkUser user : api.usersInfo(ints(ids), authToken)) {
+                loaded.put((long) user.getVkUserId(), user);
+            }
+            return loaded;
+        });
+        return Collections.unmodifiableList(found(users));
+    }
+
+    @Override
+    public Collection<VkGroup> getGroups(OAuthToken authToken, int count) throws VkException {
+        return cached(CachedMethod.GROUPS, authToken, String.valueOf(count),
+                () -> Collections.unmodifiableCollection(api.getGroups(authToken, count)));
+    }
+
+    @Override
+    public Collection<VkWallMessage> lastGroupWallMessages(long groupId, WallFiler filter, OAuthToken authToken)
+            throws VkException {
+        return lastGroupWallMessages(groupId, filter, 0, authToken);
+    }
+
+    @Override
+    public Collection<VkWallMessage> lastGroupWallMessages(long groupId, WallFiler filter, int limit,
+            OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.GROUP_WALL_MESSAGES, authToken, groupId + "," + filter + "," + limit,
+                () -> Collections.unmodifiableCollection(api.lastGroupWallMessages(groupId, filter, limit,
+                        authToken)));
+    }
+
+    @Override
+    public Set<Integer> mutualFriends(int user1Id, int user2Id, OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.MUTUAL_FRIENDS, authToken, user1Id + "," + user2Id,
+                () -> Collections.unmodifiableSet(api.mutualFriends(user1Id, user2Id, authToken)));
+    }
+
+    @Override
+    public IntIdSet mutualFriendIds(int user1Id, int user2Id, OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.MUTUAL_FRIENDS, authToken, "ids," + user1Id + "," + user2Id,
+                () -> api.mutualFriendIds(user1Id, user2Id, authToken));
+    }
+
+    /**
+     * Targets are cached one by one, shared with
+     * {@link #mutualFriendIds(int, int, OAuthToken)}, so only the ones not in
+     * the cache are requested
+     */
+    @Override
+    public Map<Integer, IntIdSet> mutualFriendIds(int sourceId, int[] targetIds, OAuthToken authToken)
+            throws VkException {
+        List<IntIdSet> friends = cachedEach(CachedMethod.MUTUAL_FRIENDS, authToken, "ids," + sourceId + ",",
+                longs(targetIds), ids -> {
+                    Map<Long, IntIdSet> loaded = new HashMap<Long, IntIdSet>();
+                    for (Map.Entry<Integer, IntIdSet> entry : api.mutualFriendIds(sourceId, ints(ids), authToken)
+                            .entrySet()) {
+                        loaded.put((long) entry.getKey(), entry.getValue());
+                    }
+                    return loaded;
+                });
+
+        Map<Integer, IntIdSet> result = new LinkedHashMap<Integer, IntIdSet>(targetIds.length * 4 / 3 + 1);
+        for (int i = 0; i < targetIds.length; i++) {
+            if (friends.get(i) != null) {
+                result.put(targetIds[i], friends.get(i));
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    @Override
+    public VkGroup groupInfo(long groupId, OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.GROUP_INFO, authToken, String.valueOf(groupId),
+                () -> api.groupInfo(groupId, authToken));
+    }
+
+    /**
+     * Groups are cached one by one, shared with
+     * {@link #groupInfo(long, OAuthToken)}, so only the ones not in the cache
+     * are requested
+     */
+    @Override
+    public List<VkGroup> groupsInfo(long[] groupIds, OAuthToken authToken) throws VkException {
+        List<VkGroup> groups = cachedEach(CachedMethod.GROUP_INFO, authToken, "", groupIds, ids -> {
+            Map<Long, VkGroup> loaded = new HashMap<Long, VkGroup>();
+            for (VkGroup group : api.groupsInfo(ids, authToken)) {
+                loaded.put(group.getGroupId(), group);
+            }
+            return loaded;
+        });
+        return Collections.unmodifiableList(found(groups));
+    }
+
+    @Override
+    public Set<Integer> groupUsers(long vkGroupId, OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.GROUP_USERS, authToken, String.valueOf(vkGroupId),
+                () -> Collections.unmodifiableSet(api.groupUsers(vkGroupId, authToken)));
+    }
+
+    @Override
+    public IntIdSet groupUserIds(long vkGroupId, OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.GROUP_USERS, authToken, "ids," + vkGroupId,
+                () -> api.groupUserIds(vkGroupId, authToken));
+    }
+
+    @Override
+    public Collection<VkPhoto> currentUserProfilePhotos(OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.PROFILE_PHOTOS, authToken, "",
+                () -> Collections.unmodifiableCollection(api.currentUserProfilePhotos(authToken)));
+    }
+
+    @Override
+    public Collection<VkAlbum> albums(OAuthToken authToken) throws VkException {
+        return cached(CachedMethod.ALBUMS, authToken, "",
+                () -> Collections.unmodifiableCollection(api.albums(authToken)));
+    }
+
+    @Override
+    public Collection<VkPhoto> get(OAuthToken authToken, long albumId) throws VkException {
+        return cached(CachedMethod.ALBUM_PHOTOS, authToken, String.valueOf(albumId),
+                () -> Collections.unmodifiableCollection(api.get(authToken, albumId)));
+    }
+
+    /**
+     * The owner of the photos is resolved once per token by the wrapped api.
+     * All the photos are of the same owner, so they are cached one by one and
+     * only the ones not in the cache are requested
+     */
+    @Override
+    public Collection<VkPhoto> photosGetById(OAuthToken authToken, long[] photoIds) throws VkException {
+        List<VkPhoto> photos = cachedEach(CachedMethod.PHOTOS_BY_ID, authToken, "own,", photoIds, ids -> {
+            Map<Long, VkPhoto> loaded = new HashMap<Long, VkPhoto>();
+            for (VkPhoto photo : api.photosGetById(authToken, ids)) {
+                loaded.put((long) photo.getPhotoId(), photo);
+            }
+            return loaded;
+        });
+        return Collections.unmodifiableList(found(photos));
+    }
+
+    /**
+     * Photos of different owners can't be told apart by their ids, so the
+     * whole list is cached under the ids compared by content
+     */
+    @Override
+    public Collection<VkPhoto> photosGetById(OAuthToken authToken, String[] photoIds) throws VkException {
+        return cached(CachedMethod.PHOTOS_BY_ID, authToken, Arrays.asList(photoIds.clone()),
+                () -> Collections.unmodifiableCollection(api.photosGetById(authToken, photoIds)));
+    }
+
+    /**
+     * Call of the wrapped api
+     */
+    private interface Load<T> {
+        T load() throws VkException;
+    }
+
+    /**
+     * Bulk call of the wrapped api for the ids missing in the cache
+     */
+    private interface BulkLoad<V> {
+        /**
+         * @param ids to be loaded
+         * @return values by their ids; ids not returned by vk.com are absent
+         */
+        Map<Long, V> load(long[] ids) throws VkException;
+    }
+
+    /**
+     * Loads the value unless it's cached. Only one call loads a missing value
+     * at a time, the identical calls wait for its result
+     *
+     * @param params of the call, compared by their equals
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cached(CachedMethod method, OAuthToken authToken, Object params, Load<T> load)
+            throws VkException {
+        long ttlMillis = config.getTtlMillis(method);
+        if (ttlMillis == 0) {
+            return load.load();
+        }
+
+        CacheKey key = new CacheKey(method, authToken.getAccessToken(), params);
+        Object cachedValue = cache.get(key);
+        if (cachedValue != null) {
+            return (T) cachedValue;
+        }
+
+        CompletableFuture<Object> flight = new CompletableFuture<Object>();
+        CompletableFuture<Object> existing = loading.putIfAbsent(key, flight);
+        if (existing != null) {
+            return (T) await(existing, authToken);
+        }
+
+        try {
+            T value = load.load();
+            store(key, value, ttlMillis);
+            flight.complete(value);
+            return value;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, flight);
+        }
+    }
+
+    /**
+     * Looks each id up under the key of the call for the single id, made of
+     * the prefix and the id, and loads the missing ones with one bulk call.
+     * Ids being loaded by other calls are waited for instead
+     *
+     * @return values in the order of the ids, <code>null</code> for the ids
+     * not returned by vk.com
+     */
+    @SuppressWarnings("unchecked")
+    private <V> List<V> cachedEach(CachedMethod method, OAuthToken authToken, String prefix, long[] ids,
+            BulkLoad<V> load) throws VkException {
+        List<V> result = new ArrayList<V>(ids.length);
+        long ttlMillis = config.getTtlMillis(method);
+        if (ttlMillis == 0) {
+            Map<Long, V> loaded = load.load(ids);
+            for (long id : ids) {
+                result.add(loaded.get(id));
+            }
+            return result;
+        }
+
+        Map<Long, CompletableFuture<Object>> led = new LinkedHashMap<Long, CompletableFuture<Object>>();
+        Map<Integer, CompletableFuture<Object>> waited = new HashMap<Integer, CompletableFuture<Object>>();
+        for (int i = 0; i < ids.length; i++) {
+            CacheKey key = new CacheKey(method, authToken.getAccessToken(), prefix + ids[i]);
+            Object cachedValue = cache.get(key);
+            result.add((V) cachedValue);
+            if (cachedValue != null) {
+                continue;
+            }
+
+            CompletableFuture<Object> flight = led.get(ids[i]);
+            if (flight == null) {
+                CompletableFuture<Object> created = new CompletableFuture<Object>();
+                flight = loading.putIfAbsent(key, created);
+                if (flight == null) {
+                    flight = created;
+                    led.put(ids[i], created);
+                }
+            }
+            waited.put(i, flight);
+        }
+
+        if (!led.isEmpty()) {
+            loadEach(method, authToken, prefix, led, load, ttlMillis);
+        }
+        for (Map.Entry<Integer, CompletableFuture<Object>> entry : waited.entrySet()) {
+            result.set(entry.getKey(), (V) await(entry.getValue(), authToken));
+        }
+        return result;
+    }
+
+    private <V> void loadEach(CachedMethod method, OAuthToken authToken, String prefix,
+            Map<Long, CompletableFuture<Object>> led, BulkLoad<V> load, long ttlMillis) throws VkException {
+        long[] ids = new long[led.size()];
+        int count = 0;
+        for (long id : led.keySet()) {
+            ids[count++] = id;
+        }
+
+        try {
+            Map<Long, V> loaded = load.load(ids);
+            for (Map.Entry<Long, CompletableFuture<Object>> entry : led.entrySet()) {
+                V value = loaded.get(entry.getKey());
+                store(new CacheKey(method, authToken.getAccessToken(), prefix + entry.getKey()), value, ttlMillis);
+                entry.getValue().complete(value);
+            }
+        } catch (Throwable e) {
+            for (CompletableFuture<Object> flight : led.values()) {
+                flight.completeExceptionally(e);
+            }
+            throw e;
+        } finally {
+            for (Map.Entry<Long, CompletableFuture<Object>> entry : led.entrySet()) {
+                loading.remove(new CacheKey(method, authToken.getAccessToken(), prefix + entry.getKey()),
+                        entry.getValue());
+            }
+        }
+    }
+
+    private void store(CacheKey key, Object value, long ttlMillis) {
+        if (value != null) {
+            cache.put(key, value, CacheWeights.of(key.accessToken, key.params, value), ttlMillis);
+        }
+    }
+
+    /**
+     * Waits for the value loaded by another call with the same token
+     */
+    private static Object await(CompletableFuture<Object> flight, OAuthToken authToken) throws VkException {
+        try {
+            return flight.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VkException("Interrupted while waiting for the value to be loaded");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw RequestCoalescer.forWaiter(cause, authToken);
+        }
+    }
+
+    private static long[] longs(int[] ids) {
+        long[] result = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = ids[i];
+        }
+        return result;
+    }
+
+    private static int[] ints(long[] ids) {
+        int[] result = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = (int) ids[i];
+        }
+        return result;
+    }
+
+    /**
+     * @return the values without the ones not returned by vk.com
+     */
+    private static <V> List<V> found(List<V> values) {
+        List<V> result = new ArrayList<V>(values.size());
+        for (V value : values) {
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    private static final class CacheKey {
+        private final CachedMethod method;
+        private final String accessToken;
+        private final Object params;
+
+        CacheKey(CachedMethod method, String accessToken, Object params) {
+            this.method = method;
+            this.accessToken = accessToken;
+            this.params = params;
+        }
+
+        @Override
+        public int hashCode() {
+            return (method.hashCode() * 31 + accessToken.hashCode()) * 31 + params.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return method == other.method && accessToken.equals(other.accessToken) && params.equals(other.params);
+        }
+    }
+
+}
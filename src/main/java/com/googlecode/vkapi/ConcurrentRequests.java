@@ -0,0 +1,155 @@
+package com.googlecode.vkapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+
+/**
+ * Runs independent requests to vk.com on an executor, never letting more than
+ * a fixed amount of them be in flight for one {@link OAuthToken} at once.
+ * Permits are taken by the submitting thread, so tasks over the cap wait
+ * before submission and never occupy threads of the executor. A permit is
+ * returned when its task actually finishes, or when the task is cancelled
+ * before it starts, so a failed call doesn't let the next one exceed the cap
+ * while its other requests are still in flight
+ */
+class ConcurrentRequests {
+
+    private final ExecutorService executor;
+    private final int maxRequestsPerToken;
+    private final ConcurrentMap<String, TokenPermits> perToken = new ConcurrentHashMap<String, TokenPermits>();
+
+    ConcurrentRequests(ExecutorService executor, int maxRequestsPerToken) {
+        Validate.notNull(executor, "Expected executor not to be null");
+        Validate.isTrue(maxRequestsPerToken > 0, "maxRequestsPerToken must be positive, got %d", maxRequestsPerToken);
+        this.executor = executor;
+        this.maxRequestsPerToken = maxRequestsPerToken;
+    }
+
+    /**
+     * Executes all the tasks concurrently and waits for their completion
+     *
+     * @param authToken the tasks are performed with
+     * @param tasks to be executed
+     * @return results of the tasks in the same order as the tasks
+     * @throws VkException if any of the tasks fails with it
+     */
+    public <T> List<T> invokeAll(OAuthToken authToken, List<? extends Callable<T>> tasks) throws VkException {
+        String key = authToken != null ? authToken.getAccessToken() : "";
+        Semaphore semaphore = enter(key);
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+
+        try {
+            for (Callable<T> task : tasks) {
+                semaphore.acquire();
+                futures.add(submit(task, key, semaphore));
+            }
+
+            List<T> results = new ArrayList<T>(futures.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VkException("Interrupted while waiting for concurrent requests");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            VkExceptions.rethrowIfVkException(cause);
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            leave(key);
+        }
+    }
+
+    private <T> Future<T> submit(Callable<T> task, String key, Semaphore semaphore) {
+        // the token stays known while the task holds its permit
+        enter(key);
+        // the task and the cancellation race for the permit: whichever takes
+        // it first returns it, and a cancelled task doesn't start
+        AtomicBoolean claimed = new AtomicBoolean();
+        FutureTask<T> future = new FutureTask<T>(() -> {
+            if (!claimed.compareAndSet(false, true)) {
+                return null;
+            }
+            try {
+                return task.call();
+            } finally {
+                release(key, semaphore);
+            }
+        }) {
+            @Override
+            protected void done() {
+                if (claimed.compareAndSet(false, true)) {
+                    release(key, semaphore);
+                }
+            }
+        };
+
+        try {
+            executor.execute(future);
+            return future;
+        } catch (RejectedExecutionException e) {
+            if (claimed.compareAndSet(false, true)) {
+                release(key, semaphore);
+            }
+            throw e;
+        }
+    }
+
+    private void release(String key, Semaphore semaphore) {
+        semaphore.release();
+        leave(key);
+    }
+
+    private Semaphore enter(String key) {
+        return perToken.compute(key, (ignored, permits) -> {
+            TokenPermits result = permits != null ? permits : new TokenPermits(maxRequestsPerToken);
+            result.users++;
+            return result;
+        }).semaphore;
+    }
+
+    /**
+     * Forgets the permits of the token when nothing uses them, so tokens
+     * which come and go don't pile up
+     */
+    private void leave(String key) {
+        perToken.computeIfPresent(key, (ignored, permits) -> --permits.users == 0 ? null : permits);
+    }
+
+    /**
+     * Changed only within the atomic operations of the map
+     */
+    private static final class TokenPermits {
+        private final Semaphore semaphore;
+        // calls of invokeAll and their tasks holding the permits
+        private int users;
+
+        TokenPermits(int permits) {
+            this.semaphore = new Semaphore(permits);
+        }
+    }
+
+}
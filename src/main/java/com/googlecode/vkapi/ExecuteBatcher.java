@@ -0,0 +1,337 @@
+package com.googlecode.vkapi;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.googlecode.vkapi.HttpClientWrapper.ContentHandler;
+import com.googlecode.vkapi.convert.JsonConverter;
+import com.googlecode.vkapi.convert.ResponseReader;
+import com.googlecode.vkapi.convert.VkExecuteResponse;
+import com.googlecode.vkapi.convert.VkResponse;
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.error.VkErrorResponse;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+
+/**
+ * Collects api calls made with the same token and performs them together
+ * with one request to vk.com "execute" method. A batch is sent when the
+ * window since its first call passes, when it has {@link #MAX_CALLS} calls or
+ * when one more call would make the code longer than
+ * {@link #MAX_ENCODED_CODE_LENGTH}, whatever comes first. Each "execute"
+ * request is performed by the {@link Performer} as any other request, so it
+ * takes one slot of the rate limit shared by up to {@link #MAX_CALLS} calls,
+ * and its transient errors are retried.<br>
+ * <br>
+ *
+ * The combined response is split back: each call gets either its converted
+ * result or the exception for its own error, while an error of the whole
+ * request left after the retries fails all the calls of the batch
+ */
+class ExecuteBatcher implements Closeable {
+
+    /**
+     * Maximal amount of api calls allowed by vk.com within one "execute"
+     */
+    public static final int MAX_CALLS = 25;
+
+    /**
+     * Limit of the code in the uri of "execute", keeps the whole request line
+     * within 8k accepted by the most of servers and proxies
+     */
+    static final int MAX_ENCODED_CODE_LENGTH = 6 * 1024;
+
+    private final Performer performer;
+    private final UriCreator uriCreator;
+    private final JsonConverter jsonConverter;
+    private final long windowMillis;
+    private final int maxCalls;
+
+    private final Map<String, Batch> pending = new HashMap<String, Batch>();
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vk-execute-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService requests = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "vk-execute-requests");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Performs one request to vk.com within the rate limit, retrying its
+     * transient errors, e.g. {@link HttpVkApi#executeWith}
+     */
+    interface Performer {
+        <T> T perform(String uri, OAuthToken authToken, ContentHandler<VkResponse<T>> handler) throws VkException;
+    }
+
+    /**
+     * @param performer of the requests
+     * @param windowMillis how long a batch waits for more calls after the
+     * first one
+     * @param maxCalls amount of calls after which the batch is sent at once,
+     * not more than {@link #MAX_CALLS}
+     */
+    public ExecuteBatcher(Performer performer, UriCreator uriCreator, JsonConverter jsonConverter,
+            long windowMillis, int maxCalls) {
+        Validate.isTrue(windowMillis >= 0, "windowMillis must not be negative, got %d", windowMillis);
+        Validate.inclusiveBetween(1, MAX_CALLS, maxCalls, "maxCalls must be between 1 and %d, got %d", MAX_CALLS,
+                maxCalls);
+        this.performer = performer;
+        this.uriCreator = uriCreator;
+        this.jsonConverter = jsonConverter;
+        this.windowMillis = windowMillis;
+        this.maxCalls = maxCalls;
+    }
+
+    /**
+     * Adds the call to the pending batch of the token
+     *
+     * @param authToken to perform the call with
+     * @param uri of the call created by {@link UriCreator}
+     * @param reader for converting the result of the call
+     * @return future completed with the result or with {@link VkException} if
+     * vk.com returned an error for the call
+     */
+    public <T> CompletableFuture<T> submit(OAuthToken authToken, String uri, ResponseReader<T> reader) {
+        Call<T> call = new Call<T>(MethodCall.fromUri(uri), reader);
+        String key = authToken.getAccessToken();
+
+        Batch overflown = null;
+        Batch full = null;
+        synchronized (pending) {
+            Batch batch = pending.get(key);
+            if (batch != null && batch.codeLength + call.codeLength > MAX_ENCODED_CODE_LENGTH) {
+                // the call doesn't fit, so it starts the next batch
+                pending.remove(key);
+                overflown = batch;
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(authToken);
+                pending.put(key, batch);
+                scheduleFlush(key, batch);
+            }
+
+            batch.add(call);
+            if (batch.calls.size() >= maxCalls) {
+                pending.remove(key);
+                full = batch;
+            }
+        }
+
+        if (overflown != null) {
+            send(overflown);
+        }
+        if (full != null) {
+            send(full);
+        }
+
+        return call.result;
+    }
+
+    private void scheduleFlush(final String key, final Batch batch) {
+        timer.schedule(() -> {
+            synchronized (pending) {
+                if (pending.get(key) != batch) {
+                    // already sent because it got full
+                    return;
+                }
+                pending.remove(key);
+            }
+            send(batch);
+        }, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void send(final Batch batch) {
+        requests.execute(() -> {
+            try {
+                perform(batch);
+            } catch (Exception e) {
+                batch.fail(e);
+            }
+        });
+    }
+
+    private void perform(Batch batch) throws VkException {
+        if (batch.calls.size() == 1) {
+            batch.calls.get(0).performAlone(batch.authToken);
+            return;
+        }
+
+        List<MethodCall> methodCalls = new ArrayList<MethodCall>(batch.calls.size());
+        for (Call<?> call : batch.calls) {
+            methodCalls.add(call.methodCall);
+        }
+
+        String uri = uriCreator.executeUri(code(methodCalls), batch.authToken);
+        VkExecuteResponse response = performer.perform(uri, batch.authToken, jsonConverter::readExecuteResponse);
+        demultiplex(batch, response);
+    }
+
+    /**
+     * Failed calls return <code>false</code>, and their errors are listed in
+     * the same order as the calls
+     */
+    private void demultiplex(Batch batch, VkExecuteResponse response) {
+        List<JsonNode> results = response.getResults();
+        Iterator<VkErrorResponse> errors = response.getErrors().iterator();
+
+        for (int i = 0; i < batch.calls.size(); i++) {
+            Call<?> call = batch.calls.get(i);
+            if (i >= results.size()) {
+                call.fail(new VkException("No result for " + call.methodCall + " in execute response"));
+                continue;
+            }
+
+            JsonNode result = results.get(i);
+            if (result.isBoolean() && !result.booleanValue()) {
+                VkException exception = errors.hasNext()
+                        ? VkExceptions.appropriate(errors.next(), batch.authToken)
+                        : new VkException("Call " + call.methodCall + " failed within execute");
+                call.fail(exception);
+            } else {
+                call.complete(result);
+            }
+        }
+    }
+
+    /**
+     * Builds VKScript returning the results of all the calls as an array, e.g.
+     * <code>return [API.users.get({"fields":"sex"}),API.photos.getAlbums({})];</code>
+     */
+    static String code(List<MethodCall> calls) {
+        StringBuilder code = new StringBuilder(64 * calls.size());
+        code.append("return [");
+        for (int i = 0; i < calls.size(); i++) {
+            if (i > 0) {
+                code.append(',');
+            }
+            appendCall(calls.get(i), code);
+        }
+        code.append("];");
+        return code.toString();
+    }
+
+    /**
+     * Appends the call of the method as VKScript, e.g.
+     * <code>API.users.get({"fields":"sex"})</code>
+     */
+    private static void appendCall(MethodCall methodCall, StringBuilder code) {
+        JsonStringEncoder encoder = JsonStringEncoder.getInstance();
+        code.append("API.").append(methodCall.getMethod()).append("({");
+        boolean first = true;
+        for (Map.Entry<String, String> param : methodCall.getParams().entrySet()) {
+            if (!first) {
+                code.append(',');
+            }
+            first = false;
+            code.append('"').append(encoder.quoteAsString(param.getKey())).append("\":\"");
+            code.append(encoder.quoteAsString(param.getValue())).append('"');
+        }
+        code.append("})");
+    }
+
+    /**
+     * @return length of the call within the code encoded for the uri,
+     * including the separating comma
+     */
+    static int encodedLength(MethodCall methodCall) {
+        StringBuilder code = new StringBuilder(64);
+        appendCall(methodCall, code);
+        StringBuilder encoded = new StringBuilder(code.length() * 2);
+        QueryBuilder.encode(code.toString(), encoded);
+        return encoded.length() + 1;
+    }
+
+    /**
+     * Sends the pending calls at once and stops accepting the new ones
+     */
+    @Override
+    public void close() {
+        List<Batch> rest;
+        synchronized (pending) {
+            rest = new ArrayList<Batch>(pending.values());
+            pending.clear();
+        }
+
+        timer.shutdownNow();
+        for (Batch batch : rest) {
+            send(batch);
+        }
+        requests.shutdown();
+    }
+
+    private static class Batch {
+        private final OAuthToken authToken;
+        private final List<Call<?>> calls = new ArrayList<Call<?>>(MAX_CALLS);
+        private int codeLength;
+
+        Batch(OAuthToken authToken) {
+            this.authToken = authToken;
+        }
+
+        void add(Call<?> call) {
+            calls.add(call);
+            codeLength = codeLength + call.codeLength;
+        }
+
+        void fail(Throwable error) {
+            for (Call<?> call : calls) {
+                call.fail(error);
+            }
+        }
+    }
+
+    private class Call<T> {
+        private final MethodCall methodCall;
+        private final ResponseReader<T> reader;
+        private final int codeLength;
+        private final CompletableFuture<T> result = new CompletableFuture<T>();
+
+        Call(MethodCall methodCall, ResponseReader<T> reader) {
+            this.methodCall = methodCall;
+            this.reader = reader;
+            this.codeLength = encodedLength(methodCall);
+        }
+
+        void complete(JsonNode response) {
+            try {
+                result.complete(jsonConverter.readNode(response, reader));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        /**
+         * There's nothing to combine with, so the call is performed as is,
+         * without the overhead of "execute"
+         */
+        void performAlone(OAuthToken authToken) throws VkException {
+            result.complete(performer.perform(methodCall.getUri(), authToken,
+                    content -> jsonConverter.readResponse(content, reader)));
+        }
+
+        void fail(Throwable error) {
+            result.completeExceptionally(error);
+        }
+    }
+
+}
@@ -0,0 +1,441 @@
+package com.googlecode.vkapi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.convert.JsonConverter;
+import com.googlecode.vkapi.convert.ResponseReader;
+import com.googlecode.vkapi.convert.ResponseReaders;
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.photo.VkAlbum;
+import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.GroupUserIds;
+import com.googlecode.vkapi.domain.user.GroupUsers;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.IntIdSetBuilder;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+
+/**
+ * Non-blocking implementation of {@link AsyncVkApi} on top of
+ * {@link AsyncHttpClientWrapper}. Takes the same properties as
+ * {@link HttpVkApi}. Responses are parsed and the futures are completed on a
+ * pool of parsing threads, not on the I/O threads, so the dependent stages
+ * don't hold up receiving the other responses. Should be closed when not
+ * needed anymore, it stops the I/O and parsing threads
+ *
+ * @see AsyncVkApi
+ * @see HttpVkApi
+ */
+public class HttpAsyncVkApi implements AsyncVkApi, Closeable {
+
+    private static final int DEFAULT_IO_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_MAX_CONNECTIONS = 1000;
+
+    private volatile UriCreator uriCreator = new UriCreator();
+    private final JsonConverter jsonConverter = JsonConverter.INSTANCE;
+    private final ExecutorService parsers;
+    private final AsyncHttpClientWrapper httpClient;
+
+    private volatile RequestScheduler requestScheduler = RequestScheduler.vkDefault();
+    private final TokenOwners owners = new TokenOwners();
+
+    private final String appId;
+    private final String appKey;
+    private final String responseUri;
+
+    /**
+     * @param appId application id
+     * @param appKey application key
+     * @param responseUri url for sending the code
+     */
+    public HttpAsyncVkApi(String appId, String appKey, String responseUri) {
+        this(appId, appKey, responseUri, DEFAULT_IO_THREADS, DEFAULT_MAX_CONNECTIONS);
+    }
+
+    /**
+     * @param appId application id
+     * @param appKey application key
+     * @param responseUri url for sending the code
+     * @param ioThreads amount of threads performing I/O, the same amount of
+     * threads parses the responses
+     * @param maxConnections maximal amount of connections to vk.com, and so
+     * maximal amount of requests in flight
+     */
+    public HttpAsyncVkApi(String appId, String appKey, String responseUri, int ioThreads, int maxConnections) {
+        this.appId = appId;
+        this.appKey = appKey;
+        this.responseUri = responseUri;
+        this.parsers = Executors.newFixedThreadPool(ioThreads, runnable -> {
+            Thread thread = new Thread(runnable, "vk-async-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.httpClient = new AsyncHttpClientWrapper(ioThreads, maxConnections, parsers);
+    }
+
+    /**
+     * Points the requests to another server instead of vk.com, e.g. to a
+     * local stand-in for load tests
+     * 
+     * @param methodUri base uri of api methods, such as
+     * {@value UriCreator#DEFAULT_METHOD_URI}
+     * @param oauthUri base uri for obtaining access tokens, such as
+     * {@value UriCreator#DEFAULT_OAUTH_URI}
+     */
+    public void setBaseUris(String methodUri, String oauthUri) {
+        this.uriCreator = new UriCreator(methodUri, oauthUri);
+    }
+
+    /**
+     * Sets the scheduler all the requests go through. Requests which are not
+     * allowed yet are delayed without blocking any thread. By default each
+     * token is limited by {@link RequestScheduler#vkDefault()}
+     * 
+     * @param requestScheduler for limiting the rate of requests
+     */
+    public void setRequestScheduler(RequestScheduler requestScheduler) {
+        Validate.notNull(requestScheduler, "Expected requestScheduler not to be null");
+        this.requestScheduler = requestScheduler;
+    }
+
+    @Override
+    public String getAuthUri() {
+        return uriCreator.authUri(appId, HttpVkApi.APP_SCOPES, responseUri);
+    }
+
+    @Override
+    public CompletableFuture<OAuthToken> authUser(String code) {
+        Validate.notNull(code, "Expected code not to be null");
+
+        String accessTokenUri = uriCreator.accessTokenUri(appId, appKey, responseUri, code);
+        CompletableFuture<String> json = scheduled(null, () -> httpClient.executeGet(accessTokenUri,
+                content -> IOUtils.toString(content, "UTF-8")));
+
+        return json.thenApply(body -> {
+            if (StringUtils.startsWith(body, "{\"error\":")) {
+                throw new CompletionException(toAuthException(body));
+            }
+            return jsonConverter.jsonToAuthToken(body);
+        });
+    }
+
+    private VkException toAuthException(String json) {
+        try {
+            return VkExceptions.appropriate(jsonConverter.jsonToVkError(json), null);
+        } catch (Exception e) {
+            return new VkException(json);
+        }
+    }
+
+    @Override
+    public CompletableFuture<VkUser> currentUserInfo(OAuthToken authToken) {
+        String uri = uriCreator.userInfoUri(HttpVkApi.USER_FIELDS, authToken);
+        CompletableFuture<List<VkUser>> result = execute(uri, authToken, ResponseReaders.USER_LIST);
+        return result.thenApply(users -> users.isEmpty() ? null : users.get(0));
+    }
+
+    @Override
+    public CompletableFuture<Collection<VkUser>> getFriends(OAuthToken authToken) {
+        String uri = uriCreator.userFriendsUri(HttpVkApi.USER_FIELDS, authToken);
+        return execute(uri, authToken, ResponseReaders.USER_LIST);
+    }
+
+    /**
+     * Chunks of {@value HttpVkApi#USERS_CHUNK_SIZE} ids are requested at once
+     * within the limits of the request scheduler
+     */
+    @Override
+    public CompletableFuture<List<VkUser>> usersInfo(int[] userIds, OAuthToken authToken) {
+        int chunkSize = HttpVkApi.USERS_CHUNK_SIZE;
+        List<CompletableFuture<List<VkUser>>> chunks = new ArrayList<CompletableFuture<List<VkUser>>>();
+        for (int offset = 0; offset < userIds.length; offset = offset + chunkSize) {
+            String uri = uriCreator.usersInfoUri(HttpVkApi.USER_FIELDS, userIds, offset,
+                    Math.min(offset + chunkSize, userIds.length), authToken);
+            chunks.add(execute(uri, authToken, ResponseReaders.USER_LIST));
+        }
+
+        return allOf(chunks).thenApply(results -> HttpVkApi.inOrderOf(userIds, results));
+    }
+
+    @Override
+    public CompletableFuture<Collection<VkGroup>> getGroups(OAuthToken authToken, int count) {
+        String uri = uriCreator.userGroupsUri(HttpVkApi.GROUP_FIELDS, authToken, count);
+        return execute(uri, authToken, ResponseReaders.GROUP_LIST);
+    }
+
+    @Override
+    public CompletableFuture<Collection<VkWallMessage>> lastGroupWallMessages(long groupId, WallFiler filter,
+            OAuthToken authToken) {
+        return lastGroupWallMessages(groupId, filter, 0, authToken);
+    }
+
+    @Override
+    public CompletableFuture<Collection<VkWallMessage>> lastGroupWallMessages(long groupId, WallFiler filter,
+            int limit, OAuthToken authToken) {
+        Validate.inclusiveBetween(0, 100, limit, "limit must be between 0 and 100, got %d", limit);
+
+        String uri = uriCreator.groupWallMessages(groupId, filter, limit, authToken);
+        return execute(uri, authToken, ResponseReaders.WALL_MESSAGES);
+    }
+
+    @Override
+    public CompletableFuture<Set<Integer>> mutualFriends(int user1Id, int user2Id, OAuthToken authToken) {
+        String uri = uriCreator.mutualFriends(user1Id, user2Id, authToken);
+        return execute(uri, authToken, ResponseReaders.INTEGER_SET);
+    }
+
+    @Override
+    public CompletableFuture<IntIdSet> mutualFriendIds(int user1Id, int user2Id, OAuthToken authToken) {
+        String uri = uriCreator.mutualFriends(user1Id, user2Id, authToken);
+        return execute(uri, authToken, ResponseReaders.INT_ID_SET);
+    }
+
+    /**
+     * Chunks of {@value HttpVkApi#MUTUAL_TARGETS_CHUNK_SIZE} targets are
+     * requested at once within the limits of the request scheduler
+     */
+    @Override
+    public CompletableFuture<Map<Integer, IntIdSet>> mutualFriendIds(int sourceId, int[] targetIds,
+            OAuthToken authToken) {
+        int chunkSize = HttpVkApi.MUTUAL_TARGETS_CHUNK_SIZE;
+        List<CompletableFuture<Map<Integer, IntIdSet>>> chunks =
+                new ArrayList<CompletableFuture<Map<Integer, IntIdSet>>>();
+        for (int offset = 0; offset < targetIds.length; offset = offset + chunkSize) {
+            String uri = uriCreator.mutualFriends(sourceId, targetIds, offset,
+                    Math.min(offset + chunkSize, targetIds.length), authToken);
+            chunks.add(execute(uri, authToken, ResponseReaders.MUTUAL_FRIENDS));
+        }
+
+        return allOf(chunks).thenApply(results -> HttpVkApi.inOrderOfTargets(targetIds, results));
+    }
+
+    @Override
+    public CompletableFuture<VkGroup> groupInfo(long groupId, OAuthToken authToken) {
+        String uri = uriCreator.groupInfo(groupId, authToken);
+        CompletableFuture<List<VkGroup>> result = execute(uri, authToken, ResponseReaders.GROUP_LIST);
+        return result.thenApply(groups -> groups.isEmpty() ? null : groups.get(0));
+    }
+
+    /**
+     * Chunks of {@value HttpVkApi#GROUPS_BY_ID_CHUNK_SIZE} ids are requested
+     * at once within the limits of the request scheduler
+     */
+    @Override
+    public CompletableFuture<List<VkGroup>> groupsInfo(long[] groupIds, OAuthToken authToken) {
+        int chunkSize = HttpVkApi.GROUPS_BY_ID_CHUNK_SIZE;
+        List<CompletableFuture<List<VkGroup>>> chunks = new ArrayList<CompletableFuture<List<VkGroup>>>();
+        for (int offset = 0; offset < groupIds.length; offset = offset + chunkSize) {
+            String uri = uriCreator.groupsInfoUri(HttpVkApi.GROUP_FIELDS, groupIds, offset,
+                    Math.min(offset + chunkSize, groupIds.length), authToken);
+            chunks.add(execute(uri, authToken, ResponseReaders.GROUP_LIST));
+        }
+
+        return allOf(chunks).thenApply(results -> HttpVkApi.inOrderOfGroups(groupIds, results));
+    }
+
+    @Override
+    public CompletableFuture<Set<Integer>> groupUsers(long groupId, OAuthToken authToken) {
+        int step = HttpVkApi.GROUP_USERS_PAGE_SIZE;
+        String uri = uriCreator.groupUsers(groupId, step, 0, authToken);
+        CompletableFuture<GroupUsers> firstPage = execute(uri, authToken, ResponseReaders.GROUP_USERS);
+
+        return firstPage.thenCompose(first -> {
+            if (first.allExtracted()) {
+                return CompletableFuture.completedFuture(first.getUsers());
+            }
+
+            List<CompletableFuture<GroupUsers>> pages = new ArrayList<CompletableFuture<GroupUsers>>();
+            for (int offset = step; offset < first.getTotalCount(); offset = offset + step) {
+                String pageUri = uriCreator.groupUsers(groupId, step, offset, authToken);
+                pages.add(execute(pageUri, authToken, ResponseReaders.GROUP_USERS));
+            }
+
+            return allOf(pages).thenApply(rest -> {
+                Set<Integer> result = new LinkedHashSet<Integer>(first.getUsers());
+                for (GroupUsers next : rest) {
+                    result.addAll(next.getUsers());
+                }
+                return result;
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<IntIdSet> groupUserIds(long groupId, OAuthToken authToken) {
+        int step = HttpVkApi.GROUP_USERS_PAGE_SIZE;
+        String uri = uriCreator.groupUsers(groupId, step, 0, authToken);
+        CompletableFuture<GroupUserIds> firstPage = execute(uri, authToken, ResponseReaders.GROUP_USER_IDS);
+
+        return firstPage.thenCompose(first -> {
+            if (first.allExtracted()) {
+                return CompletableFuture.completedFuture(first.getUsers());
+            }
+
+            List<CompletableFuture<GroupUserIds>> pages = new ArrayList<CompletableFuture<GroupUserIds>>();
+            for (int offset = step; offset < first.getTotalCount(); offset = offset + step) {
+                String pageUri = uriCreator.groupUsers(groupId, step, offset, authToken);
+                pages.add(execute(pageUri, authToken, ResponseReaders.GROUP_USER_IDS));
+            }
+
+            return allOf(pages).thenApply(rest -> {
+                IntIdSetBuilder result = IntIdSetBuilder.withExpectedSize(first.getTotalCount());
+                result.addAll(first.getUsers());
+                for (GroupUserIds next : rest) {
+                    result.addAll(next.getUsers());
+                }
+                return result.build();
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<Collection<VkPhoto>> currentUserProfilePhotos(OAuthToken authToken) {
+        String uri = uriCreator.photosGetProfile(authToken);
+        return execute(uri, authToken, ResponseReaders.PHOTO_LIST);
+    }
+
+    @Override
+    public CompletableFuture<Collection<VkAlbum>> albums(OAuthToken authToken) {
+        String uri = uriCreator.photosGetAlbums(authToken);
+        return execute(uri, authToken, ResponseReaders.ALBUM_LIST);
+    }
+
+    @Override
+    public CompletableFuture<Collection<VkPhoto>> get(OAuthToken authToken, long albumId) {
+        String uri = uriCreator.photosGet(authToken, albumId);
+        return execute(uri, authToken, ResponseReaders.PHOTO_LIST);
+    }
+
+    @Override
+    public CompletableFuture<Collection<VkPhoto>> photosGetById(OAuthToken authToken, long[] photoIds) {
+        return ownerOf(authToken).thenCompose(owner -> {
+            String[] photoIdStr = new String[photoIds.length];
+            for (int i = 0; i < photoIdStr.length; i++) {
+                photoIdStr[i] = owner + "_" + photoIds[i];
+            }
+            return photosGetById(authToken, photoIdStr);
+        });
+    }
+
+    /**
+     * @return id of the user the token belongs to, requested only once per
+     * token
+     */
+    private CompletableFuture<Integer> ownerOf(OAuthToken authToken) {
+        Integer owner = owners.get(authToken);
+        if (owner != null) {
+            return CompletableFuture.completedFuture(owner);
+        }
+
+        return currentUserInfo(authToken).thenApply(currentUser -> {
+            try {
+                return owners.remember(authToken, currentUser);
+            } catch (VkException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Long lists of ids are split into chunks of
+     * {@value HttpVkApi#PHOTOS_BY_ID_CHUNK_SIZE}, which are requested at once
+     * within the limits of the request scheduler. Photos are returned in the
+     * order of the ids
+     */
+    @Override
+    public CompletableFuture<Collection<VkPhoto>> photosGetById(OAuthToken authToken, String[] photoIds) {
+        int chunkSize = HttpVkApi.PHOTOS_BY_ID_CHUNK_SIZE;
+        if (photoIds.length <= chunkSize) {
+            return photosChunk(authToken, photoIds).thenApply(photos -> photos);
+        }
+
+        List<CompletableFuture<List<VkPhoto>>> chunks = new ArrayList<CompletableFuture<List<VkPhoto>>>();
+        for (int offset = 0; offset < photoIds.length; offset = offset + chunkSize) {
+            String[] chunk = Arrays.copyOfRange(photoIds, offset, Math.min(offset + chunkSize, photoIds.length));
+            chunks.add(photosChunk(authToken, chunk));
+        }
+
+        return allOf(chunks).thenApply(results -> {
+            Collection<VkPhoto> photos = new ArrayList<VkPhoto>(photoIds.length);
+            for (List<VkPhoto> chunk : results) {
+                photos.addAll(chunk);
+            }
+            return photos;
+        });
+    }
+
+    private CompletableFuture<List<VkPhoto>> photosChunk(OAuthToken authToken, String[] photoIds) {
+        String uri = uriCreator.photosGetById(authToken, photoIds);
+        return execute(uri, authToken, ResponseReaders.PHOTO_LIST);
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+        parsers.shutdown();
+    }
+
+    /**
+     * Performs request and reads the response when it arrives. If vk.com
+     * returns an error, the future is completed with appropriate exception
+     */
+    private <T> CompletableFuture<T> execute(String uri, OAuthToken authToken, ResponseReader<? extends T> reader) {
+        CompletableFuture<T> result = new CompletableFuture<T>();
+
+        scheduled(authToken, () -> httpClient.executeGet(uri, content -> jsonConverter.readResponse(content, reader)))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                        return;
+                    }
+
+                    if (response.isError()) {
+                        result.completeExceptionally(VkExceptions.appropriate(response.getError(), authToken));
+                    } else {
+                        result.complete(response.getValue());
+                    }
+                });
+
+        return result;
+    }
+
+    /**
+     * Starts the request when the scheduler allows it: right away or later on
+     * the thread of the scheduler
+     */
+    private <T> CompletableFuture<T> scheduled(OAuthToken authToken, Supplier<CompletableFuture<T>> request) {
+        return requestScheduler.schedule(authToken).thenCompose(allowed -> request.get());
+    }
+
+    private static <T> CompletableFuture<List<T>> allOf(List<CompletableFuture<T>> futures) {
+        CompletableFuture<?>[] array = futures.toArray(new CompletableFuture<?>[futures.size()]);
+        return CompletableFuture.allOf(array).thenApply(done -> {
+            List<T> result = new ArrayList<T>(futures.size());
+            for (CompletableFuture<T> future : futures) {
+                result.add(future.join());
+            }
+            return result;
+        });
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.googlecode.vkapi;
+
+/**
+ * Settings of the connection pool used by {@link HttpVkApi} for talking to
+ * vk.com. All the requests go to one host, so the limit per route is
+ * effectively the amount of requests which can be performed at the same time
+ * 
+ * @see HttpClientConfigBuilder
+ */
+public final class HttpClientConfig {
+
+    private final int maxConnectionsPerRoute;
+    private final int maxConnectionsTotal;
+    private final long keepAliveMillis;
+    private final long maxIdleMillis;
+    private final boolean evictExpired;
+    private final boolean compression;
+
+    HttpClientConfig(int maxConnectionsPerRoute, int maxConnectionsTotal, long keepAliveMillis,
+            long maxIdleMillis, boolean evictExpired, boolean compression) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        this.keepAliveMillis = keepAliveMillis;
+        this.maxIdleMillis = maxIdleMillis;
+        this.evictExpired = evictExpired;
+        this.compression = compression;
+    }
+
+    /**
+     * @return settings used when nothing is configured
+     */
+    public static HttpClientConfig defaults() {
+        return HttpClientConfigBuilder.httpClientConfig().build();
+    }
+
+    /**
+     * @return maximal amount of connections to one host
+     */
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    /**
+     * @return maximal amount of connections in the pool
+     */
+    public int getMaxConnectionsTotal() {
+        return maxConnectionsTotal;
+    }
+
+    /**
+     * @return how long a connection is kept open when the server doesn't
+     * say it in "Keep-Alive" header
+     */
+    public long getKeepAliveMillis() {
+        return keepAliveMillis;
+    }
+
+    /**
+     * @return how long a connection may stay unused in the pool before it is
+     * closed, 0 if idle connections are not evicted
+     */
+    public long getMaxIdleMillis() {
+        return maxIdleMillis;
+    }
+
+    /**
+     * @return <code>true</code> if connections with expired keep-alive are
+     * closed in background
+     */
+    public boolean isEvictExpired() {
+        return evictExpired;
+    }
+
+    /**
+     * @return <code>true</code> if gzip and deflate responses are requested
+     * and decompressed while being read
+     */
+    public boolean isCompression() {
+        return compression;
+    }
+
+    @Override
+    public String toString() {
+        return "HttpClientConfig [maxConnectionsPerRoute=" + maxConnectionsPerRoute + ", maxConnectionsTotal="
+                + maxConnectionsTotal + ", keepAliveMillis=" + keepAliveMillis + ", maxIdleMillis="
+                + maxIdleMillis + ", evictExpired=" + evictExpired + ", compression=" + compression + "]";
+    }
+
+}
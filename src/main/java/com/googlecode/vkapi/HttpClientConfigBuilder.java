@@ -0,0 +1,87 @@
+package com.googlecode.vkapi;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Builder for {@link HttpClientConfig} class
+ * 
+ * @see HttpClientConfig
+ */
+public class HttpClientConfigBuilder {
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 50;
+    public static final int DEFAULT_MAX_CONNECTIONS_TOTAL = 200;
+    public static final long DEFAULT_KEEP_ALIVE_MILLIS = 30000;
+    public static final long DEFAULT_MAX_IDLE_MILLIS = 30000;
+
+    private int maxConnectionsPerRoute = DEFAULT_MAX_CONNECTIONS_PER_ROUTE;
+    private int maxConnectionsTotal = DEFAULT_MAX_CONNECTIONS_TOTAL;
+    private long keepAliveMillis = DEFAULT_KEEP_ALIVE_MILLIS;
+    private long maxIdleMillis = DEFAULT_MAX_IDLE_MILLIS;
+    private boolean evictExpired = true;
+    private boolean compression = true;
+
+    private HttpClientConfigBuilder() {
+    }
+
+    public static HttpClientConfigBuilder httpClientConfig() {
+        return new HttpClientConfigBuilder();
+    }
+
+    public HttpClientConfigBuilder withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        Validate.isTrue(maxConnectionsPerRoute > 0, "maxConnectionsPerRoute must be positive, got %d",
+                maxConnectionsPerRoute);
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        return this;
+    }
+
+    public HttpClientConfigBuilder withMaxConnectionsTotal(int maxConnectionsTotal) {
+        Validate.isTrue(maxConnectionsTotal > 0, "maxConnectionsTotal must be positive, got %d",
+                maxConnectionsTotal);
+        this.maxConnectionsTotal = maxConnectionsTotal;
+        return this;
+    }
+
+    /**
+     * @param keepAliveMillis how long to keep a connection open if the server
+     * doesn't send "Keep-Alive" header
+     */
+    public HttpClientConfigBuilder withKeepAliveMillis(long keepAliveMillis) {
+        Validate.isTrue(keepAliveMillis > 0, "keepAliveMillis must be positive, got %d", keepAliveMillis);
+        this.keepAliveMillis = keepAliveMillis;
+        return this;
+    }
+
+    /**
+     * @param maxIdleMillis how long a connection may stay unused, 0 for
+     * keeping idle connections until they expire
+     */
+    public HttpClientConfigBuilder withMaxIdleMillis(long maxIdleMillis) {
+        Validate.isTrue(maxIdleMillis >= 0, "maxIdleMillis must not be negative, got %d", maxIdleMillis);
+        this.maxIdleMillis = maxIdleMillis;
+        return this;
+    }
+
+    public HttpClientConfigBuilder evictExpired(boolean evictExpired) {
+        this.evictExpired = evictExpired;
+        return this;
+    }
+
+    /**
+     * @param compression <code>false</code> for not sending "Accept-Encoding"
+     * header, e.g. when the traffic is cheaper than the processor time
+     */
+    public HttpClientConfigBuilder withCompression(boolean compression) {
+        this.compression = compression;
+        return this;
+    }
+
+    public HttpClientConfig build() {
+        Validate.isTrue(maxConnectionsPerRoute <= maxConnectionsTotal,
+                "maxConnectionsPerRoute %d is greater than maxConnectionsTotal %d", maxConnectionsPerRoute,
+                maxConnectionsTotal);
+        return new HttpClientConfig(maxConnectionsPerRoute, maxConnectionsTotal, keepAliveMillis, maxIdleMillis,
+                evictExpired, compression);
+    }
+
+}
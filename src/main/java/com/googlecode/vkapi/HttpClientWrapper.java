@@ -1,43 +1,82 @@
 package com.googlecode.vkapi;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpClientConnection;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.conn.ClientConnectionManager;
-import org.apache.http.conn.scheme.Scheme;
-import org.apache.http.conn.scheme.SchemeRegistry;
-import org.apache.http.conn.ssl.SSLSocketFactory;
-import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
 
-import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkIOException;
+import com.googlecode.vkapi.metrics.RequestPhase;
 
 /**
  * Eases using {@link HttpClient} for performing requests to vk.com
  * 
  * @author Alexey Grigorev
  */
-class HttpClientWrapper {
+class HttpClientWrapper implements Closeable {
+
+    /**
+     * Timer of the request performed by the current thread, so the time of
+     * waiting for a connection can be added to it
+     */
+    private static final ThreadLocal<RequestTimer> currentTimer = new ThreadLocal<RequestTimer>();
 
     private final HttpClient httpclient;
+    private final PoolingHttpClientConnectionManager connectionManager;
 
     public HttpClientWrapper() {
-        this(wrapClient(new DefaultHttpClient()));
+        this(HttpClientConfig.defaults());
+    }
+
+    /**
+     * @param config settings of the connection pool
+     */
+    public HttpClientWrapper(HttpClientConfig config) {
+        this(createConnectionManager(config), config);
+    }
+
+    private HttpClientWrapper(PoolingHttpClientConnectionManager connectionManager, HttpClientConfig config) {
+        this.connectionManager = connectionManager;
+        this.httpclient = createClient(connectionManager, config);
     }
 
     HttpClientWrapper(HttpClient httpclient) {
         this.httpclient = httpclient;
+        this.connectionManager = null;
     }
 
     /**
@@ -45,56 +84,236 @@ class HttpClientWrapper {
      * 
      * @param uri for the request
      * @return string response
-     * @throws VkException
+     * @throws VkIOException if the request failed
      */
-    public String executeGet(String uri) {
+    public String executeGet(String uri) throws VkIOException {
         return executeRequest(new HttpGet(uri));
     }
 
-    private String executeRequest(HttpUriRequest request) {
+    /**
+     * Executes GET request and passes the content of the response to the
+     * handler as it arrives, without copying it into a string. The content is
+     * consumed and the connection is released after the handler returns
+     * 
+     * @param uri for the request
+     * @param handler for processing the content
+     * @return result of the handler
+     * @throws VkIOException if the request failed or the content couldn't be
+     * read
+     */
+    public <T> T executeGet(String uri, ContentHandler<T> handler) throws VkIOException {
+        return executeRequest(new HttpGet(uri), handler, null);
+    }
+
+    /**
+     * Same as {@link #executeGet(String)}, but adds the time of the phases of
+     * the request to the timer
+     */
+    public String executeGet(String uri, RequestTimer timer) throws VkIOException {
+        return executeRequest(new HttpGet(uri), timer);
+    }
+
+    /**
+     * Same as {@link #executeGet(String, ContentHandler)}, but adds the time
+     * of the phases of the request to the timer
+     * 
+     * @param timer of the request, <code>null</code> for not measuring
+     */
+    public <T> T executeGet(String uri, ContentHandler<T> handler, RequestTimer timer) throws VkIOException {
+        return executeRequest(new HttpGet(uri), handler, timer);
+    }
+
+    private String executeRequest(HttpUriRequest request) throws VkIOException {
+        return executeRequest(request, (RequestTimer) null);
+    }
+
+    private String executeRequest(HttpUriRequest request, RequestTimer timer) throws VkIOException {
+        return executeRequest(request, new ContentHandler<String>() {
+            @Override
+            public String handle(InputStream content) throws IOException {
+                return IOUtils.toString(content, "UTF-8");
+            }
+        }, timer);
+    }
+
+    private <T> T executeRequest(HttpUriRequest request, final ContentHandler<T> handler, final RequestTimer timer)
+            throws VkIOException {
+        final long start = System.nanoTime();
+        if (timer != null) {
+            currentTimer.set(timer);
+        }
+
         try {
-            HttpResponse response = httpclient.execute(request);
-            HttpEntity entity = response.getEntity();
-            return IOUtils.toString(entity.getContent(), "UTF-8");
+            return httpclient.execute(request, new ResponseHandler<T>() {
+                @Override
+                public T handleResponse(HttpResponse response) throws IOException {
+                    long headersReceived = System.nanoTime();
+                    if (timer != null) {
+                        timer.add(RequestPhase.NETWORK, headersReceived - start - timer.get(RequestPhase.LEASE));
+                    }
+
+                    // the client consumes the entity after the handler
+                    // returns or throws, so the connection goes back to the
+                    // pool in any case
+                    StatusLine status = response.getStatusLine();
+                    if (status.getStatusCode() >= 300) {
+                        throw new HttpResponseException(status.getStatusCode(), status.getReasonPhrase());
+                    }
+
+                    HttpEntity entity = response.getEntity();
+                    if (entity == null) {
+                        throw new IOException("Response without content, status " + status);
+                    }
+                    if (timer == null) {
+                        return handler.handle(entity.getContent());
+                    }
+
+                    T result = handler.handle(timer.timed(entity.getContent()));
+                    timer.add(RequestPhase.PARSE,
+                            System.nanoTime() - headersReceived - timer.get(RequestPhase.BODY_READ));
+                    return result;
+                }
+            });
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            throw new VkIOException("Request to " + request.getURI().getHost() + " failed", e);
+        } finally {
+            if (timer != null) {
+                currentTimer.remove();
+            }
         }
     }
 
     /**
-     * Wraps {@link HttpClient} so it can be used for https requests without
-     * special certificates and it can work in concurrent environment
-     * 
-     * @param base object to be wrapped
-     * @return wrapped {@link HttpClient}
+     * Processes content of the response while it is being read
      */
-    private static HttpClient wrapClient(HttpClient base) {
-        // http://javaskeleton.blogspot.com/2010/07/avoiding-peer-not-authenticated-with.html
-        // wrapping the client to successfully perform https queries without any
-        // certificates
+    interface ContentHandler<T> {
+        T handle(InputStream content) throws IOException;
+    }
 
+    /**
+     * @return current state of the connection pool, or <code>null</code> if
+     * the client was created without the pool
+     */
+    public PoolStats getPoolStats() {
+        return connectionManager != null ? connectionManager.getTotalStats() : null;
+    }
+
+    /**
+     * Closes all the connections of the pool and stops evicting them
+     */
+    @Override
+    public void close() throws IOException {
+        if (httpclient instanceof Closeable) {
+            ((Closeable) httpclient).close();
+        }
+    }
+
+    /**
+     * Creates the pool which accepts all the certificates for https
+     * connections, so requests can be performed without installing any
+     */
+    private static PoolingHttpClientConnectionManager createConnectionManager(HttpClientConfig config) {
+        // http://javaskeleton.blogspot.com/2010/07/avoiding-peer-not-authenticated-with.html
         try {
-            SSLContext ctx = SSLContext.getInstance("TLS");
-            ctx.init(null, new TrustManager[] { dontCareTrustManager }, null);
-            SSLSocketFactory ssf = new SSLSocketFactory(ctx);
-
-            ClientConnectionManager baseCcm = base.getConnectionManager();
-            SchemeRegistry sr = baseCcm.getSchemeRegistry();
-            sr.register(new Scheme("https", 443, ssf));
-
-            // http://stackoverflow.com/questions/4612573/exception-using-httprequest-execute-invalid-use-of-singleclientconnmanager-c
-            // http://foo.jasonhudgins.com/2010/03/http-connections-revisited.html
-            // avoiding
-            // "invalid use of SingleClientConnManager: connection still allocated."
-            // exception
-
-            ClientConnectionManager safeCcm = new ThreadSafeClientConnManager(sr);
-            return new DefaultHttpClient(safeCcm, base.getParams());
-        } catch (Exception ex) {
+            Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory> create()
+                    .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                    .register("https", new SSLConnectionSocketFactory(trustingSslContext()))
+                    .build();
+
+            PoolingHttpClientConnectionManager connectionManager = new TimedConnectionManager(registry);
+            connectionManager.setDefaultMaxPerRoute(config.getMaxConnectionsPerRoute());
+            connectionManager.setMaxTotal(config.getMaxConnectionsTotal());
+            return connectionManager;
+        } catch (GeneralSecurityException ex) {
             throw new RuntimeException(ex);
         }
     }
 
+    /**
+     * Pool which adds the time of waiting for a connection to the timer of
+     * the current request, if it is measured
+     */
+    private static class TimedConnectionManager extends PoolingHttpClientConnectionManager {
+
+        TimedConnectionManager(Registry<ConnectionSocketFactory> registry) {
+            super(registry);
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            final ConnectionRequest request = super.requestConnection(route, state);
+            final RequestTimer timer = currentTimer.get();
+            if (timer == null) {
+                return request;
+            }
+
+            return new ConnectionRequest() {
+                @Override
+                public HttpClientConnection get(long timeout, TimeUnit tunit)
+                        throws InterruptedException, ExecutionException, ConnectionPoolTimeoutException {
+                    long start = System.nanoTime();
+                    try {
+                        return request.get(timeout, tunit);
+                    } finally {
+                        timer.add(RequestPhase.LEASE, System.nanoTime() - start);
+                    }
+                }
+
+                @Override
+                public boolean cancel() {
+                    return request.cancel();
+                }
+            };
+        }
+    }
+
+    private static CloseableHttpClient createClient(PoolingHttpClientConnectionManager connectionManager,
+            HttpClientConfig config) {
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(keepAliveStrategy(config.getKeepAliveMillis()));
+
+        // the builder adds "Accept-Encoding: gzip,deflate" and wraps the
+        // compressed entities, so the content handlers read from the
+        // decompressing stream
+        if (!config.isCompression()) {
+            builder.disableContentCompression();
+        }
+        if (config.getMaxIdleMillis() > 0) {
+            builder.evictIdleConnections(config.getMaxIdleMillis(), TimeUnit.MILLISECONDS);
+        }
+        if (config.isEvictExpired()) {
+            builder.evictExpiredConnections();
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Uses the timeout from "Keep-Alive" header if the server sends it, or
+     * the given one otherwise: by default connections without the header are
+     * kept forever and may be closed by the server while lying in the pool
+     */
+    private static ConnectionKeepAliveStrategy keepAliveStrategy(final long defaultKeepAliveMillis) {
+        return new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+                long keepAlive = super.getKeepAliveDuration(response, context);
+                return keepAlive > 0 ? keepAlive : defaultKeepAliveMillis;
+            }
+        };
+    }
+
+    /**
+     * @return {@link SSLContext} accepting all the certificates
+     * @throws GeneralSecurityException if TLS is not supported
+     */
+    static SSLContext trustingSslContext() throws GeneralSecurityException {
+        SSLContext ctx = SSLContext.getInstance("TLS");
+        ctx.init(null, new TrustManager[] { dontCareTrustManager }, null);
+        return ctx;
+    }
+
     /**
      * Accepts all given certificates
      */
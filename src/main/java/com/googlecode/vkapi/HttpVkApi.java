@@ -1,21 +1,43 @@
 package com.googlecode.vkapi;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.Validate;
+import org.apache.http.pool.PoolStats;
 
+import com.googlecode.vkapi.HttpClientWrapper.ContentHandler;
 import com.googlecode.vkapi.convert.JsonConverter;
+import com.googlecode.vkapi.convert.ResponseReader;
+import com.googlecode.vkapi.convert.ResponseReaders;
+import com.googlecode.vkapi.convert.VkResponse;
+import com.googlecode.vkapi.domain.CompactStrings;
 import com.googlecode.vkapi.domain.OAuthToken;
 import com.googlecode.vkapi.domain.error.VkErrorResponse;
 import com.googlecode.vkapi.domain.group.VkGroup;
 import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.message.WallMessages;
+import com.googlecode.vkapi.domain.message.WallWatermark;
 import com.googlecode.vkapi.domain.photo.VkAlbum;
 import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.GroupUserIds;
 import com.googlecode.vkapi.domain.user.GroupUsers;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.IntIdSetBuilder;
 import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.domain.user.VkUserBatch;
 import com.googlecode.vkapi.exceptions.VkException;
 import com.googlecode.vkapi.exceptions.VkExceptions;
+import com.googlecode.vkapi.metrics.RequestPhase;
+import com.googlecode.vkapi.metrics.SimpleVkMetrics;
+import com.googlecode.vkapi.metrics.VkMetrics;
 
 /**
  * HttpClient based implementation for {@link VkApi}. For initializing, needs
@@ -25,15 +47,40 @@ import com.googlecode.vkapi.exceptions.VkExceptions;
  * @author Alexey Grigorev
  * @see VkApi
  */
-public class HttpVkApi implements VkApi {
+public class HttpVkApi implements VkUsersApi, Closeable {
 
     public static final String[] APP_SCOPES = { "friends", "wall", "groups" };
     public static final String[] USER_FIELDS = { "sex", "first_name", "photo_max_orig", "photo_100", "bdate", "about" };
     public static final String[] GROUP_FIELDS = { "verified", "members_count" };
 
+    static final int GROUP_USERS_PAGE_SIZE = 1000;
+    static final int FRIENDS_PAGE_SIZE = 5000;
+    static final int GROUPS_PAGE_SIZE = 1000;
+    static final int WALL_PAGE_SIZE = 100;
+    // ids of photos are like "12345678_456239017", so a chunk fits into 2k of uri
+    static final int PHOTOS_BY_ID_CHUNK_SIZE = 100;
+    // user ids take up to 11 characters with the comma, so a chunk fits into 2k
+    // of uri; users.get itself would take up to 1000
+    static final int USERS_CHUNK_SIZE = 160;
+    // maximum of target_uids of friends.getMutual
+    static final int MUTUAL_TARGETS_CHUNK_SIZE = 100;
+    // group ids take up to 11 characters with the comma too, so a chunk fits
+    // into 2k of uri; groups.getById itself would take up to 500
+    static final int GROUPS_BY_ID_CHUNK_SIZE = 160;
+
     private UriCreator uriCreator = new UriCreator();
-    private HttpClientWrapper httpClient = new HttpClientWrapper();
+    private volatile HttpClientWrapper httpClient = new HttpClientWrapper();
     private JsonConverter jsonConverter = JsonConverter.INSTANCE;
+    private ConcurrentRequests concurrentRequests;
+    private RequestScheduler requestScheduler = RequestScheduler.vkDefault();
+    private final RetryMetrics retryMetrics = new RetryMetrics();
+    private Retrier retrier = new Retrier(RetryPolicy.defaults(), retryMetrics);
+    private VkMetrics metrics = VkMetrics.NOOP;
+    private ExecutorService prefetcher;
+    private RequestCoalescer coalescer;
+    private final TokenOwners owners = new TokenOwners();
+    private ResponseReader<List<VkUser>> userListReader = ResponseReaders.USER_LIST;
+    private ResponseReader<List<VkGroup>> groupListReader = ResponseReaders.GROUP_LIST;
 
     private final String appId;
     private final String appKey;
@@ -50,6 +97,140 @@ public class HttpVkApi implements VkApi {
         this.responseUri = responseUri;
     }
 
+    /**
+     * Enables parallel extraction of paged collections, such as members of a
+     * group. Once the first page is fetched and the total count is known, the
+     * rest of the pages are requested concurrently on the given executor. By
+     * default all the pages are fetched one after another
+     * 
+     * @param executor for performing the requests
+     * @param maxRequestsPerToken maximal amount of requests performed at the
+     * same time with one token
+     */
+    public void enableParallelRequests(ExecutorService executor, int maxRequestsPerToken) {
+        this.concurrentRequests = new ConcurrentRequests(executor, maxRequestsPerToken);
+    }
+
+    /**
+     * Makes identical requests performed at the same time share one request
+     * to vk.com, e.g. when many users open the page of the same group. The
+     * later calls wait for the first one and get the same result, so the
+     * returned collections are shared and unmodifiable. Info of
+     * groups is the same for all the users and is shared between the tokens
+     * too. By default each call performs its own request
+     */
+    public void enableCoalescing() {
+        this.coalescer = new RequestCoalescer();
+    }
+
+    /**
+     * Sets the scheduler all the requests go through. By default each token
+     * is limited by {@link RequestScheduler#vkDefault()}
+     * 
+     * @param requestScheduler for limiting the rate of requests
+     */
+    public void setRequestScheduler(RequestScheduler requestScheduler) {
+        Validate.notNull(requestScheduler, "Expected requestScheduler not to be null");
+        this.requestScheduler = requestScheduler;
+    }
+
+    /**
+     * Sets the policy for repeating requests which failed because of
+     * transient errors. By default {@link RetryPolicy#defaults()} is used,
+     * {@link RetryPolicy#none()} disables the retries
+     * 
+     * @param retryPolicy which errors are retried and how long to wait
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        Validate.notNull(retryPolicy, "Expected retryPolicy not to be null");
+        this.retrier = new Retrier(retryPolicy, retryMetrics);
+    }
+
+    /**
+     * @return counters of the retried requests since the api was created
+     */
+    public RetryMetrics getRetryMetrics() {
+        return retryMetrics;
+    }
+
+    /**
+     * Sets the receiver of the measurements of each request: its method, time
+     * spent in each {@link RequestPhase} and errors. By default
+     * {@link VkMetrics#NOOP} is used and nothing is measured
+     * 
+     * @param metrics for recording the measurements
+     * @see SimpleVkMetrics
+     */
+    public void setMetrics(VkMetrics metrics) {
+        Validate.notNull(metrics, "Expected metrics not to be null");
+        this.metrics = metrics;
+    }
+
+    /**
+     * Makes the returned users and groups share their names and the prefixes
+     * of photo urls, which lowers the memory taken by large amounts of them
+     * kept together. By default each object keeps its own strings
+     * 
+     * @param compactStrings tables shared by all the users and groups
+     * returned by this api
+     * @see com.googlecode.vkapi.domain.user.VkUserBuilder#compactWith(CompactStrings)
+     */
+    public void setCompactStrings(CompactStrings compactStrings) {
+        Validate.notNull(compactStrings, "Expected compactStrings not to be null");
+        this.userListReader = ResponseReaders.userList(compactStrings);
+        this.groupListReader = ResponseReaders.groupList(compactStrings);
+    }
+
+    /**
+     * Points the requests to another server instead of vk.com, e.g. to a
+     * local stand-in for load tests
+     * 
+     * @param methodUri base uri of api methods, such as
+     * {@value UriCreator#DEFAULT_METHOD_URI}
+     * @param oauthUri base uri for obtaining access tokens, such as
+     * {@value UriCreator#DEFAULT_OAUTH_URI}
+     */
+    public void setBaseUris(String methodUri, String oauthUri) {
+        this.uriCreator = new UriCreator(methodUri, oauthUri);
+    }
+
+    /**
+     * Replaces the connection pool with the one configured by the given
+     * settings. By default {@link HttpClientConfig#defaults()} is used. The
+     * connections of the previous pool are closed, so the requests still
+     * performed with it fail: the pool is meant to be set up before the api
+     * is used
+     * 
+     * @param config settings of the connection pool
+     */
+    public void setHttpClientConfig(HttpClientConfig config) {
+        Validate.notNull(config, "Expected config not to be null");
+        HttpClientWrapper previous = this.httpClient;
+        this.httpClient = new HttpClientWrapper(config);
+        IOUtils.closeQuietly(previous);
+    }
+
+    /**
+     * @return current state of the connection pool: leased, available and
+     * pending connections
+     */
+    public PoolStats getConnectionPoolStats() {
+        return httpClient.getPoolStats();
+    }
+
+    /**
+     * Closes the connections to vk.com
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (prefetcher != null) {
+                prefetcher.shutdownNow();
+            }
+        }
+        httpClient.close();
+    }
+
     @Override
     public String getAuthUri() {
         return uriCreator.authUri(appId, APP_SCOPES, responseUri);
@@ -60,50 +241,224 @@ public class HttpVkApi implements VkApi {
         Validate.notNull(code, "Expected code not to be null");
 
         String accessTokenUri = uriCreator.accessTokenUri(appId, appKey, responseUri, code);
-        String json = executeAndProcess(accessTokenUri, null);
-        return jsonConverter.jsonToAuthToken(json);
+        return executeAndProcess(accessTokenUri, null, jsonConverter::jsonToAuthToken);
     }
 
     @Override
     public VkUser currentUserInfo(OAuthToken authToken) throws VkException {
         String uri = uriCreator.userInfoUri(USER_FIELDS, authToken);
-        String json = executeAndProcess(uri, authToken);
-        List<VkUser> result = jsonConverter.jsonToUserList(json);
-        return firstOrNull(result);
+        List<VkUser> result = execute(uri, authToken, userListReader);
+        VkUser user = firstOrNull(result);
+        if (user != null) {
+            owners.remember(authToken, user);
+        }
+        return user;
+    }
+
+    /**
+     * @return id of the user the token belongs to, requested only once per
+     * token
+     */
+    int ownerOf(OAuthToken authToken) throws VkException {
+        Integer owner = owners.get(authToken);
+        if (owner != null) {
+            return owner;
+        }
+
+        return owners.remember(authToken, currentUserInfo(authToken));
     }
 
     private static <E> E firstOrNull(List<E> list) {
         return list.isEmpty() ? null : list.get(0);
     }
 
-    private String executeAndProcess(String uri, OAuthToken authToken) throws VkException {
-        String json = httpClient.executeGet(uri);
+    /**
+     * Performs request and reads the response straight from the stream. If
+     * vk.com returns an error, throws appropriate exception. Transient errors
+     * are retried according to the retry policy. Identical requests in flight
+     * are shared if coalescing is enabled
+     */
+    private <T> T execute(final String uri, final OAuthToken authToken, final ResponseReader<T> reader)
+            throws VkException {
+        final ContentHandler<VkResponse<T>> handler = new ContentHandler<VkResponse<T>>() {
+            @Override
+            public VkResponse<T> handle(InputStream content) throws IOException {
+                return jsonConverter.readResponse(content, reader);
+            }
+        };
+
+        RequestCoalescer coalescer = this.coalescer;
+        if (coalescer == null) {
+            return executeWith(uri, authToken, handler);
+        }
+        return coalescer.call(uri, authToken, reader, () -> executeWith(uri, authToken, handler));
+    }
 
-        if (StringUtils.startsWith(json, "{\"error\":")) {
-        	try {
-                VkErrorResponse error = jsonConverter.jsonToVkError(json);
-                VkExceptions.throwAppropriate(error, authToken);				
-			} catch (Exception e) {
-				System.err.println(e.toString() + " [JSON: " + json);
-                throw new VkException(json);
-			}
+    /**
+     * Performs request the same way as the methods of the api do: within the
+     * rate limit, measured and retried, but reads the response with the given
+     * handler
+     */
+    <T> T executeWith(final String uri, final OAuthToken authToken, final ContentHandler<VkResponse<T>> handler)
+            throws VkException {
+        return retrier.call(() -> executeOnce(uri, authToken, handler));
+    }
+
+    private <T> T executeOnce(String uri, OAuthToken authToken, ContentHandler<VkResponse<T>> handler)
+            throws VkException {
+        RequestTimer timer = timerFor(uri);
+        try {
+            awaitSchedule(authToken, timer);
+            VkResponse<T> response = httpClient.executeGet(uri, handler, timer);
+
+            if (response.isError()) {
+                VkExceptions.throwAppropriate(response.getError(), authToken);
+            }
+
+            return response.getValue();
+        } catch (VkException e) {
+            recordError(timer, e);
+            throw e;
+        } finally {
+            report(timer);
+        }
+    }
+
+    /**
+     * @return timer of the request, or <code>null</code> if the requests are
+     * not measured
+     */
+    private RequestTimer timerFor(String uri) {
+        return metrics != VkMetrics.NOOP ? RequestTimer.forUri(uri) : null;
+    }
+
+    private void recordError(RequestTimer timer, VkException exception) {
+        if (timer != null) {
+            metrics.recordError(timer.getMethod(), exception);
+        }
+    }
+
+    private void report(RequestTimer timer) {
+        if (timer != null) {
+            timer.report(metrics);
+        }
+    }
+
+    private void awaitSchedule(OAuthToken authToken, RequestTimer timer) throws VkException {
+        long start = timer != null ? System.nanoTime() : 0;
+        try {
+            requestScheduler.acquire(authToken);
+            if (timer != null) {
+                timer.add(RequestPhase.SCHEDULE, System.nanoTime() - start);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VkException("Interrupted while waiting for the request to be allowed");
         }
+    }
 
-        return json;
+    private <T> T executeAndProcess(final String uri, final OAuthToken authToken,
+            final StringConversion<T> conversion) throws VkException {
+        return retrier.call(() -> executeAndProcessOnce(uri, authToken, conversion));
+    }
+
+    private <T> T executeAndProcessOnce(String uri, OAuthToken authToken, StringConversion<T> conversion)
+            throws VkException {
+        RequestTimer timer = timerFor(uri);
+        try {
+            awaitSchedule(authToken, timer);
+            String json = httpClient.executeGet(uri, timer);
+
+            if (StringUtils.startsWith(json, "{\"error\":")) {
+                VkErrorResponse error;
+                try {
+                    error = jsonConverter.jsonToVkError(json);
+                } catch (RuntimeException e) {
+                    throw new VkException(json, e);
+                }
+                VkExceptions.throwAppropriate(error, authToken);
+            }
+
+            long start = timer != null ? System.nanoTime() : 0;
+            T result = conversion.convert(json);
+            if (timer != null) {
+                timer.add(RequestPhase.CONVERSION, System.nanoTime() - start);
+            }
+            return result;
+        } catch (VkException e) {
+            recordError(timer, e);
+            throw e;
+        } finally {
+            report(timer);
+        }
+    }
+
+    /**
+     * Converts the whole response read as a string
+     */
+    private interface StringConversion<T> {
+        T convert(String json);
     }
 
     @Override
     public Collection<VkUser> getFriends(OAuthToken authToken) throws VkException {
         String uri = uriCreator.userFriendsUri(USER_FIELDS, authToken);
-        String json = executeAndProcess(uri, authToken);
-        return jsonConverter.jsonToUserList(json);
+        return execute(uri, authToken, userListReader);
+    }
+
+    /**
+     * Chunks of {@value #USERS_CHUNK_SIZE} ids are requested concurrently if
+     * parallel requests are enabled
+     */
+    @Override
+    public List<VkUser> usersInfo(final int[] userIds, final OAuthToken authToken) throws VkException {
+        if (userIds.length == 0) {
+            return new ArrayList<VkUser>();
+        }
+
+        List<List<VkUser>> chunks = pages(new Pages<List<VkUser>>() {
+            @Override
+            public List<VkUser> extract(int count, int offset) throws VkException {
+                return usersChunk(userIds, offset, Math.min(offset + count, userIds.length), authToken);
+            }
+        }, authToken, USERS_CHUNK_SIZE, 0, userIds.length);
+
+        return inOrderOf(userIds, chunks);
+    }
+
+    private List<VkUser> usersChunk(int[] userIds, int from, int to, OAuthToken authToken) throws VkException {
+        String uri = uriCreator.usersInfoUri(USER_FIELDS, userIds, from, to, authToken);
+        return execute(uri, authToken, userListReader);
+    }
+
+    /**
+     * vk.com skips unknown ids and may return the users in another order, so
+     * the users are matched with the ids
+     * 
+     * @return users in the order of the ids, repeated ids give the same user
+     */
+    static List<VkUser> inOrderOf(int[] userIds, List<? extends Collection<VkUser>> chunks) {
+        Map<Integer, VkUser> byId = new HashMap<Integer, VkUser>(userIds.length * 4 / 3 + 1);
+        for (Collection<VkUser> chunk : chunks) {
+            for (VkUser user : chunk) {
+                byId.put(user.getVkUserId(), user);
+            }
+        }
+
+        List<VkUser> result = new ArrayList<VkUser>(byId.size());
+        for (int userId : userIds) {
+            VkUser user = byId.get(userId);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
     }
 
     @Override
     public Collection<VkGroup> getGroups(OAuthToken authToken, int count) throws VkException {
         String uri = uriCreator.userGroupsUri(GROUP_FIELDS, authToken, count);
-        String json = executeAndProcess(uri, authToken);
-        return jsonConverter.jsonToVkGroups(json);
+        return execute(uri, authToken, groupListReader);
     }
 
     @Override
@@ -118,29 +473,204 @@ public class HttpVkApi implements VkApi {
         Validate.inclusiveBetween(0, 100, limit, "limit must be between 0 and 100, got %d", limit);
 
         String uri = uriCreator.groupWallMessages(groupId, filter, limit, authToken);
-        String json = executeAndProcess(uri, authToken);
+        return execute(uri, authToken, ResponseReaders.WALL_MESSAGES);
+    }
+
+    /**
+     * Extracts all the messages of the group wall, page by page. If parallel
+     * requests are enabled, the pages after the first one are requested
+     * concurrently. Messages posted while the wall is extracted shift the
+     * pages, so the messages are deduplicated by id
+     * 
+     * @param groupId id of the group
+     * @param filter type of messages
+     * @param authToken for the requests
+     * @return messages from the newest to the oldest, with the pinned one
+     * first, and the total count reported by vk.com
+     */
+    public WallMessages allGroupWallMessages(final long groupId, final WallFiler filter,
+            final OAuthToken authToken) throws VkException {
+        WallMessages first = extractWallPage(groupId, filter, WALL_PAGE_SIZE, 0, authToken);
+        Map<Integer, VkWallMessage> result = new LinkedHashMap<Integer, VkWallMessage>();
+        addNew(result, first.getMessages());
+
+        List<WallMessages> rest = theRestOfPages(new Pages<WallMessages>() {
+            @Override
+            public WallMessages extract(int count, int offset) throws VkException {
+                return extractWallPage(groupId, filter, count, offset, authToken);
+            }
+        }, authToken, WALL_PAGE_SIZE, first.getTotalCount());
+
+        for (WallMessages next : rest) {
+            addNew(result, next.getMessages());
+        }
+
+        return new WallMessages(first.getTotalCount(), new ArrayList<VkWallMessage>(result.values()));
+    }
 
-        return jsonConverter.jsonToWallMessage(json);
+    /**
+     * Extracts the messages of the group wall posted after the watermark,
+     * page by page from the newest, and stops at the first seen message. Use
+     * {@link WallWatermark#advance(Collection)} with the result for the next
+     * synchronization
+     * 
+     * @param groupId id of the group
+     * @param filter type of messages
+     * @param watermark the newest message seen before, or
+     * {@link WallWatermark#none()} for the whole wall
+     * @param authToken for the requests
+     * @return new messages from the newest to the oldest, and the total count
+     * reported by vk.com
+     */
+    public WallMessages newGroupWallMessages(long groupId, WallFiler filter, WallWatermark watermark,
+            OAuthToken authToken) throws VkException {
+        Validate.notNull(watermark, "Expected watermark not to be null");
+
+        Map<Integer, VkWallMessage> result = new LinkedHashMap<Integer, VkWallMessage>();
+        int totalCount = -1;
+        for (int offset = 0;; offset = offset + WALL_PAGE_SIZE) {
+            WallMessages page = extractWallPage(groupId, filter, WALL_PAGE_SIZE, offset, authToken);
+            if (totalCount < 0) {
+                totalCount = page.getTotalCount();
+            }
+
+            boolean seenReached = false;
+            for (VkWallMessage message : page.getMessages()) {
+                if (!watermark.isSeen(message)) {
+                    result.putIfAbsent(message.getMessageId(), message);
+                } else if (!message.isPinned()) {
+                    // pinned message goes first regardless of its age
+                    seenReached = true;
+                    break;
+                }
+            }
+
+            if (seenReached || page.getMessages().size() < WALL_PAGE_SIZE
+                    || offset + WALL_PAGE_SIZE >= page.getTotalCount()) {
+                return new WallMessages(totalCount, new ArrayList<VkWallMessage>(result.values()));
+            }
+        }
+    }
+
+    private WallMessages extractWallPage(long groupId, WallFiler filter, int count, int offset,
+            OAuthToken authToken) throws VkException {
+        String uri = uriCreator.groupWallMessages(groupId, filter, count, offset, authToken);
+        return execute(uri, authToken, ResponseReaders.WALL_PAGE);
+    }
+
+    private static void addNew(Map<Integer, VkWallMessage> result, List<VkWallMessage> messages) {
+        for (VkWallMessage message : messages) {
+            result.putIfAbsent(message.getMessageId(), message);
+        }
     }
 
     @Override
     public Set<Integer> mutualFriends(int user1Id, int user2Id, OAuthToken authToken) throws VkException {
         String uri = uriCreator.mutualFriends(user1Id, user2Id, authToken);
-        String json = executeAndProcess(uri, authToken);
-        return jsonConverter.jsonToIntegerSet(json);
+        return execute(uri, authToken, ResponseReaders.INTEGER_SET);
+    }
+
+    @Override
+    public IntIdSet mutualFriendIds(int user1Id, int user2Id, OAuthToken authToken) throws VkException {
+        String uri = uriCreator.mutualFriends(user1Id, user2Id, authToken);
+        return execute(uri, authToken, ResponseReaders.INT_ID_SET);
+    }
+
+    /**
+     * Chunks of {@value #MUTUAL_TARGETS_CHUNK_SIZE} targets are requested
+     * concurrently if parallel requests are enabled
+     */
+    @Override
+    public Map<Integer, IntIdSet> mutualFriendIds(final int sourceId, final int[] targetIds,
+            final OAuthToken authToken) throws VkException {
+        List<Map<Integer, IntIdSet>> chunks = pages(new Pages<Map<Integer, IntIdSet>>() {
+            @Override
+            public Map<Integer, IntIdSet> extract(int count, int offset) throws VkException {
+                int end = Math.min(offset + count, targetIds.length);
+                String uri = uriCreator.mutualFriends(sourceId, targetIds, offset, end, authToken);
+                return execute(uri, authToken, ResponseReaders.MUTUAL_FRIENDS);
+            }
+        }, authToken, MUTUAL_TARGETS_CHUNK_SIZE, 0, targetIds.length);
+
+        return inOrderOfTargets(targetIds, chunks);
+    }
+
+    /**
+     * @return mutual friends in the order of the targets
+     */
+    static Map<Integer, IntIdSet> inOrderOfTargets(int[] targetIds, List<Map<Integer, IntIdSet>> chunks) {
+        Map<Integer, IntIdSet> byTarget = new HashMap<Integer, IntIdSet>(targetIds.length * 4 / 3 + 1);
+        for (Map<Integer, IntIdSet> chunk : chunks) {
+            byTarget.putAll(chunk);
+        }
+
+        Map<Integer, IntIdSet> result = new LinkedHashMap<Integer, IntIdSet>(byTarget.size() * 4 / 3 + 1);
+        for (int targetId : targetIds) {
+            IntIdSet friends = byTarget.get(targetId);
+            if (friends != null) {
+                result.put(targetId, friends);
+            }
+        }
+        return result;
     }
 
     @Override
     public VkGroup groupInfo(long groupId, OAuthToken authToken) throws VkException {
         String uri = uriCreator.groupInfo(groupId, authToken);
-        String json = executeAndProcess(uri, authToken);
-        List<VkGroup> result = jsonConverter.jsonToVkGroups(json);
+        List<VkGroup> result = execute(uri, authToken, groupListReader);
         return firstOrNull(result);
     }
+
+    /**
+     * Chunks of {@value #GROUPS_BY_ID_CHUNK_SIZE} ids are requested
+     * concurrently if parallel requests are enabled
+     */
+    @Override
+    public List<VkGroup> groupsInfo(final long[] groupIds, final OAuthToken authToken) throws VkException {
+        if (groupIds.length == 0) {
+            return new ArrayList<VkGroup>();
+        }
+
+        List<List<VkGroup>> chunks = pages(new Pages<List<VkGroup>>() {
+            @Override
+            public List<VkGroup> extract(int count, int offset) throws VkException {
+                return groupsChunk(groupIds, offset, Math.min(offset + count, groupIds.length), authToken);
+            }
+        }, authToken, GROUPS_BY_ID_CHUNK_SIZE, 0, groupIds.length);
+
+        return inOrderOfGroups(groupIds, chunks);
+    }
+
+    private List<VkGroup> groupsChunk(long[] groupIds, int from, int to, OAuthToken authToken) throws VkException {
+        String uri = uriCreator.groupsInfoUri(GROUP_FIELDS, groupIds, from, to, authToken);
+        return execute(uri, authToken, groupListReader);
+    }
+
+    /**
+     * @return groups in the order of the ids, repeated ids give the same group
+     * @see #inOrderOf(int[], List)
+     */
+    static List<VkGroup> inOrderOfGroups(long[] groupIds, List<? extends Collection<VkGroup>> chunks) {
+        Map<Long, VkGroup> byId = new HashMap<Long, VkGroup>(groupIds.length * 4 / 3 + 1);
+        for (Collection<VkGroup> chunk : chunks) {
+            for (VkGroup group : chunk) {
+                byId.put(group.getGroupId(), group);
+            }
+        }
+
+        List<VkGroup> result = new ArrayList<VkGroup>(byId.size());
+        for (long groupId : groupIds) {
+            VkGroup group = byId.get(groupId);
+            if (group != null) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
     
     @Override
     public Set<Integer> groupUsers(long groupId, OAuthToken authToken) throws VkException {
-        int count = 1000, offset = 0;
+        int count = GROUP_USERS_PAGE_SIZE, offset = 0;
         GroupUsers groupUsers = extractNextUsersFromGroup(groupId, authToken, count, offset);
         
         if (groupUsers.allExtracted()) {
@@ -150,65 +680,295 @@ public class HttpVkApi implements VkApi {
         }
     }
 
+    @Override
+    public IntIdSet groupUserIds(long groupId, OAuthToken authToken) throws VkException {
+        int count = GROUP_USERS_PAGE_SIZE, offset = 0;
+        GroupUserIds groupUsers = extractNextUserIdsFromGroup(groupId, authToken, count, offset);
+
+        if (groupUsers.allExtracted()) {
+            return groupUsers.getUsers();
+        } else {
+            return theRestOfUserIds(groupId, authToken, count, groupUsers);
+        }
+    }
+
+    /**
+     * Same as {@link #groupUserIds(long, OAuthToken)}, but returns the members
+     * page by page as they are consumed, so the whole group is never held in
+     * memory
+     * 
+     * @param groupId id of the group
+     * @param authToken for the requests
+     * @return cursor over the ids of the members
+     */
+    public PagedCursor<Integer> groupUsersCursor(final long groupId, final OAuthToken authToken) {
+        return new PagedCursor<Integer>((count, offset) -> {
+            GroupUserIds page = extractNextUserIdsFromGroup(groupId, authToken, count, offset);
+            return new PagedCursor.Page<Integer>(asList(page.getUsers()), page.getTotalCount());
+        }, prefetcher(), GROUP_USERS_PAGE_SIZE);
+    }
+
+    private static List<Integer> asList(IntIdSet ids) {
+        List<Integer> result = new ArrayList<Integer>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            result.add(ids.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #getFriends(OAuthToken)}, but the friends are kept by
+     * columns, without an object per user, which suits counting and
+     * filtering large amounts of users
+     * 
+     * @param authToken of the user
+     * @return friends of the user
+     * @throws VkException in case of any errors
+     */
+    public VkUserBatch getFriendsBatch(OAuthToken authToken) throws VkException {
+        String uri = uriCreator.userFriendsUri(USER_FIELDS, authToken);
+        return execute(uri, authToken, ResponseReaders.USER_BATCH);
+    }
+
+    /**
+     * Same as {@link #getFriends(OAuthToken)}, but returns the friends page
+     * by page as they are consumed
+     * 
+     * @param authToken of the user
+     * @return cursor over the friends
+     */
+    public PagedCursor<VkUser> friendsCursor(final OAuthToken authToken) {
+        return new PagedCursor<VkUser>((count, offset) -> {
+            String uri = uriCreator.userFriendsUri(USER_FIELDS, authToken, count, offset);
+            return new PagedCursor.Page<VkUser>(execute(uri, authToken, userListReader), -1);
+        }, prefetcher(), FRIENDS_PAGE_SIZE);
+    }
+
+    /**
+     * Same as {@link #getGroups(OAuthToken, int)}, but returns all the groups
+     * page by page as they are consumed
+     * 
+     * @param authToken of the user
+     * @return cursor over the groups
+     */
+    public PagedCursor<VkGroup> groupsCursor(final OAuthToken authToken) {
+        return new PagedCursor<VkGroup>((count, offset) -> {
+            String uri = uriCreator.userGroupsUri(GROUP_FIELDS, authToken, count, offset);
+            return new PagedCursor.Page<VkGroup>(execute(uri, authToken, groupListReader), -1);
+        }, prefetcher(), GROUPS_PAGE_SIZE);
+    }
+
+    /**
+     * Same as {@link #lastGroupWallMessages(long, WallFiler, OAuthToken)}, but
+     * goes through the whole wall, from the newest messages to the oldest,
+     * page by page as they are consumed
+     * 
+     * @param groupId id of the group
+     * @param filter type of messages
+     * @param authToken for the requests
+     * @return cursor over the messages
+     */
+    public PagedCursor<VkWallMessage> groupWallCursor(final long groupId, final WallFiler filter,
+            final OAuthToken authToken) {
+        return new PagedCursor<VkWallMessage>((count, offset) -> {
+            String uri = uriCreator.groupWallMessages(groupId, filter, count, offset, authToken);
+            return new PagedCursor.Page<VkWallMessage>(execute(uri, authToken, ResponseReaders.WALL_MESSAGES), -1);
+        }, prefetcher(), WALL_PAGE_SIZE);
+    }
+
+    /**
+     * @return executor requesting the next pages of the cursors, created on
+     * the first use
+     */
+    private synchronized ExecutorService prefetcher() {
+        if (prefetcher == null) {
+            prefetcher = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "vk-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetcher;
+    }
+
 	@Override
 	public Collection<VkPhoto> currentUserProfilePhotos(OAuthToken authToken) throws VkException {
 		String uri = uriCreator.photosGetProfile(authToken);
-		String json = executeAndProcess(uri, authToken);
-		return jsonConverter.jsonToPhotoList(json);
+		return execute(uri, authToken, ResponseReaders.PHOTO_LIST);
 	}
 
 	@Override
 	public Collection<VkAlbum> albums(OAuthToken authToken) throws VkException {
 		String uri = uriCreator.photosGetAlbums(authToken);
-		String json = executeAndProcess(uri, authToken);
-		return jsonConverter.jsonToAlbumsList(json);
+		return execute(uri, authToken, ResponseReaders.ALBUM_LIST);
 	}
 
 	@Override
 	public Collection<VkPhoto> get(OAuthToken authToken, long albumId) throws VkException {
 		String uri = uriCreator.photosGet(authToken, albumId);
-		String json = executeAndProcess(uri, authToken);
-		return jsonConverter.jsonToPhotoList(json);
+		return execute(uri, authToken, ResponseReaders.PHOTO_LIST);
 	}
 
+	/**
+	 * The owner of the photos is requested once per token and remembered
+	 */
 	@Override
 	public Collection<VkPhoto> photosGetById(OAuthToken authToken, long[] photoIds) throws VkException {
-		VkUser currentUser = currentUserInfo(authToken);
+		int owner = ownerOf(authToken);
 		String[] photoIdStr = new String[photoIds.length];
 		for (int i = 0; i < photoIdStr.length; i++)
-			photoIdStr[i] = currentUser.getVkUserId() + "_" + photoIds[i];
+			photoIdStr[i] = owner + "_" + photoIds[i];
 
 		return photosGetById(authToken, photoIdStr);
 	}
 
+	/**
+	 * Long lists of ids are split into chunks of
+	 * {@value #PHOTOS_BY_ID_CHUNK_SIZE}, which are requested concurrently if
+	 * parallel requests are enabled. Photos are returned in the order of the
+	 * ids
+	 */
 	@Override
-	public Collection<VkPhoto> photosGetById(OAuthToken authToken, String[] photoIds) throws VkException {
+	public Collection<VkPhoto> photosGetById(final OAuthToken authToken, final String[] photoIds)
+			throws VkException {
+		if (photoIds.length <= PHOTOS_BY_ID_CHUNK_SIZE) {
+			return photosChunk(authToken, photoIds);
+		}
+
+		List<List<VkPhoto>> chunks = pages(new Pages<List<VkPhoto>>() {
+			@Override
+			public List<VkPhoto> extract(int count, int offset) throws VkException {
+				int end = Math.min(offset + count, photoIds.length);
+				return photosChunk(authToken, Arrays.copyOfRange(photoIds, offset, end));
+			}
+		}, authToken, PHOTOS_BY_ID_CHUNK_SIZE, 0, photoIds.length);
+
+		List<VkPhoto> result = new ArrayList<VkPhoto>(photoIds.length);
+		for (List<VkPhoto> chunk : chunks) {
+			result.addAll(chunk);
+		}
+		return result;
+	}
+
+	private List<VkPhoto> photosChunk(OAuthToken authToken, String[] photoIds) throws VkException {
 		String uri = uriCreator.photosGetById(authToken, photoIds);
-		String json = executeAndProcess(uri, authToken);
-		return jsonConverter.jsonToPhotoList(json);
+		return execute(uri, authToken, ResponseReaders.PHOTO_LIST);
 	}
 
     private GroupUsers extractNextUsersFromGroup(long groupId, OAuthToken authToken, int count, int offset)
             throws VkException {
         String uri = uriCreator.groupUsers(groupId, count, offset, authToken);
-        String json = executeAndProcess(uri, authToken);
-        return jsonConverter.jsonToGroupUsers(json);
+        return execute(uri, authToken, ResponseReaders.GROUP_USERS);
     }
-    
-    private Set<Integer> theRestOfUsers(long groupId, OAuthToken authToken, int step, GroupUsers groupUsers)
+
+    private GroupUserIds extractNextUserIdsFromGroup(long groupId, OAuthToken authToken, int count, int offset)
             throws VkException {
+        String uri = uriCreator.groupUsers(groupId, count, offset, authToken);
+        return execute(uri, authToken, ResponseReaders.GROUP_USER_IDS);
+    }
+    
+    private Set<Integer> theRestOfUsers(final long groupId, final OAuthToken authToken, int step,
+            GroupUsers groupUsers) throws VkException {
         Set<Integer> result = new LinkedHashSet<Integer>(groupUsers.getUsers());
-        int totalCount = groupUsers.getTotalCount(), extracted = step; 
-        
-        while (extracted < totalCount) {
-            GroupUsers next = extractNextUsersFromGroup(groupId, authToken, step, extracted);
+
+        List<GroupUsers> rest = theRestOfPages(new Pages<GroupUsers>() {
+            @Override
+            public GroupUsers extract(int count, int offset) throws VkException {
+                return extractNextUsersFromGroup(groupId, authToken, count, offset);
+            }
+        }, authToken, step, groupUsers.getTotalCount());
+
+        for (GroupUsers next : rest) {
             result.addAll(next.getUsers());
-            extracted = extracted + step;
         }
         
         return result;
     }
 
+    private IntIdSet theRestOfUserIds(final long groupId, final OAuthToken authToken, int step,
+            GroupUserIds groupUsers) throws VkException {
+        IntIdSetBuilder result = IntIdSetBuilder.withExpectedSize(groupUsers.getTotalCount());
+        result.addAll(groupUsers.getUsers());
+
+        List<GroupUserIds> rest = theRestOfPages(new Pages<GroupUserIds>() {
+            @Override
+            public GroupUserIds extract(int count, int offset) throws VkException {
+                return extractNextUserIdsFromGroup(groupId, authToken, count, offset);
+            }
+        }, authToken, step, groupUsers.getTotalCount());
+
+        for (GroupUserIds next : rest) {
+            result.addAll(next.getUsers());
+        }
+
+        return result.build();
+    }
+
+    /**
+     * Collection returned from vk.com by pieces
+     */
+    private interface Pages<T> {
+        T extract(int count, int offset) throws VkException;
+    }
+
+    /**
+     * Extracts all the pages starting from offset <code>step</code>. If
+     * parallel requests are enabled, the pages are requested concurrently
+     * 
+     * @return pages in the order of their offsets
+     */
+    private <T> List<T> theRestOfPages(Pages<T> pages, OAuthToken authToken, int step, int totalCount)
+            throws VkException {
+        return pages(pages, authToken, step, step, totalCount);
+    }
+
+    /**
+     * Extracts the pages of <code>step</code> elements starting from the
+     * given offset. If parallel requests are enabled, the pages are requested
+     * concurrently
+     * 
+     * @return pages in the order of their offsets
+     */
+    private <T> List<T> pages(final Pages<T> pages, OAuthToken authToken, final int step, int from,
+            int totalCount) throws VkException {
+        if (concurrentRequests == null) {
+            List<T> result = new ArrayList<T>();
+            for (int offset = from; offset < totalCount; offset = offset + step) {
+                result.add(pages.extract(step, offset));
+            }
+            return result;
+        }
+
+        List<Callable<T>> tasks = new ArrayList<Callable<T>>();
+        for (int offset = from; offset < totalCount; offset = offset + step) {
+            final int pageOffset = offset;
+            tasks.add(new Callable<T>() {
+                @Override
+                public T call() throws VkException {
+                    return pages.extract(step, pageOffset);
+                }
+            });
+        }
+
+        return concurrentRequests.invokeAll(authToken, tasks);
+    }
+
+    UriCreator getUriCreator() {
+        return uriCreator;
+    }
+
+    JsonConverter getJsonConverter() {
+        return jsonConverter;
+    }
+
+    ResponseReader<List<VkUser>> getUserListReader() {
+        return userListReader;
+    }
+
+    ResponseReader<List<VkGroup>> getGroupListReader() {
+        return groupListReader;
+    }
+
     void setUriCreator(UriCreator uriCreator) {
         this.uriCreator = uriCreator;
     }
@@ -0,0 +1,83 @@
+package com.googlecode.vkapi;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.Validate;
+
+/**
+ * One call of vk.com api method: name of the method and its parameters
+ * without the access token. Calls are taken from the uris built by
+ * {@link UriCreator}, so the batched calls have exactly the same parameters
+ * as the single ones
+ */
+class MethodCall {
+
+    private static final String METHOD_PATH = "/method/";
+    private static final String ACCESS_TOKEN = "access_token";
+
+    private final String uri;
+    private final String method;
+    private final Map<String, String> params;
+
+    private MethodCall(String uri, String method, Map<String, String> params) {
+        this.uri = uri;
+        this.method = method;
+        this.params = Collections.unmodifiableMap(params);
+    }
+
+    /**
+     * @param uri of api method created by {@link UriCreator}
+     * @return call of the method with the parameters from the uri
+     */
+    public static MethodCall fromUri(String uri) {
+        Validate.isTrue(uri.contains(METHOD_PATH), "Expected uri of api method, got %s", uri);
+
+        String methodAndQuery = StringUtils.substringAfter(uri, METHOD_PATH);
+        String method = StringUtils.substringBefore(methodAndQuery, "?");
+        String query = StringUtils.substringAfter(methodAndQuery, "?");
+
+        Map<String, String> params = new LinkedHashMap<String, String>();
+        for (String param : StringUtils.split(query, '&')) {
+            String name = StringUtils.substringBefore(param, "=");
+            if (!ACCESS_TOKEN.equals(name)) {
+                params.put(urlDecode(name), urlDecode(StringUtils.substringAfter(param, "=")));
+            }
+        }
+
+        return new MethodCall(uri, method, params);
+    }
+
+    private static String urlDecode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @return original uri of the call, with the access token
+     */
+    public String getUri() {
+        return uri;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public Map<String, String> getParams() {
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return "MethodCall [method=" + method + ", params=" + params + "]";
+    }
+
+}
@@ -0,0 +1,177 @@
+package com.googlecode.vkapi;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkUncheckedException;
+
+/**
+ * Iterates over a collection which vk.com returns by pages, such as members of
+ * a group, without loading the whole collection. While the elements of the
+ * current page are consumed, the next page is already requested in the
+ * background, so at most two pages are held in memory at any time.<br>
+ * <br>
+ *
+ * The collection ends with a page shorter than requested or when the total
+ * count reported by vk.com is reached. Failed requests are thrown from
+ * {@link #hasNext()} and {@link #next()} as {@link VkUncheckedException}.
+ * The cursor is meant to be used by one thread, and should be closed if it
+ * is abandoned before the end, so the prefetched page is dropped
+ *
+ * @see HttpVkApi#groupUsersCursor(long, com.googlecode.vkapi.domain.OAuthToken)
+ */
+public final class PagedCursor<T> implements Iterator<T>, Closeable {
+
+    private final PageSource<T> source;
+    private final ExecutorService executor;
+    private final int pageSize;
+
+    private List<T> current = Collections.emptyList();
+    private int position;
+    private int nextOffset;
+    private Future<Page<T>> next;
+    private boolean closed;
+
+    /**
+     * @param source performing the requests for the pages
+     * @param executor for requesting the next page in the background
+     * @param pageSize amount of elements requested per page
+     */
+    PagedCursor(PageSource<T> source, ExecutorService executor, int pageSize) {
+        Validate.isTrue(pageSize > 0, "pageSize must be positive, got %d", pageSize);
+        this.source = source;
+        this.executor = executor;
+        this.pageSize = pageSize;
+        this.next = fetch(0);
+    }
+
+    /**
+     * Requests one page of the collection
+     */
+    interface PageSource<T> {
+        Page<T> fetch(int count, int offset) throws VkException;
+    }
+
+    /**
+     * Elements of one page and the total count of the collection, if vk.com
+     * reports it
+     */
+    static final class Page<T> {
+        private final List<T> elements;
+        private final int totalCount;
+
+        /**
+         * @param totalCount size of the whole collection, or -1 if unknown
+         */
+        Page(List<T> elements, int totalCount) {
+            this.elements = elements;
+            this.totalCount = totalCount;
+        }
+    }
+
+    private Future<Page<T>> fetch(final int offset) {
+        nextOffset = offset + pageSize;
+        return executor.submit(() -> source.fetch(pageSize, offset));
+    }
+
+    /**
+     * @throws VkUncheckedException if the next page can't be obtained
+     */
+    @Override
+    public boolean hasNext() {
+        while (position == current.size()) {
+            if (next == null || closed) {
+                return false;
+            }
+            advance();
+        }
+        return true;
+    }
+
+    /**
+     * @throws VkUncheckedException if the next page can't be obtained
+     */
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return current.get(position++);
+    }
+
+    /**
+     * Waits for the requested page and requests the one after it, unless the
+     * page is the last one
+     */
+    private void advance() {
+        Page<T> page = await(next);
+        // the consumed page becomes garbage before the next one arrives
+        current = page.elements;
+        position = 0;
+
+        boolean last = page.elements.size() < pageSize
+                || (page.totalCount >= 0 && nextOffset >= page.totalCount);
+        next = last ? null : fetch(nextOffset);
+    }
+
+    private Page<T> await(Future<Page<T>> page) {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new VkUncheckedException(new VkException("Interrupted while waiting for the next page"));
+        } catch (CancellationException e) {
+            throw new NoSuchElementException("Cursor is closed");
+        } catch (ExecutionException e) {
+            next = null;
+            Throwable cause = e.getCause();
+            if (cause instanceof VkException) {
+                throw new VkUncheckedException((VkException) cause);
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * @return sequential stream over the rest of the elements, which closes
+     * the cursor when it is closed
+     */
+    public Stream<T> stream() {
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(this,
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false).onClose(this::close);
+    }
+
+    /**
+     * Stops the iteration and cancels the request of the next page
+     */
+    @Override
+    public void close() {
+        closed = true;
+        current = Collections.emptyList();
+        position = 0;
+        if (next != null) {
+            next.cancel(true);
+            next = null;
+        }
+    }
+
+}
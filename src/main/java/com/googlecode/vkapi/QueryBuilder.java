@@ -0,0 +1,175 @@
+package com.googlecode.vkapi;
+
+/**
+ * Appends parameters to an uri in one buffer reused by each thread, so an uri
+ * is built in linear time and the only object created is the resulting
+ * string. Values are percent-encoded as UTF-8, except for the unreserved
+ * characters and commas, which separate the elements of lists.<br>
+ * <br>
+ *
+ * An uri is started with {@link #start(String)} and finished with
+ * {@link #build()}, the builder must not be used after that
+ */
+final class QueryBuilder {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * Larger buffers, e.g. after long "execute" code, are not kept
+     */
+    private static final int MAX_KEPT_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<QueryBuilder> BUILDERS = new ThreadLocal<QueryBuilder>() {
+        @Override
+        protected QueryBuilder initialValue() {
+            return new QueryBuilder();
+        }
+    };
+
+    private StringBuilder uri = new StringBuilder(256);
+
+    private QueryBuilder() {
+    }
+
+    /**
+     * @param base beginning of the uri up to the "?", possibly followed by
+     * constant parameters which are already encoded
+     * @return builder of the current thread
+     */
+    public static QueryBuilder start(String base) {
+        QueryBuilder builder = BUILDERS.get();
+        builder.uri.setLength(0);
+        builder.uri.append(base);
+        return builder;
+    }
+
+    public QueryBuilder param(String name, String value) {
+        separate().append(name).append('=');
+        encode(value, uri);
+        return this;
+    }
+
+    public QueryBuilder param(String name, long value) {
+        separate().append(name).append('=').append(value);
+        return this;
+    }
+
+    /**
+     * @param fragment "name=value" which is already encoded, e.g. a
+     * precomputed one
+     */
+    public QueryBuilder encoded(String fragment) {
+        separate().append(fragment);
+        return this;
+    }
+
+    /**
+     * Appends the values as a list separated by commas
+     */
+    public QueryBuilder list(String name, String[] values) {
+        separate().append(name).append('=');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                uri.append(',');
+            }
+            encode(values[i], uri);
+        }
+        return this;
+    }
+
+    /**
+     * Appends the values between the given indexes as a list separated by
+     * commas
+     */
+    public QueryBuilder list(String name, int[] values, int from, int to) {
+        separate().append(name).append('=');
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                uri.append(',');
+            }
+            uri.append(values[i]);
+        }
+        return this;
+    }
+
+    /**
+     * Appends the values between the given indexes as a list separated by
+     * commas
+     */
+    public QueryBuilder list(String name, long[] values, int from, int to) {
+        separate().append(name).append('=');
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                uri.append(',');
+            }
+            uri.append(values[i]);
+        }
+        return this;
+    }
+
+    public String build() {
+        String result = uri.toString();
+        if (uri.capacity() > MAX_KEPT_CAPACITY) {
+            uri = new StringBuilder(256);
+        }
+        return result;
+    }
+
+    private StringBuilder separate() {
+        char last = uri.charAt(uri.length() - 1);
+        if (last != '?' && last != '&') {
+            uri.append('&');
+        }
+        return uri;
+    }
+
+    /**
+     * Percent-encodes the value as UTF-8
+     * 
+     * @param value to be encoded, <code>null</code> is appended as is
+     * @param out where the encoded value is appended
+     */
+    static void encode(String value, StringBuilder out) {
+        if (value == null) {
+            out.append((String) null);
+            return;
+        }
+
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (isSafe(c)) {
+                out.append(c);
+            } else if (c < 0x80) {
+                appendByte(c, out);
+            } else if (c < 0x800) {
+                appendByte(0xC0 | (c >> 6), out);
+                appendByte(0x80 | (c & 0x3F), out);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                appendByte(0xF0 | (codePoint >> 18), out);
+                appendByte(0x80 | ((codePoint >> 12) & 0x3F), out);
+                appendByte(0x80 | ((codePoint >> 6) & 0x3F), out);
+                appendByte(0x80 | (codePoint & 0x3F), out);
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, replaced as by String.getBytes
+                appendByte('?', out);
+            } else {
+                appendByte(0xE0 | (c >> 12), out);
+                appendByte(0x80 | ((c >> 6) & 0x3F), out);
+                appendByte(0x80 | (c & 0x3F), out);
+            }
+        }
+    }
+
+    private static boolean isSafe(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+                || c == '.' || c == '~' || c == ',';
+    }
+
+    private static void appendByte(int b, StringBuilder out) {
+        out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+
+}
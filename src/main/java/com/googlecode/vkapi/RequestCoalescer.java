@@ -0,0 +1,217 @@
+package com.googlecode.vkapi;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import com.googlecode.vkapi.convert.ResponseReader;
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+import com.googlecode.vkapi.exceptions.VkIOException;
+
+/**
+ * Lets concurrent identical requests share one request to vk.com: the first
+ * call performs it, and the calls with the same uri made before it finishes
+ * wait for it and get the same result or an error of the same type. Nothing
+ * is kept after the request finishes, see {@link CachingVkApi} for that. The
+ * result is shared, so its collections are returned unmodifiable to all the
+ * calls, and each waiting call gets its own exception wrapping the error of
+ * the first one.<br>
+ * <br>
+ *
+ * Calls are identical when they have the same uri, including the access
+ * token, and read the response with the same {@link ResponseReader}. The
+ * results of {@link #TOKEN_INDEPENDENT_METHODS} don't depend on the user, so
+ * their calls are shared regardless of the token. An error of such a shared
+ * call may be caused by the token of the first call, so the calls with other
+ * tokens repeat the request themselves instead of failing
+ */
+class RequestCoalescer {
+
+    /**
+     * Methods returning the same for any token
+     */
+    static final Set<String> TOKEN_INDEPENDENT_METHODS = Collections.unmodifiableSet(new HashSet<String>(
+            Arrays.asList("groups.getById")));
+
+    private static final String METHOD_PATH = "/method/";
+    private static final String ACCESS_TOKEN = "access_token=";
+
+    /**
+     * Request to vk.com
+     */
+    interface Request<T> {
+        T perform() throws VkException;
+    }
+
+    private final ConcurrentMap<FlightKey, Flight> flights = new ConcurrentHashMap<FlightKey, Flight>();
+
+    /**
+     * @param uri of the request created by {@link UriCreator}
+     * @param authToken the request is performed with
+     * @param reader the response is read with
+     * @param request performing the request, called only if there's no
+     * identical request in flight
+     * @return result of the request
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T call(String uri, OAuthToken authToken, ResponseReader<T> reader, Request<T> request)
+            throws VkException {
+        String accessToken = authToken != null ? authToken.getAccessToken() : "";
+        FlightKey key = new FlightKey(isTokenIndependent(uri) ? withoutToken(uri) : uri, reader);
+
+        Flight flight = new Flight(accessToken);
+        Flight inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight == null) {
+            return perform(key, flight, request);
+        }
+
+        try {
+            return (T) await(inFlight.result, authToken);
+        } catch (VkException e) {
+            if (inFlight.accessToken.equals(accessToken)) {
+                throw e;
+            }
+            return request.perform();
+        }
+    }
+
+    private <T> T perform(FlightKey key, Flight flight, Request<T> request) throws VkException {
+        try {
+            T result = unmodifiable(request.perform());
+            flight.result.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flight.result.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> result, OAuthToken authToken) throws VkException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VkException("Interrupted while waiting for the identical request");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw forWaiter(cause, authToken);
+        }
+    }
+
+    /**
+     * The exception of the first call is thrown by its own thread, so the
+     * waiting calls get new ones, of the same type where it matters for
+     * handling them
+     */
+    static VkException forWaiter(Throwable shared, OAuthToken authToken) {
+        VkException exception;
+        if (shared instanceof VkIOException && shared.getCause() instanceof IOException) {
+            return new VkIOException("Identical request failed", (IOException) shared.getCause());
+        } else if (shared instanceof VkException && ((VkException) shared).getError() != null) {
+            exception = VkExceptions.appropriate(((VkException) shared).getError(), authToken);
+        } else {
+            return new VkException("Identical request failed: " + shared.getMessage(), shared);
+        }
+        exception.initCause(shared);
+        return exception;
+    }
+
+    /**
+     * @return the value with its collections wrapped unmodifiable
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T unmodifiable(T value) {
+        if (value instanceof List) {
+            return (T) Collections.unmodifiableList((List<?>) value);
+        }
+        if (value instanceof Set) {
+            return (T) Collections.unmodifiableSet((Set<?>) value);
+        }
+        if (value instanceof Map) {
+            return (T) Collections.unmodifiableMap((Map<?, ?>) value);
+        }
+        if (value instanceof Collection) {
+            return (T) Collections.unmodifiableCollection((Collection<?>) value);
+        }
+        return value;
+    }
+
+    static boolean isTokenIndependent(String uri) {
+        int start = uri.indexOf(METHOD_PATH);
+        if (start < 0) {
+            return false;
+        }
+        start = start + METHOD_PATH.length();
+        int end = uri.indexOf('?', start);
+        return TOKEN_INDEPENDENT_METHODS.contains(uri.substring(start, end < 0 ? uri.length() : end));
+    }
+
+    /**
+     * @return the uri without access_token parameter
+     */
+    static String withoutToken(String uri) {
+        int start = uri.indexOf(ACCESS_TOKEN);
+        while (start > 0 && uri.charAt(start - 1) != '?' && uri.charAt(start - 1) != '&') {
+            start = uri.indexOf(ACCESS_TOKEN, start + 1);
+        }
+        if (start < 0) {
+            return uri;
+        }
+
+        int end = uri.indexOf('&', start);
+        return end < 0 ? uri.substring(0, start - 1) : uri.substring(0, start) + uri.substring(end + 1);
+    }
+
+    private static final class FlightKey {
+        private final String uri;
+        private final ResponseReader<?> reader;
+
+        FlightKey(String uri, ResponseReader<?> reader) {
+            this.uri = uri;
+            this.reader = reader;
+        }
+
+        @Override
+        public int hashCode() {
+            return uri.hashCode() * 31 + System.identityHashCode(reader);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey other = (FlightKey) obj;
+            return reader == other.reader && uri.equals(other.uri);
+        }
+    }
+
+    private static class Flight {
+        private final String accessToken;
+        private final CompletableFuture<Object> result = new CompletableFuture<Object>();
+
+        Flight(String accessToken) {
+            this.accessToken = accessToken;
+        }
+    }
+
+}
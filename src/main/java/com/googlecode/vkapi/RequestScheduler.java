@@ -0,0 +1,302 @@
+package com.googlecode.vkapi;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+
+/**
+ * Keeps the requests to vk.com within the allowed rate. vk.com limits the
+ * amount of requests per second for each access token, so every token gets
+ * its own token bucket, and optionally all the requests together are limited
+ * by one more bucket.<br>
+ * <br>
+ *
+ * Requests wait in the queue of their token. A token takes part in the
+ * dispatching only when its own bucket allows its next request, and the slots
+ * of the global bucket are handed out round-robin between such tokens, each
+ * charged at the moment its request is let go. So a busy token is spaced by
+ * its own limit, its backlog doesn't take the global slots of the other
+ * tokens, and all the requests together never exceed the global rate.
+ */
+public class RequestScheduler {
+
+    /**
+     * Rate allowed by vk.com for one user token
+     */
+    public static final double VK_REQUESTS_PER_SECOND = 3;
+
+    private static final int CLEANUP_PERIOD = 1024;
+
+    /**
+     * Lets the waiting requests go when their slots come, shared by all the
+     * schedulers as it only completes the futures
+     */
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "vk-request-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final double requestsPerSecond;
+    private final int burst;
+    private final TokenBucket global;
+    private final boolean limited;
+
+    // guarded by this
+    private final Map<String, TokenQueue> queues = new HashMap<String, TokenQueue>();
+    private final Queue<TokenQueue> waiting = new ArrayDeque<TokenQueue>();
+    private long wakeUpNanos = Long.MAX_VALUE;
+    private long dispatched;
+
+    /**
+     * Limits requests per token only
+     *
+     * @param requestsPerSecond allowed rate for each token
+     * @param burst amount of requests with one token which may be performed
+     * without a pause after the token was idle
+     */
+    public RequestScheduler(double requestsPerSecond, int burst) {
+        this(requestsPerSecond, burst, null);
+    }
+
+    /**
+     * Limits requests per token and all the requests together
+     *
+     * @param requestsPerSecond allowed rate for each token
+     * @param burst allowed burst for each token
+     * @param globalRequestsPerSecond allowed rate for all the requests
+     * @param globalBurst allowed burst for all the requests
+     */
+    public RequestScheduler(double requestsPerSecond, int burst, double globalRequestsPerSecond, int globalBurst) {
+        this(requestsPerSecond, burst, bucket(globalRequestsPerSecond, globalBurst));
+    }
+
+    private RequestScheduler(double requestsPerSecond, int burst, TokenBucket global) {
+        Validate.isTrue(requestsPerSecond > 0, "requestsPerSecond must be positive, got %s", requestsPerSecond);
+        Validate.isTrue(burst > 0, "burst must be positive, got %d", burst);
+        this.requestsPerSecond = requestsPerSecond;
+        this.burst = burst;
+        this.global = global;
+        this.limited = true;
+    }
+
+    private RequestScheduler() {
+        this.requestsPerSecond = 0;
+        this.burst = 0;
+        this.global = null;
+        this.limited = false;
+    }
+
+    /**
+     * @return scheduler which lets all the requests go immediately
+     */
+    public static RequestScheduler unlimited() {
+        return new RequestScheduler();
+    }
+
+    /**
+     * @return scheduler with the limits of vk.com for user tokens
+     */
+    public static RequestScheduler vkDefault() {
+        return new RequestScheduler(VK_REQUESTS_PER_SECOND, (int) VK_REQUESTS_PER_SECOND);
+    }
+
+    private static TokenBucket bucket(double requestsPerSecond, int burst) {
+        Validate.isTrue(requestsPerSecond > 0, "globalRequestsPerSecond must be positive, got %s", requestsPerSecond);
+        Validate.isTrue(burst > 0, "globalBurst must be positive, got %d", burst);
+        return new TokenBucket(requestsPerSecond, burst);
+    }
+
+    /**
+     * Blocks until a request with the given token is allowed
+     *
+     * @param authToken the request is performed with, may be
+     * <code>null</code> for requests without token
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(OAuthToken authToken) throws InterruptedException {
+        CompletableFuture<Void> allowed = schedule(authToken);
+        try {
+            allowed.get();
+        } catch (InterruptedException e) {
+            // gives the slot up unless it's been taken already
+            allowed.cancel(false);
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Scheduling failed", e.getCause());
+        }
+    }
+
+    /**
+     * Queues a request without blocking, for performing it when it's allowed.
+     * A request which is not needed anymore may be given up by cancelling the
+     * future
+     *
+     * @param authToken the request is performed with, may be
+     * <code>null</code> for requests without token
+     * @return future completed when the request is allowed, possibly on the
+     * thread of the scheduler
+     */
+    public CompletableFuture<Void> schedule(OAuthToken authToken) {
+        if (!limited) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> allowed = enqueue(authToken);
+        wakeUp();
+        return allowed;
+    }
+
+    synchronized CompletableFuture<Void> enqueue(OAuthToken authToken) {
+        String key = authToken != null ? authToken.getAccessToken() : null;
+        TokenQueue queue = queues.get(key);
+        if (queue == null) {
+            queue = new TokenQueue(key != null ? new TokenBucket(requestsPerSecond, burst) : null);
+            queues.put(key, queue);
+        }
+
+        CompletableFuture<Void> allowed = new CompletableFuture<Void>();
+        queue.requests.add(allowed);
+        if (queue.requests.size() == 1) {
+            waiting.add(queue);
+        }
+        return allowed;
+    }
+
+    private void wakeUp() {
+        long now = System.nanoTime();
+        long next = dispatch(now);
+        if (next == Long.MAX_VALUE) {
+            return;
+        }
+
+        synchronized (this) {
+            if (next >= wakeUpNanos) {
+                return;
+            }
+            wakeUpNanos = next;
+        }
+        TIMER.schedule(() -> {
+            synchronized (this) {
+                wakeUpNanos = Long.MAX_VALUE;
+            }
+            wakeUp();
+        }, next - now, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Lets go all the requests allowed at the given moment, taking the tokens
+     * in turns
+     *
+     * @param now current moment in terms of {@link System#nanoTime()}
+     * @return moment when the next waiting request may be allowed, or
+     * {@link Long#MAX_VALUE} if nothing waits
+     */
+    long dispatch(long now) {
+        List<CompletableFuture<Void>> allowed = new ArrayList<CompletableFuture<Void>>();
+        long next;
+        synchronized (this) {
+            next = dispatch(now, allowed);
+        }
+
+        for (CompletableFuture<Void> request : allowed) {
+            request.complete(null);
+        }
+        return next;
+    }
+
+    private long dispatch(long now, List<CompletableFuture<Void>> allowed) {
+        // tokens looked at in a row without letting anything go
+        int skipped = 0;
+        while (skipped < waiting.size()) {
+            if (global != null && global.nextAllowed(now) > now) {
+                return global.nextAllowed(now);
+            }
+
+            TokenQueue queue = waiting.remove();
+            queue.dropCancelled();
+            if (queue.requests.isEmpty()) {
+                skipped = 0;
+                continue;
+            }
+
+            if (queue.bucket != null && queue.bucket.nextAllowed(now) > now) {
+                waiting.add(queue);
+                skipped++;
+                continue;
+            }
+
+            if (queue.bucket != null) {
+                queue.bucket.reserve(now);
+            }
+            if (global != null) {
+                global.reserve(now);
+            }
+            allowed.add(queue.requests.remove());
+            if (!queue.requests.isEmpty()) {
+                waiting.add(queue);
+            }
+            skipped = 0;
+
+            if (++dispatched % CLEANUP_PERIOD == 0) {
+                removeIdleQueues(now);
+            }
+        }
+
+        long next = Long.MAX_VALUE;
+        for (TokenQueue queue : waiting) {
+            if (queue.bucket != null) {
+                next = Math.min(next, queue.bucket.nextAllowed(now));
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Buckets of idle tokens are full and behave the same as new ones, so they
+     * can be dropped to keep the map small when tokens come and go. The check
+     * and the removal are made under the same lock as the queueing, so a token
+     * getting a request meanwhile keeps its bucket
+     */
+    private void removeIdleQueues(long now) {
+        Iterator<TokenQueue> it = queues.values().iterator();
+        while (it.hasNext()) {
+            TokenQueue queue = it.next();
+            if (queue.requests.isEmpty() && (queue.bucket == null || queue.bucket.isIdle(now))) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Requests waiting with one token, in the order of arrival
+     */
+    private static class TokenQueue {
+        private final TokenBucket bucket;
+        private final Queue<CompletableFuture<Void>> requests = new ArrayDeque<CompletableFuture<Void>>();
+
+        TokenQueue(TokenBucket bucket) {
+            this.bucket = bucket;
+        }
+
+        void dropCancelled() {
+            while (!requests.isEmpty() && requests.peek().isCancelled()) {
+                requests.remove();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.googlecode.vkapi;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.googlecode.vkapi.metrics.RequestPhase;
+import com.googlecode.vkapi.metrics.VkMetrics;
+
+/**
+ * Accumulates the time spent in each {@link RequestPhase} of one request and
+ * reports it to {@link VkMetrics} when the request is over. Used by one thread
+ * at a time
+ */
+final class RequestTimer {
+
+    private static final RequestPhase[] PHASES = RequestPhase.values();
+
+    private final String method;
+    private final long start = System.nanoTime();
+    private final long[] nanos = new long[PHASES.length];
+    private int measured;
+
+    /**
+     * @param method of vk.com api the request is made to
+     */
+    RequestTimer(String method) {
+        this.method = method;
+    }
+
+    /**
+     * @param uri created by {@link UriCreator}
+     * @return timer named after the last segment of the path, e.g.
+     * "users.get" or "access_token"
+     */
+    static RequestTimer forUri(String uri) {
+        int end = uri.indexOf('?');
+        if (end < 0) {
+            end = uri.length();
+        }
+        return new RequestTimer(uri.substring(uri.lastIndexOf('/', end - 1) + 1, end));
+    }
+
+    void add(RequestPhase phase, long phaseNanos) {
+        nanos[phase.ordinal()] += phaseNanos;
+        measured |= 1 << phase.ordinal();
+    }
+
+    long get(RequestPhase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    /**
+     * @return stream which adds the time spent reading from the given one to
+     * {@link RequestPhase#BODY_READ}
+     */
+    InputStream timed(InputStream content) {
+        return new FilterInputStream(content) {
+            @Override
+            public int read() throws IOException {
+                long readStart = System.nanoTime();
+                try {
+                    return super.read();
+                } finally {
+                    add(RequestPhase.BODY_READ, System.nanoTime() - readStart);
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                long readStart = System.nanoTime();
+                try {
+                    return super.read(b, off, len);
+                } finally {
+                    add(RequestPhase.BODY_READ, System.nanoTime() - readStart);
+                }
+            }
+
+            @Override
+            public long skip(long n) throws IOException {
+                long readStart = System.nanoTime();
+                try {
+                    return super.skip(n);
+                } finally {
+                    add(RequestPhase.BODY_READ, System.nanoTime() - readStart);
+                }
+            }
+        };
+    }
+
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * Reports the total time and the measured phases
+     */
+    void report(VkMetrics metrics) {
+        metrics.recordRequest(method, System.nanoTime() - start);
+        for (RequestPhase phase : PHASES) {
+            if ((measured & (1 << phase.ordinal())) != 0) {
+                metrics.recordPhase(method, phase, nanos[phase.ordinal()]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,76 @@
+package com.googlecode.vkapi;
+
+import java.util.concurrent.TimeUnit;
+
+import com.googlecode.vkapi.exceptions.VkException;
+
+/**
+ * Repeats failed attempts according to {@link RetryPolicy} and counts them
+ * in {@link RetryMetrics}
+ */
+class Retrier {
+
+    private final RetryPolicy policy;
+    private final RetryMetrics metrics;
+
+    Retrier(RetryPolicy policy, RetryMetrics metrics) {
+        this.policy = policy;
+        this.metrics = metrics;
+    }
+
+    /**
+     * One attempt of the call, e.g. one http request
+     */
+    interface Attempt<T> {
+        T perform() throws VkException;
+    }
+
+    /**
+     * Performs the attempt until it succeeds, fails with not retryable
+     * exception or the policy gives up
+     * 
+     * @param attempt to be performed
+     * @return result of the first successful attempt
+     * @throws VkException of the last attempt
+     */
+    public <T> T call(Attempt<T> attempt) throws VkException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(policy.getDeadlineMillis());
+
+        for (int number = 1;; number++) {
+            try {
+                T result = attempt.perform();
+                if (number > 1) {
+                    metrics.recovered();
+                }
+                return result;
+            } catch (VkException e) {
+                if (!policy.isRetryable(e)) {
+                    throw e;
+                }
+                if (number >= policy.getMaxAttempts()) {
+                    metrics.exhausted();
+                    throw e;
+                }
+
+                long backoff = policy.backoffMillis(number);
+                if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff) - deadline > 0) {
+                    metrics.deadlineExceeded();
+                    throw e;
+                }
+
+                metrics.retried(e);
+                pause(backoff);
+            }
+        }
+    }
+
+    private static void pause(long millis) throws VkException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new VkException("Interrupted while waiting for the request to be repeated");
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.googlecode.vkapi;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+
+/**
+ * Counters of the retries made by {@link RetryPolicy}
+ */
+public class RetryMetrics {
+
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong deadlineExceeded = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> retriesByReason = new ConcurrentHashMap<String, AtomicLong>();
+
+    void retried(VkException reason) {
+        retries.incrementAndGet();
+        counterFor(VkExceptions.reasonOf(reason)).incrementAndGet();
+    }
+
+    void recovered() {
+        recovered.incrementAndGet();
+    }
+
+    void exhausted() {
+        exhausted.incrementAndGet();
+    }
+
+    void deadlineExceeded() {
+        deadlineExceeded.incrementAndGet();
+    }
+
+    private AtomicLong counterFor(String reason) {
+        AtomicLong counter = retriesByReason.get(reason);
+        if (counter != null) {
+            return counter;
+        }
+
+        AtomicLong created = new AtomicLong();
+        AtomicLong existing = retriesByReason.putIfAbsent(reason, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * @return amount of repeated attempts
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return amount of calls which succeeded after being retried
+     */
+    public long getRecovered() {
+        return recovered.get();
+    }
+
+    /**
+     * @return amount of calls which failed after using all the attempts
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    /**
+     * @return amount of calls which failed because the next attempt
+     * couldn't start before the deadline
+     */
+    public long getDeadlineExceeded() {
+        return deadlineExceeded.get();
+    }
+
+    /**
+     * @return amount of retries by error code name, "IO" for unreachable
+     * vk.com and "HTTP_status" for http errors
+     */
+    public Map<String, Long> getRetriesByReason() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : retriesByReason.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryMetrics [retries=" + retries + ", recovered=" + recovered + ", exhausted=" + exhausted
+                + ", deadlineExceeded=" + deadlineExceeded + ", retriesByReason=" + getRetriesByReason() + "]";
+    }
+
+}
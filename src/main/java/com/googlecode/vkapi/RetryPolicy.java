@@ -0,0 +1,128 @@
+package com.googlecode.vkapi;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.googlecode.vkapi.domain.error.VkErrorCode;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkIOException;
+
+/**
+ * Decides which failed requests are repeated and how long to wait before
+ * repeating them. Transient errors, such as exceeding the rate limit or
+ * internal errors of vk.com, are retried with exponential backoff and full
+ * jitter, so the clients which failed together don't come back together.
+ * Errors which won't go away by themselves, such as expired token, fail at
+ * once.<br>
+ * <br>
+ *
+ * Retries stop when the amount of attempts is exhausted or when the next
+ * attempt can't start before the deadline of the call
+ *
+ * @see RetryPolicyBuilder
+ */
+public final class RetryPolicy {
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long deadlineMillis;
+    private final Set<VkErrorCode> retryableErrors;
+    private final boolean retryIoErrors;
+
+    RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis, long deadlineMillis,
+            Set<VkErrorCode> retryableErrors, boolean retryIoErrors) {
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.retryableErrors = retryableErrors.isEmpty()
+                ? Collections.<VkErrorCode> emptySet()
+                : Collections.unmodifiableSet(EnumSet.copyOf(retryableErrors));
+        this.retryIoErrors = retryIoErrors;
+    }
+
+    /**
+     * @return policy which retries errors 1, 6, 9 and 10 and failed http
+     * requests up to 4 attempts within 30 seconds
+     */
+    public static RetryPolicy defaults() {
+        return RetryPolicyBuilder.retryPolicy().build();
+    }
+
+    /**
+     * @return policy which never retries
+     */
+    public static RetryPolicy none() {
+        return RetryPolicyBuilder.retryPolicy().withMaxAttempts(1).build();
+    }
+
+    /**
+     * @param exception thrown by the attempt
+     * @return <code>true</code> if the same request may succeed when repeated
+     */
+    public boolean isRetryable(VkException exception) {
+        if (exception instanceof VkIOException) {
+            int status = ((VkIOException) exception).getStatusCode();
+            // no response at all, server errors and throttling are transient,
+            // the rest of http errors will be the same next time
+            return retryIoErrors && (status == 0 || status >= 500 || status == 429);
+        }
+
+        return exception.getError() != null && retryableErrors.contains(exception.getError().getError());
+    }
+
+    /**
+     * @param attempt number of the failed attempt, starting from 1
+     * @return random pause before the next attempt, up to the exponentially
+     * growing limit
+     */
+    public long backoffMillis(int attempt) {
+        long limit = initialBackoffMillis << Math.min(attempt - 1, 30);
+        if (limit <= 0 || limit > maxBackoffMillis) {
+            limit = maxBackoffMillis;
+        }
+        return ThreadLocalRandom.current().nextLong(limit + 1);
+    }
+
+    /**
+     * @return maximal amount of attempts including the first one
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    /**
+     * @return time since the first attempt after which no more attempts are
+     * started
+     */
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    public Set<VkErrorCode> getRetryableErrors() {
+        return retryableErrors;
+    }
+
+    public boolean isRetryIoErrors() {
+        return retryIoErrors;
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy [maxAttempts=" + maxAttempts + ", initialBackoffMillis=" + initialBackoffMillis
+                + ", maxBackoffMillis=" + maxBackoffMillis + ", deadlineMillis=" + deadlineMillis
+                + ", retryableErrors=" + retryableErrors + ", retryIoErrors=" + retryIoErrors + "]";
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.googlecode.vkapi;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.domain.error.VkErrorCode;
+
+/**
+ * Builder for {@link RetryPolicy} class
+ * 
+ * @see RetryPolicy
+ */
+public class RetryPolicyBuilder {
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 4;
+    public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 250;
+    public static final long DEFAULT_MAX_BACKOFF_MILLIS = 5000;
+    public static final long DEFAULT_DEADLINE_MILLIS = 30000;
+
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+    private long initialBackoffMillis = DEFAULT_INITIAL_BACKOFF_MILLIS;
+    private long maxBackoffMillis = DEFAULT_MAX_BACKOFF_MILLIS;
+    private long deadlineMillis = DEFAULT_DEADLINE_MILLIS;
+    private final Set<VkErrorCode> retryableErrors = EnumSet.of(VkErrorCode.UNKNOWN_ERROR_OCCURRED,
+            VkErrorCode.TOO_MANY_REQUESTS, VkErrorCode.FLOOD_CONTROL, VkErrorCode.INTERNAL_SERVER_ERROR);
+    private boolean retryIoErrors = true;
+
+    private RetryPolicyBuilder() {
+    }
+
+    public static RetryPolicyBuilder retryPolicy() {
+        return new RetryPolicyBuilder();
+    }
+
+    /**
+     * @param maxAttempts amount of attempts including the first one, 1 for
+     * no retries
+     */
+    public RetryPolicyBuilder withMaxAttempts(int maxAttempts) {
+        Validate.isTrue(maxAttempts > 0, "maxAttempts must be positive, got %d", maxAttempts);
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * @param initialBackoffMillis limit of the pause after the first failed
+     * attempt, doubled after each next one
+     * @param maxBackoffMillis limit of the pause after any attempt
+     */
+    public RetryPolicyBuilder withBackoff(long initialBackoffMillis, long maxBackoffMillis) {
+        Validate.isTrue(initialBackoffMillis > 0, "initialBackoffMillis must be positive, got %d",
+                initialBackoffMillis);
+        Validate.isTrue(maxBackoffMillis >= initialBackoffMillis,
+                "maxBackoffMillis %d is less than initialBackoffMillis %d", maxBackoffMillis, initialBackoffMillis);
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        return this;
+    }
+
+    /**
+     * @param deadlineMillis time since the first attempt after which no more
+     * attempts are started
+     */
+    public RetryPolicyBuilder withDeadlineMillis(long deadlineMillis) {
+        Validate.isTrue(deadlineMillis > 0, "deadlineMillis must be positive, got %d", deadlineMillis);
+        this.deadlineMillis = deadlineMillis;
+        return this;
+    }
+
+    /**
+     * @param code error which is retried in addition to the default ones
+     */
+    public RetryPolicyBuilder retrying(VkErrorCode code) {
+        Validate.isTrue(code != VkErrorCode.UNKNOWN, "Only known errors can be retried");
+        this.retryableErrors.add(code);
+        return this;
+    }
+
+    /**
+     * @param code error which fails at once
+     */
+    public RetryPolicyBuilder notRetrying(VkErrorCode code) {
+        this.retryableErrors.remove(code);
+        return this;
+    }
+
+    /**
+     * @param retryIoErrors <code>false</code> for failing at once when vk.com
+     * can't be reached
+     */
+    public RetryPolicyBuilder withRetryIoErrors(boolean retryIoErrors) {
+        this.retryIoErrors = retryIoErrors;
+        return this;
+    }
+
+    public RetryPolicy build() {
+        return new RetryPolicy(maxAttempts, initialBackoffMillis, maxBackoffMillis, deadlineMillis,
+                retryableErrors, retryIoErrors);
+    }
+
+}
@@ -0,0 +1,67 @@
+package com.googlecode.vkapi;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket implemented as generic cell rate algorithm: instead of
+ * counting tokens it keeps the theoretical arrival time of the next request.
+ * Requests reserve their slots in the order of arrival, so the waiting ones
+ * are served first-come first-served and the rate never exceeds the limit
+ * after a burst is spent
+ */
+class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstToleranceNanos;
+
+    private long theoreticalArrivalNanos = Long.MIN_VALUE;
+
+    /**
+     * @param requestsPerSecond sustained rate
+     * @param burst amount of requests allowed to go without a pause after
+     * idle period
+     */
+    TokenBucket(double requestsPerSecond, int burst) {
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / requestsPerSecond);
+        this.burstToleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    /**
+     * Reserves a slot for a request which can't be performed earlier than the
+     * given moment
+     *
+     * @param earliestNanos moment in terms of {@link System#nanoTime()}
+     * @return moment at which the request is allowed, not earlier than the
+     * given one
+     */
+    synchronized long reserve(long earliestNanos) {
+        long arrival = theoreticalArrivalNanos == Long.MIN_VALUE ? earliestNanos : theoreticalArrivalNanos;
+        long allowed = Math.max(earliestNanos, arrival - burstToleranceNanos);
+        theoreticalArrivalNanos = Math.max(arrival, allowed) + intervalNanos;
+        return allowed;
+    }
+
+    /**
+     * Finds the slot of the next request without reserving it
+     *
+     * @param earliestNanos moment in terms of {@link System#nanoTime()}
+     * @return moment at which the next request is allowed, not earlier than
+     * the given one
+     */
+    synchronized long nextAllowed(long earliestNanos) {
+        if (theoreticalArrivalNanos == Long.MIN_VALUE) {
+            return earliestNanos;
+        }
+        return Math.max(earliestNanos, theoreticalArrivalNanos - burstToleranceNanos);
+    }
+
+    /**
+     * @param nowNanos current moment
+     * @return <code>true</code> if no request was made for so long that the
+     * whole burst is available again
+     */
+    synchronized boolean isIdle(long nowNanos) {
+        return theoreticalArrivalNanos == Long.MIN_VALUE || theoreticalArrivalNanos <= nowNanos;
+    }
+
+}
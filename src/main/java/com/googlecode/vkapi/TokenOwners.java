@@ -0,0 +1,51 @@
+package com.googlecode.vkapi;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.exceptions.VkException;
+
+/**
+ * Remembers the ids of the users the access tokens belong to, so the owner
+ * of e.g. the photos is requested only once per token
+ */
+class TokenOwners {
+
+    /**
+     * Owners are remembered for the tokens of the active users, the cache is
+     * cleared when there are more
+     */
+    static final int MAX_CACHED_OWNERS = 10000;
+
+    private final ConcurrentMap<String, Integer> owners = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * @return id of the owner of the token, or <code>null</code> if it's not
+     * known yet
+     */
+    Integer get(OAuthToken authToken) {
+        return owners.get(authToken.getAccessToken());
+    }
+
+    /**
+     * @param authToken the user was requested with
+     * @param currentUser returned for the token
+     * @return id of the user
+     * @throws VkException if there's no user for the token
+     */
+    int remember(OAuthToken authToken, VkUser currentUser) throws VkException {
+        if (currentUser == null) {
+            // the token itself is a secret and is kept out of the message
+            throw new VkException("No user for the token");
+        }
+
+        if (owners.size() >= MAX_CACHED_OWNERS) {
+            owners.clear();
+        }
+        owners.put(authToken.getAccessToken(), currentUser.getVkUserId());
+        return currentUser.getVkUserId();
+    }
+
+}
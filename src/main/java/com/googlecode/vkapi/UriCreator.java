@@ -1,17 +1,79 @@
 package com.googlecode.vkapi;
 
-import org.apache.commons.lang3.StringUtils;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
 
 import com.googlecode.vkapi.domain.OAuthToken;
 
 /**
- * Creates urls for accessing VK.com api fuctions
+ * Creates urls for accessing VK.com api fuctions. The constant beginnings of
+ * the urls are prepared once, and the parameters are appended by
+ * {@link QueryBuilder}
  * 
  * @author Alexey Grigorev
  */
 class UriCreator {
 
-    private static final String METHOD_URI = "https://api.vk.com/method/";
+    public static final String DEFAULT_METHOD_URI = "https://api.vk.com/method/";
+    public static final String DEFAULT_OAUTH_URI = "https://oauth.vk.com/";
+
+    private static final String AUTHORIZE_URI = "http://oauth.vk.com/authorize?";
+    private static final String ACCESS_TOKEN = "access_token";
+
+    /**
+     * Lists of fields are usually constants, such as
+     * {@link HttpVkApi#USER_FIELDS}, so only a few of them are kept
+     */
+    private static final int MAX_CACHED_FIELDS = 32;
+
+    private final String accessTokenBase;
+    private final String usersGetBase;
+    private final String friendsGetBase;
+    private final String groupsGetBase;
+    private final String wallGetBase;
+    private final String friendsGetMutualBase;
+    private final String groupsGetByIdBase;
+    private final String groupsGetMembersBase;
+    private final String photosGetProfileBase;
+    private final String photosGetAlbumsBase;
+    private final String photosGetBase;
+    private final String photosGetByIdBase;
+    private final String executeBase;
+
+    // encoded "fields=..." by the identity of the array
+    private final ConcurrentMap<String[], String> fieldsParams = new ConcurrentHashMap<String[], String>();
+
+    public UriCreator() {
+        this(DEFAULT_METHOD_URI, DEFAULT_OAUTH_URI);
+    }
+
+    /**
+     * For pointing the requests to another server, e.g. to a local stand-in
+     * of vk.com in load tests
+     * 
+     * @param methodUri base uri of api methods, ending with "/method/"
+     * @param oauthUri base uri for obtaining access tokens, ending with "/"
+     */
+    public UriCreator(String methodUri, String oauthUri) {
+        Validate.isTrue(methodUri.endsWith("/method/"), "methodUri must end with /method/, got %s", methodUri);
+        Validate.isTrue(oauthUri.endsWith("/"), "oauthUri must end with /, got %s", oauthUri);
+
+        this.accessTokenBase = oauthUri + "access_token?";
+        this.usersGetBase = methodUri + "users.get?";
+        this.friendsGetBase = methodUri + "friends.get?";
+        this.groupsGetBase = methodUri + "groups.get?extended=1";
+        this.wallGetBase = methodUri + "wall.get?";
+        this.friendsGetMutualBase = methodUri + "friends.getMutual?";
+        this.groupsGetByIdBase = methodUri + "groups.getById?";
+        this.groupsGetMembersBase = methodUri + "groups.getMembers?";
+        this.photosGetProfileBase = methodUri + "photos.getProfile?extended=1&rev=1";
+        this.photosGetAlbumsBase = methodUri + "photos.getAlbums?need_system=1&need_covers=1&photo_sizes=1";
+        this.photosGetBase = methodUri + "photos.get?";
+        this.photosGetByIdBase = methodUri + "photos.getById?";
+        this.executeBase = methodUri + "execute?";
+    }
 
     /**
      * Generates uri for sending authorization requests
@@ -22,35 +84,74 @@ class UriCreator {
      * @return uri to be shown to the user to authorization
      */
     public String authUri(String appId, String[] scopes, String responseUri) {
-        return "http://oauth.vk.com/authorize?" + 
-                "client_id=" + appId + "&" + 
-                "scope=" + StringUtils.join(scopes, ",") + "&" + 
-                "redirect_uri=" + responseUri + "&" + 
-                "response_type=code";
+        return QueryBuilder.start(AUTHORIZE_URI)
+                .param("client_id", appId)
+                .list("scope", scopes)
+                .param("redirect_uri", responseUri)
+                .encoded("response_type=code")
+                .build();
     }
 
     public String accessTokenUri(String appId, String appKey, String redirect_uri, String code) {
-        return "https://oauth.vk.com/access_token?client_id=" + appId + "&client_secret=" + appKey +  "&redirect_uri=" + redirect_uri + "&code=" + code;
+        return QueryBuilder.start(accessTokenBase)
+                .param("client_id", appId)
+                .param("client_secret", appKey)
+                .param("redirect_uri", redirect_uri)
+                .param("code", code)
+                .build();
     }
 
     public String userInfoUri(String[] fields, OAuthToken authToken) {
-        return METHOD_URI + "users.get?" + 
-                "fields=" + StringUtils.join(fields, ",") + "&" + 
-                "access_token=" + authToken.getAccessToken();
+        return QueryBuilder.start(usersGetBase)
+                .encoded(fieldsParam(fields))
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
+    }
+
+    /**
+     * @param userIds array with the ids of the users
+     * @param from index of the first id to be requested
+     * @param to index after the last id to be requested
+     */
+    public String usersInfoUri(String[] fields, int[] userIds, int from, int to, OAuthToken authToken) {
+        return QueryBuilder.start(usersGetBase)
+                .list("uids", userIds, from, to)
+                .encoded(fieldsParam(fields))
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
     }
 
     public String userFriendsUri(String[] fields, OAuthToken authToken) {
-        return METHOD_URI + "friends.get?" + 
-                "fields=" + StringUtils.join(fields, ",") + "&" + 
-                "access_token=" + authToken.getAccessToken();
+        return QueryBuilder.start(friendsGetBase)
+                .encoded(fieldsParam(fields))
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
     }
     
+    public String userFriendsUri(String[] fields, OAuthToken authToken, int count, int offset) {
+        return QueryBuilder.start(friendsGetBase)
+                .encoded(fieldsParam(fields))
+                .param("count", count)
+                .param("offset", offset)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
+    }
+
+    public String userGroupsUri(String[] fields, OAuthToken authToken, int count, int offset) {
+        return QueryBuilder.start(groupsGetBase)
+                .encoded(fieldsParam(fields))
+                .param("count", count)
+                .param("offset", offset)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
+    }
+
     public String userGroupsUri(String[] fields, OAuthToken authToken, int count) {
-        return METHOD_URI + "groups.get?" + 
-                "extended=1&" +
-                "fields=" + StringUtils.join(fields, ",") + "&" +
-                "count=" + count + "&" +
-                "access_token=" + authToken.getAccessToken();
+        return QueryBuilder.start(groupsGetBase)
+                .encoded(fieldsParam(fields))
+                .param("count", count)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
     }
 
     public String groupWallMessages(long groupId, WallFiler filter, int limit, OAuthToken authToken) {
@@ -59,75 +160,142 @@ class UriCreator {
     }
     
     public String wallMessages(long userId, WallFiler filter, int limit, OAuthToken authToken) {
-        StringBuilder builder = new StringBuilder(32);
-        builder.append(METHOD_URI);
-        builder.append("wall.get?");
-        builder.append("owner_id=").append(userId).append("&");
+        return wallMessages(userId, filter, limit, 0, authToken);
+    }
+
+    public String groupWallMessages(long groupId, WallFiler filter, int limit, int offset, OAuthToken authToken) {
+        return wallMessages(-groupId, filter, limit, offset, authToken);
+    }
+
+    public String wallMessages(long userId, WallFiler filter, int limit, int offset, OAuthToken authToken) {
+        QueryBuilder builder = QueryBuilder.start(wallGetBase).param("owner_id", userId);
         if (limit > 0) {
-            builder.append("count=").append(limit);
+            builder.param("count", limit);
         }
-        builder.append("filter=").append(filter.filterName()).append("&");
-        builder.append("access_token=").append(authToken.getAccessToken());
-        return builder.toString();
+        if (offset > 0) {
+            builder.param("offset", offset);
+        }
+        return builder.param("filter", filter.filterName())
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
     }
 
     public String mutualFriends(int user1Id, int user2Id, OAuthToken authToken) {
-        return METHOD_URI + "friends.getMutual?" + 
-                "target_uid=" + user2Id + "&" +
-                "source_uid" + user1Id + "&" +
-                "access_token=" + authToken.getAccessToken();
+        return QueryBuilder.start(friendsGetMutualBase)
+                .param("target_uid", user2Id)
+                .param("source_uid", user1Id)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
+    }
+
+    /**
+     * @param targetIds array with the ids of the users compared with the
+     * source
+     * @param from index of the first target to be requested
+     * @param to index after the last target to be requested
+     */
+    public String mutualFriends(int sourceId, int[] targetIds, int from, int to, OAuthToken authToken) {
+        return QueryBuilder.start(friendsGetMutualBase)
+                .param("source_uid", sourceId)
+                .list("target_uids", targetIds, from, to)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
     }
 
     public String groupInfo(long groupId, OAuthToken authToken) {
-        return METHOD_URI + "groups.getById?" + 
-                "gid=" + groupId + "&" + 
-                "access_token=" + authToken.getAccessToken();
+        return QueryBuilder.start(groupsGetByIdBase)
+                .param("gid", groupId)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
+    }
+
+    /**
+     * @param groupIds array with the ids of the groups
+     * @param from index of the first id to be requested
+     * @param to index after the last id to be requested
+     */
+    public String groupsInfoUri(String[] fields, long[] groupIds, int from, int to, OAuthToken authToken) {
+        return QueryBuilder.start(groupsGetByIdBase)
+                .list("group_ids", groupIds, from, to)
+                .encoded(fieldsParam(fields))
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
     }
 
     public String groupUsers(long groupId, int count, int offset, OAuthToken authToken) {
-        return METHOD_URI + "groups.getMembers?" + 
-                "gid=" + groupId + "&" + 
-                "count=" + count + "&" +
-                "offset=" + offset + "&" + 
-                "access_token=" + authToken.getAccessToken();
+        return QueryBuilder.start(groupsGetMembersBase)
+                .param("gid", groupId)
+                .param("count", count)
+                .param("offset", offset)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
     }
 
     public String photosGetProfile(OAuthToken authToken) {
-        return METHOD_URI + "photos.getProfile?" +  
-                "extended=1&" +  
-                "rev=1&" +
-                "access_token=" + authToken.getAccessToken();
+        return QueryBuilder.start(photosGetProfileBase)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
     }
 
 	public String photosGetAlbums(OAuthToken authToken) {
-		return METHOD_URI + "photos.getAlbums?"
-				+ "need_system=1&"
-				+ "need_covers=1&"
-				+ "photo_sizes=1&"
-				+ "access_token=" + authToken.getAccessToken();
+		return QueryBuilder.start(photosGetAlbumsBase)
+				.param(ACCESS_TOKEN, authToken.getAccessToken())
+				.build();
 	}
 
 	public String photosGet(OAuthToken authToken, long album_id) {
-		return METHOD_URI + "photos.get?"
-				+ "album_id=" + album_id + "&"
-				+ "rev=1&"
-				+ "access_token=" + authToken.getAccessToken();
+		return QueryBuilder.start(photosGetBase)
+				.param("album_id", album_id)
+				.encoded("rev=1")
+				.param(ACCESS_TOKEN, authToken.getAccessToken())
+				.build();
 	}
 
 	public String photosGetById(OAuthToken authToken, String[] indexes) {
-		return METHOD_URI + "photos.getById?"
-				+ "photos=" + stringJoin(indexes, ",") + "&"
-				+ "access_token=" + authToken.getAccessToken();
+		return QueryBuilder.start(photosGetByIdBase)
+				.list("photos", indexes)
+				.param(ACCESS_TOKEN, authToken.getAccessToken())
+				.build();
 	}
 
-	private String stringJoin(String[] items, String join) {
-		String result = "";
-		for (int i = 0; i < items.length; i++) {
-			if (i > 0)
-				result += join;
+    /**
+     * Generates uri for "execute" method which performs several api calls
+     * written in VKScript within one request
+     * 
+     * @param code VKScript code, not encoded
+     * @param authToken for the calls
+     * @return uri for the request
+     */
+    public String executeUri(String code, OAuthToken authToken) {
+        return QueryBuilder.start(executeBase)
+                .param("code", code)
+                .param(ACCESS_TOKEN, authToken.getAccessToken())
+                .build();
+    }
+
+    /**
+     * @return encoded "fields=..." parameter, joined once per array
+     */
+    private String fieldsParam(String[] fields) {
+        String param = fieldsParams.get(fields);
+        if (param != null) {
+            return param;
+        }
+
+        StringBuilder builder = new StringBuilder("fields=");
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            QueryBuilder.encode(fields[i], builder);
+        }
+        param = builder.toString();
+
+        // arrays built for a single call are joined each time
+        if (fieldsParams.size() < MAX_CACHED_FIELDS) {
+            fieldsParams.put(fields, param);
+        }
+        return param;
+    }
 
-			result += items[i];
-		}
-		return result;
-	}
 }
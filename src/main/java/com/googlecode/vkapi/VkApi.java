@@ -1,6 +1,10 @@
 package com.googlecode.vkapi;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import com.googlecode.vkapi.domain.OAuthToken;
@@ -8,6 +12,8 @@ import com.googlecode.vkapi.domain.group.VkGroup;
 import com.googlecode.vkapi.domain.message.VkWallMessage;
 import com.googlecode.vkapi.domain.photo.VkAlbum;
 import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.IntIdSetBuilder;
 import com.googlecode.vkapi.domain.user.VkUser;
 import com.googlecode.vkapi.exceptions.VkException;
 
@@ -121,6 +127,46 @@ public interface VkApi {
      */
     Set<Integer> mutualFriends(int user1Id, int user2Id, OAuthToken authToken) throws VkException;
 
+    /**
+     * Gets ids of mutual friends of two users. Same as
+     * {@link #mutualFriends(int, int, OAuthToken)}, but keeps the ids in a
+     * compact primitive set
+     * 
+     * @param user1Id first user
+     * @param user2Id second user
+     * @param authToken for accessing vk.com
+     * @return set of mutual friends
+     * @throws VkException if something goes wrong
+     */
+    default IntIdSet mutualFriendIds(int user1Id, int user2Id, OAuthToken authToken) throws VkException {
+        IntIdSetBuilder result = IntIdSetBuilder.ids();
+        for (int id : mutualFriends(user1Id, user2Id, authToken)) {
+            result.add(id);
+        }
+        return result.build();
+    }
+
+    /**
+     * Gets ids of mutual friends of one user with each of the given users.
+     * {@link HttpVkApi} looks up to 100 users with one request, by default
+     * they are looked up one by one
+     * 
+     * @param sourceId the user whose friends are compared
+     * @param targetIds users compared with the source
+     * @param authToken for accessing vk.com
+     * @return mutual friends by the target in the order of the targets;
+     * targets not returned by vk.com are skipped
+     * @throws VkException if something goes wrong
+     */
+    default Map<Integer, IntIdSet> mutualFriendIds(int sourceId, int[] targetIds, OAuthToken authToken)
+            throws VkException {
+        Map<Integer, IntIdSet> result = new LinkedHashMap<Integer, IntIdSet>();
+        for (int targetId : targetIds) {
+            result.put(targetId, mutualFriendIds(sourceId, targetId, authToken));
+        }
+        return result;
+    }
+
     /**
      * Extracts info about the group
      * 
@@ -131,6 +177,28 @@ public interface VkApi {
      */
     VkGroup groupInfo(long groupId, OAuthToken authToken) throws VkException;
 
+    /**
+     * Extracts info about the given groups, e.g. of the ones returned by
+     * {@link #getGroups(OAuthToken, int)}. Long lists of ids are requested by
+     * chunks, by default the groups are requested one by one
+     * 
+     * @param groupIds ids of the groups
+     * @param authToken for accessing vk.com
+     * @return groups in the order of the ids; groups which don't exist are
+     * skipped
+     * @throws VkException if something goes wrong
+     */
+    default List<VkGroup> groupsInfo(long[] groupIds, OAuthToken authToken) throws VkException {
+        List<VkGroup> result = new ArrayList<VkGroup>(groupIds.length);
+        for (long groupId : groupIds) {
+            VkGroup group = groupInfo(groupId, authToken);
+            if (group != null) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
     /**
      * Extracts all users of the given group by its id
      * 
@@ -141,6 +209,24 @@ public interface VkApi {
      */
     Set<Integer> groupUsers(long vkGroupId, OAuthToken authToken) throws VkException;
 
+    /**
+     * Extracts ids of all users of the given group. Same as
+     * {@link #groupUsers(long, OAuthToken)}, but keeps the ids in a compact
+     * primitive set, which is preferable for large groups
+     * 
+     * @param vkGroupId of the group
+     * @param authToken for extraction
+     * @return set of users' ids
+     * @throws VkException if something goes wrong
+     */
+    default IntIdSet groupUserIds(long vkGroupId, OAuthToken authToken) throws VkException {
+        IntIdSetBuilder result = IntIdSetBuilder.ids();
+        for (int id : groupUsers(vkGroupId, authToken)) {
+            result.add(id);
+        }
+        return result.build();
+    }
+
     Collection<VkPhoto> currentUserProfilePhotos(OAuthToken authToken) throws VkException;
 
 	Collection<VkAlbum> albums(OAuthToken authToken) throws VkException;
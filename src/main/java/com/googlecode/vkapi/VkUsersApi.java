@@ -0,0 +1,33 @@
+package com.googlecode.vkapi;
+
+import java.util.List;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.exceptions.VkException;
+
+/**
+ * {@link VkApi} which also looks up profiles of arbitrary users. Kept apart
+ * from {@link VkApi} as there's no method for a single user there to build it
+ * on, so the other implementations of {@link VkApi} aren't forced to support
+ * it
+ *
+ * @see HttpVkApi
+ */
+public interface VkUsersApi extends VkApi {
+
+    /**
+     * Extracts profiles of the given users, e.g. of the ones returned by
+     * {@link #groupUserIds(long, OAuthToken)}. Long lists of ids are
+     * requested by chunks
+     *
+     * @param userIds ids of the users
+     * @param authToken for accessing vk.com
+     * @return users in the order of the ids; users which don't exist are
+     * skipped, deleted and banned ones are returned as
+     * {@link VkUser#isDeactivated()}
+     * @throws VkException if something goes wrong
+     */
+    List<VkUser> usersInfo(int[] userIds, OAuthToken authToken) throws VkException;
+
+}
@@ -0,0 +1,121 @@
+package com.googlecode.vkapi;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Least recently used cache bounded by the total weight of the values. Each
+ * value has its own time to live and is dropped on the first access after
+ * it expires
+ */
+class WeightedLruCache<K, V> {
+
+    private final long maxWeight;
+    private final LinkedHashMap<K, Entry<V>> entries = new LinkedHashMap<K, Entry<V>>(64, 0.75f, true);
+
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param maxWeight total weight of the values after which the least
+     * recently used ones are evicted
+     */
+    WeightedLruCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * @param key of the value
+     * @return value, or <code>null</code> if there's no value or it's expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses++;
+            return null;
+        }
+
+        if (entry.expiresAtNanos - System.nanoTime() <= 0) {
+            entries.remove(key);
+            weight = weight - entry.weight;
+            expirations++;
+            misses++;
+            return null;
+        }
+
+        hits++;
+        return entry.value;
+    }
+
+    /**
+     * Puts the value and evicts the least recently used values if the cache
+     * gets too heavy. Values heavier than the whole cache are not kept
+     * 
+     * @param key of the value
+     * @param value to be cached
+     * @param valueWeight weight of the value and the key
+     * @param ttlMillis time to live of the value
+     */
+    public synchronized void put(K key, V value, long valueWeight, long ttlMillis) {
+        if (valueWeight > maxWeight) {
+            return;
+        }
+
+        long expiresAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        Entry<V> previous = entries.put(key, new Entry<V>(value, valueWeight, expiresAt));
+        if (previous != null) {
+            weight = weight - previous.weight;
+        }
+        weight = weight + valueWeight;
+
+        Iterator<Entry<V>> eldest = entries.values().iterator();
+        while (weight > maxWeight) {
+            Entry<V> evicted = eldest.next();
+            eldest.remove();
+            weight = weight - evicted.weight;
+            evictions++;
+        }
+    }
+
+    /**
+     * @param condition for the keys to be removed
+     */
+    public synchronized void invalidateIf(Predicate<? super K> condition) {
+        Iterator<Map.Entry<K, Entry<V>>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, Entry<V>> next = it.next();
+            if (condition.test(next.getKey())) {
+                it.remove();
+                weight = weight - next.getValue().weight;
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, evictions, expirations, entries.size(), weight);
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long expiresAtNanos;
+
+        Entry(V value, long weight, long expiresAtNanos) {
+            this.value = value;
+            this.weight = weight;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+}
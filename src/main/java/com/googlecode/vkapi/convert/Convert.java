@@ -155,6 +155,8 @@ final class Convert {
         if (signerNode != null) {
             builder.addSigner(VkMessageSender.of(signerNode.asInt()));
         }
+        JsonNode pinnedNode = node.get("is_pinned");
+        builder.addPinned(pinnedNode != null && pinnedNode.asInt() == 1);
 
         addWallMessageAttachments(builder, node);
 
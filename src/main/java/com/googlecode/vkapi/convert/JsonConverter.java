@@ -1,11 +1,16 @@
 package com.googlecode.vkapi.convert;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.googlecode.vkapi.domain.VkOAuthToken;
@@ -15,8 +20,11 @@ import com.googlecode.vkapi.domain.group.VkGroup;
 import com.googlecode.vkapi.domain.message.VkWallMessage;
 import com.googlecode.vkapi.domain.photo.VkAlbum;
 import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.GroupUserIds;
 import com.googlecode.vkapi.domain.user.GroupUsers;
+import com.googlecode.vkapi.domain.user.IntIdSet;
 import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.domain.user.VkUserBatch;
 
 /**
  * Converts json responses from VK.com
@@ -35,8 +43,75 @@ public class JsonConverter {
 
     public List<VkUser> jsonToUserList(String json) {
         logger.debug("jsonToUserList: processing {}...", json);
+        return readResponse(json, ResponseReaders.USER_LIST);
+    }
+
+    /**
+     * Same as {@link #jsonToUserList(String)}, but the users are kept by
+     * columns, without an object per user
+     */
+    public VkUserBatch jsonToUserBatch(String json) {
+        logger.debug("jsonToUserBatch: processing {}...", json);
+        return readResponse(json, ResponseReaders.USER_BATCH);
+    }
+
+    public List<VkPhoto> jsonToPhotoList(String json) {
+        logger.debug("jsonToPhotoList: processing {}...", json);
+        return readResponse(json, ResponseReaders.PHOTO_LIST);
+    }
+
+    public List<VkAlbum> jsonToAlbumsList(String json) {
+        logger.debug("jsonToAlbumsList: processing {}...", json);
+        return readResponse(json, ResponseReaders.ALBUM_LIST);
+    }
+
+    public VkOAuthToken jsonToAuthToken(String json) {
+        JsonNode root = toJsonNode(json);
+        return Convert.toAuthToken(root);
+    }
+
+    public Collection<VkWallMessage> jsonToWallMessage(String json) {
+        logger.debug("jsonToWallMessage: processing {}...", json);
+        return readResponse(json, ResponseReaders.WALL_MESSAGES);
+    }
+
+    public Set<Integer> jsonToIntegerSet(String json) {
+        logger.debug("jsonToIntegerList: processing {}...", json);
+        return readResponse(json, ResponseReaders.INTEGER_SET);
+    }
+
+    public List<VkGroup> jsonToVkGroups(String json) {
+        logger.debug("jsonToVkGroups: processing {}...", json);
+        return readResponse(json, ResponseReaders.GROUP_LIST);
+    }
+    
+    public GroupUsers jsonToGroupUsers(String json) {
+        return readResponse(json, ResponseReaders.GROUP_USERS);
+    }
+
+    /**
+     * Reads array of ids straight from the token stream, without boxing them
+     */
+    public IntIdSet jsonToIntIdSet(String json) {
+        logger.debug("jsonToIntIdSet: processing {}...", json);
+        return readResponse(json, ResponseReaders.INT_ID_SET);
+    }
+
+    public GroupUserIds jsonToGroupUserIds(String json) {
+        return readResponse(json, ResponseReaders.GROUP_USER_IDS);
+    }
 
-        Iterator<JsonNode> elements = getRootResponseArray(json);
+    /**
+     * Converts already parsed value of "response" field to users. The
+     * <code>jsonTo*</code> methods read the json as a stream and don't build
+     * the tree; methods taking {@link JsonNode} are for the responses which
+     * have to be parsed into the tree anyway
+     * 
+     * @param response array of users
+     * @return list of users
+     */
+    public List<VkUser> nodeToUserList(JsonNode response) {
+        Iterator<JsonNode> elements = toArrayElements(response);
 
         List<VkUser> result = new ArrayList<VkUser>();
         while (elements.hasNext()) {
@@ -47,60 +122,32 @@ public class JsonConverter {
         return result;
     }
 
-    public List<VkPhoto> jsonToPhotoList(String json) {
-        logger.debug("jsonToPhotoList: processing {}...", json);
-
-        Iterator<JsonNode> elements = getRootResponseArray(json);
+    public List<VkPhoto> nodeToPhotoList(JsonNode response) {
+        Iterator<JsonNode> elements = toArrayElements(response);
 
         List<VkPhoto> result = new ArrayList<VkPhoto>();
         while (elements.hasNext()) {
-            VkPhoto user = Convert.toVkPhoto(elements.next());
-            result.add(user);
+            VkPhoto photo = Convert.toVkPhoto(elements.next());
+            result.add(photo);
         }
 
         return result;
     }
 
-	public List<VkAlbum> jsonToAlbumsList(String json) {
-		logger.debug("jsonToAlbumsList: processing {}...", json);
+    public List<VkAlbum> nodeToAlbumsList(JsonNode response) {
+        Iterator<JsonNode> elements = toArrayElements(response);
 
-		Iterator<JsonNode> elements = getRootResponseArray(json);
-
-		List<VkAlbum> result = new ArrayList<VkAlbum>();
-		while (elements.hasNext()) {
-			VkAlbum album = Convert.toVkAlbum(elements.next());
-			result.add(album);
-		}
-
-		return result;
-	}
-
-    private Iterator<JsonNode> getRootResponseArray(String json) {
-        JsonNode jsonNode = getRootResponse(json);
-        Validate.isTrue(jsonNode.isArray(), "expected array in response, got: %s", jsonNode);
-        return jsonNode.iterator();
-    }
-    
-    private JsonNode getRootResponse(String json) {
-        return toJsonNode(json).get("response");
-    }
-    
-    private JsonNode toJsonNode(String json) {
-        try {
-            return mapper.readTree(json);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("can't parse given json, got: " + json, e);
+        List<VkAlbum> result = new ArrayList<VkAlbum>();
+        while (elements.hasNext()) {
+            VkAlbum album = Convert.toVkAlbum(elements.next());
+            result.add(album);
         }
-    }
 
-    public VkOAuthToken jsonToAuthToken(String json) {
-        JsonNode root = toJsonNode(json);
-        return Convert.toAuthToken(root);
+        return result;
     }
 
-    public Collection<VkWallMessage> jsonToWallMessage(String json) {
-        logger.debug("jsonToWallMessage: processing {}...", json);
-        Iterator<JsonNode> elements = getRootResponseArray(json);
+    public List<VkWallMessage> nodeToWallMessage(JsonNode response) {
+        Iterator<JsonNode> elements = toArrayElements(response);
 
         List<VkWallMessage> result = new ArrayList<VkWallMessage>();
         while (elements.hasNext()) {
@@ -117,52 +164,208 @@ public class JsonConverter {
         return result;
     }
 
-    public Set<Integer> jsonToIntegerSet(String json) {
-        logger.debug("jsonToIntegerList: processing {}...", json);
-        Iterator<JsonNode> elements = getRootResponseArray(json);
-        return toIntegers(elements);
-    }
+    public List<VkGroup> nodeToVkGroups(JsonNode response) {
+        List<VkGroup> result = new ArrayList<VkGroup>();
 
-    private static Set<Integer> toIntegers(Iterator<JsonNode> elements) {
-        Set<Integer> result = new HashSet<Integer>();
+        // total count precedes the groups in groups.get only
+        Iterator<JsonNode> elements = toArrayElements(response);
         while (elements.hasNext()) {
-            JsonNode next = elements.next();
-            result.add(next.asInt());
+            JsonNode element = elements.next();
+            if (!element.isNumber()) {
+                result.add(Convert.toVkGroup(element));
+            }
         }
+
         return result;
     }
 
-    public List<VkGroup> jsonToVkGroups(String json) {
-        logger.debug("jsonToVkGroups: processing {}...", json);
-        List<VkGroup> result = new ArrayList<VkGroup>();
+    /**
+     * Parses the whole json into the tree
+     * 
+     * @param json to be parsed
+     * @return value of "response" field
+     */
+    public JsonNode jsonToResponseNode(String json) {
+        return toJsonNode(json).get("response");
+    }
 
-        Iterator<JsonNode> elements = getRootResponseArray(json);
-        if (elements.hasNext())
-        	elements.next();
+    private static Iterator<JsonNode> toArrayElements(JsonNode response) {
+        Validate.isTrue(response.isArray(), "expected array in response, got: %s", response);
+        return response.iterator();
+    }
 
-        while (elements.hasNext()) {
-            VkGroup vkGroup = Convert.toVkGroup(elements.next());
-            result.add(vkGroup);
+    private JsonNode toJsonNode(String json) {
+        try {
+            return mapper.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("can't parse given json, got: " + json, e);
         }
+    }
 
-        return result;
+    /**
+     * Reads the answer of vk.com straight from the stream, without copying it
+     * into a string. Errors are detected while parsing: if the answer contains
+     * "error" instead of "response", it is returned in {@link VkResponse}
+     * 
+     * @param content stream with json, not closed by this method
+     * @param reader for converting the response
+     * @return converted response or error
+     * @throws IOException if the stream can't be read or the content is not
+     * valid json, e.g. truncated, so the request can be retried
+     * @throws IllegalArgumentException if the json doesn't have the expected
+     * structure, which won't change on retries
+     */
+    public <T> VkResponse<T> readResponse(InputStream content, ResponseReader<T> reader) throws IOException {
+        JsonParser parser = mapper.getFactory().createParser(content);
+        parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        try {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                throw new IOException("empty response");
+            }
+            Validate.isTrue(first == JsonToken.START_OBJECT, "expected json object");
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("response".equals(field)) {
+                    return VkResponse.of(reader.read(parser));
+                } else if ("error".equals(field)) {
+                    return VkResponse.error(StreamConvert.toVkError(parser));
+                }
+                parser.skipChildren();
+            }
+
+            throw new IllegalArgumentException("neither response nor error found in json");
+        } catch (JsonProcessingException e) {
+            throw new IOException("can't parse response", e);
+        } finally {
+            closeQuietly(parser);
+        }
     }
-    
-    public GroupUsers jsonToGroupUsers(String json) {
-        JsonNode response = getRootResponse(json);
-        
-        int totalCount = response.get("count").asInt();
-        JsonNode usersNode = response.get("users");
-        Set<Integer> users = toIntegers(usersNode.iterator());
-        
-        return new GroupUsers(totalCount, users);
+
+    /**
+     * Reads the answer of vk.com "execute" method. The results of the
+     * batched calls are kept as trees, so they can be converted separately
+     * with {@link #readNode(JsonNode, ResponseReader)}
+     * 
+     * @param content stream with json, not closed by this method
+     * @return results of the calls or error of the whole execute request
+     * @throws IOException if the stream can't be read or the content is not
+     * valid json
+     * @throws IllegalArgumentException if the json doesn't have the expected
+     * structure
+     */
+    public VkResponse<VkExecuteResponse> readExecuteResponse(InputStream content) throws IOException {
+        JsonNode root;
+        try {
+            JsonParser parser = mapper.getFactory().createParser(content);
+            parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+            root = mapper.readTree(parser);
+        } catch (JsonProcessingException e) {
+            throw new IOException("can't parse response", e);
+        }
+
+        if (root == null) {
+            throw new IOException("empty response");
+        }
+        Validate.isTrue(root.isObject(), "expected json object, got: %s", root);
+        JsonNode error = root.get("error");
+        if (error != null) {
+            return VkResponse.error(nodeToVkError(error));
+        }
+
+        JsonNode response = root.get("response");
+        Validate.isTrue(response != null && response.isArray(), "expected array in response, got: %s", root);
+
+        List<JsonNode> results = new ArrayList<JsonNode>(response.size());
+        for (JsonNode result : response) {
+            results.add(result);
+        }
+
+        List<VkErrorResponse> errors = new ArrayList<VkErrorResponse>();
+        JsonNode executeErrors = root.get("execute_errors");
+        if (executeErrors != null && executeErrors.isArray()) {
+            for (JsonNode executeError : executeErrors) {
+                errors.add(nodeToVkError(executeError));
+            }
+        }
+
+        return VkResponse.of(new VkExecuteResponse(results, errors));
+    }
+
+    /**
+     * Converts already parsed response with the reader made for the streams
+     * 
+     * @param response value of "response" field or one of the results of
+     * execute
+     * @param reader for converting the response
+     * @return converted response
+     */
+    public <T> T readNode(JsonNode response, ResponseReader<T> reader) {
+        try {
+            JsonParser parser = response.traverse(mapper);
+            parser.nextToken();
+            return reader.read(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("can't convert given json, got: " + response, e);
+        }
+    }
+
+    private <T> T readResponse(String json, ResponseReader<T> reader) {
+        JsonParser parser = null;
+        try {
+            parser = mapper.getFactory().createParser(json);
+            moveToResponse(parser);
+            return reader.read(parser);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("can't parse given json, got: " + json, e);
+        } finally {
+            closeQuietly(parser);
+        }
+    }
+
+    /**
+     * Moves the parser to the value of "response" field
+     */
+    private static void moveToResponse(JsonParser parser) throws IOException {
+        Validate.isTrue(parser.nextToken() == JsonToken.START_OBJECT, "expected json object");
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("response".equals(field)) {
+                return;
+            }
+            parser.skipChildren();
+        }
+
+        throw new IllegalArgumentException("no response field in given json");
+    }
+
+    private static void closeQuietly(JsonParser parser) {
+        if (parser == null) {
+            return;
+        }
+        try {
+            parser.close();
+        } catch (IOException e) {
+            logger.warn("can't close json parser", e);
+        }
     }
 
     public VkErrorResponse jsonToVkError(String json) {
         logger.debug("jsonToVkError: processing {}...", json);
 
-        JsonNode jsonNode = toJsonNode(json).get("error");
+        return nodeToVkError(toJsonNode(json).get("error"));
+    }
 
+    /**
+     * @param jsonNode value of "error" field or an element of
+     * "execute_errors"
+     * @return converted error
+     */
+    public VkErrorResponse nodeToVkError(JsonNode jsonNode) {
         int errorCode = jsonNode.get("error_code").asInt();
         String errorMessage = jsonNode.get("error_msg").asText();
 
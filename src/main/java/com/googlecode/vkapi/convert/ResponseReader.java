@@ -0,0 +1,22 @@
+package com.googlecode.vkapi.convert;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+/**
+ * Reads the value of "response" field of vk.com answer straight from the json
+ * token stream
+ *
+ * @see ResponseReaders
+ */
+public interface ResponseReader<T> {
+
+    /**
+     * @param parser positioned at the first token of the response value
+     * @return converted response
+     * @throws IOException if the json can't be read
+     */
+    T read(JsonParser parser) throws IOException;
+
+}
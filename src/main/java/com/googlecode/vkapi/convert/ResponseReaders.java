@@ -0,0 +1,141 @@
+package com.googlecode.vkapi.convert;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.googlecode.vkapi.domain.CompactStrings;
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.message.WallMessages;
+import com.googlecode.vkapi.domain.photo.VkAlbum;
+import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.GroupUserIds;
+import com.googlecode.vkapi.domain.user.GroupUsers;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.IntIdSetBuilder;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.domain.user.VkUserBatch;
+
+/**
+ * {@link ResponseReader}s for all kinds of responses returned by vk.com
+ */
+public final class ResponseReaders {
+
+    private ResponseReaders() {
+    }
+
+    public static final ResponseReader<List<VkUser>> USER_LIST = new ResponseReader<List<VkUser>>() {
+        @Override
+        public List<VkUser> read(JsonParser parser) throws IOException {
+            return StreamConvert.toUserList(parser);
+        }
+    };
+
+    public static final ResponseReader<VkUserBatch> USER_BATCH = new ResponseReader<VkUserBatch>() {
+        @Override
+        public VkUserBatch read(JsonParser parser) throws IOException {
+            return StreamConvert.toUserBatch(parser);
+        }
+    };
+
+    public static final ResponseReader<List<VkPhoto>> PHOTO_LIST = new ResponseReader<List<VkPhoto>>() {
+        @Override
+        public List<VkPhoto> read(JsonParser parser) throws IOException {
+            return StreamConvert.toPhotoList(parser);
+        }
+    };
+
+    public static final ResponseReader<List<VkAlbum>> ALBUM_LIST = new ResponseReader<List<VkAlbum>>() {
+        @Override
+        public List<VkAlbum> read(JsonParser parser) throws IOException {
+            return StreamConvert.toAlbumList(parser);
+        }
+    };
+
+    public static final ResponseReader<List<VkWallMessage>> WALL_MESSAGES = new ResponseReader<List<VkWallMessage>>() {
+        @Override
+        public List<VkWallMessage> read(JsonParser parser) throws IOException {
+            return StreamConvert.toWallMessageList(parser);
+        }
+    };
+
+    public static final ResponseReader<WallMessages> WALL_PAGE = new ResponseReader<WallMessages>() {
+        @Override
+        public WallMessages read(JsonParser parser) throws IOException {
+            return StreamConvert.toWallMessages(parser);
+        }
+    };
+
+    public static final ResponseReader<List<VkGroup>> GROUP_LIST = new ResponseReader<List<VkGroup>>() {
+        @Override
+        public List<VkGroup> read(JsonParser parser) throws IOException {
+            return StreamConvert.toGroupList(parser);
+        }
+    };
+
+    public static final ResponseReader<Set<Integer>> INTEGER_SET = new ResponseReader<Set<Integer>>() {
+        @Override
+        public Set<Integer> read(JsonParser parser) throws IOException {
+            return StreamConvert.toIntegerSet(parser);
+        }
+    };
+
+    public static final ResponseReader<IntIdSet> INT_ID_SET = new ResponseReader<IntIdSet>() {
+        @Override
+        public IntIdSet read(JsonParser parser) throws IOException {
+            return StreamConvert.toIntIdSet(parser, IntIdSetBuilder.ids());
+        }
+    };
+
+    public static final ResponseReader<Map<Integer, IntIdSet>> MUTUAL_FRIENDS =
+            new ResponseReader<Map<Integer, IntIdSet>>() {
+        @Override
+        public Map<Integer, IntIdSet> read(JsonParser parser) throws IOException {
+            return StreamConvert.toMutualFriends(parser);
+        }
+    };
+
+    public static final ResponseReader<GroupUsers> GROUP_USERS = new ResponseReader<GroupUsers>() {
+        @Override
+        public GroupUsers read(JsonParser parser) throws IOException {
+            return StreamConvert.toGroupUsers(parser);
+        }
+    };
+
+    public static final ResponseReader<GroupUserIds> GROUP_USER_IDS = new ResponseReader<GroupUserIds>() {
+        @Override
+        public GroupUserIds read(JsonParser parser) throws IOException {
+            return StreamConvert.toGroupUserIds(parser);
+        }
+    };
+
+    /**
+     * @param strings tables the users are compacted with
+     * @return reader of users sharing their strings
+     */
+    public static ResponseReader<List<VkUser>> userList(final CompactStrings strings) {
+        return new ResponseReader<List<VkUser>>() {
+            @Override
+            public List<VkUser> read(JsonParser parser) throws IOException {
+                return StreamConvert.toUserList(parser, strings);
+            }
+        };
+    }
+
+    /**
+     * @param strings tables the groups are compacted with
+     * @return reader of groups sharing their strings
+     */
+    public static ResponseReader<List<VkGroup>> groupList(final CompactStrings strings) {
+        return new ResponseReader<List<VkGroup>>() {
+            @Override
+            public List<VkGroup> read(JsonParser parser) throws IOException {
+                return StreamConvert.toGroupList(parser, strings);
+            }
+        };
+    }
+
+}
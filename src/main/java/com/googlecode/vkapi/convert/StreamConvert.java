@@ -0,0 +1,739 @@
+package com.googlecode.vkapi.convert;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.Validate;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.googlecode.vkapi.domain.CompactStrings;
+import com.googlecode.vkapi.domain.error.VkErrorResponse;
+import com.googlecode.vkapi.domain.error.VkMethodParam;
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.group.VkGroupBuilder;
+import com.googlecode.vkapi.domain.message.VkAttachment;
+import com.googlecode.vkapi.domain.message.VkAttachmentType;
+import com.googlecode.vkapi.domain.message.VkLinkAttachment;
+import com.googlecode.vkapi.domain.message.VkMessageSender;
+import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.message.VkWallMessageBuilder;
+import com.googlecode.vkapi.domain.message.WallMessages;
+import com.googlecode.vkapi.domain.photo.VkAlbum;
+import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.GroupUserIds;
+import com.googlecode.vkapi.domain.user.GroupUsers;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.IntIdSetBuilder;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.domain.user.VkUserBatch;
+import com.googlecode.vkapi.domain.user.VkUserBatchBuilder;
+import com.googlecode.vkapi.domain.user.VkUserBuilder;
+
+/**
+ * Utility class for converting json token stream to vk.com domain objects
+ * without building intermediate {@link com.fasterxml.jackson.databind.JsonNode}
+ * tree. Gives the same results as {@link Convert}.<br>
+ * <br>
+ *
+ * All the methods expect the parser to be positioned at the first token of the
+ * value being read and leave it at the last token of that value
+ */
+final class StreamConvert {
+
+    private static final String[] photoSizes = { "w", "z", "y", "x", "m", "s" };
+    private static final String[] previewSizes = { "q", "p", "o" };
+    private static final String[] photoSizesBasic = { "src_xxxbig", "src_xxbig", "src_xbig", "src_big", "src",
+            "src_small" };
+
+    private StreamConvert() {
+    }
+
+    public static List<VkUser> toUserList(JsonParser parser) throws IOException {
+        return toUserList(parser, null);
+    }
+
+    /**
+     * @param strings tables the users are compacted with, or <code>null</code>
+     */
+    public static List<VkUser> toUserList(JsonParser parser, CompactStrings strings) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<VkUser> result = new ArrayList<VkUser>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            result.add(toVkUser(parser, strings));
+        }
+        return result;
+    }
+
+    public static VkUser toVkUser(JsonParser parser) throws IOException {
+        return toVkUser(parser, null);
+    }
+
+    /**
+     * @param strings tables the user is compacted with, or <code>null</code>
+     */
+    public static VkUser toVkUser(JsonParser parser, CompactStrings strings) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        int vkUserId = 0, sex = 0;
+        String firstName = null, lastName = null, photo = null, avatar = null, about = null, bdate = null;
+        boolean isDeactivated = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("uid".equals(field)) {
+                vkUserId = parser.getValueAsInt();
+            } else if ("first_name".equals(field)) {
+                firstName = text(parser);
+            } else if ("last_name".equals(field)) {
+                lastName = text(parser);
+            } else if ("photo_max_orig".equals(field)) {
+                photo = text(parser);
+            } else if ("photo_100".equals(field)) {
+                avatar = text(parser);
+            } else if ("about".equals(field)) {
+                about = text(parser);
+            } else if ("deactivated".equals(field)) {
+                parser.skipChildren();
+                isDeactivated = true;
+            } else if ("sex".equals(field)) {
+                sex = parser.getValueAsInt();
+            } else if ("bdate".equals(field)) {
+                // date format: "7.7.1987"
+                bdate = text(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        VkUserBuilder builder = VkUserBuilder.user(vkUserId).addName(firstName, lastName).setSex(sex - 1)
+                .setAbout(about).setDeactivated(isDeactivated);
+        builder.addPhoto(photo);
+        builder.addAvatar(avatar);
+        if (bdate != null) {
+            builder.addBirthday(bdate);
+        }
+        if (strings != null) {
+            builder.compactWith(strings);
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Reads users straight into the columns of the batch: strings are copied
+     * from the buffer of the parser, so neither builders nor strings are
+     * created per user
+     */
+    public static VkUserBatch toUserBatch(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        VkUserBatchBuilder batch = VkUserBatchBuilder.userBatch();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser, JsonToken.START_OBJECT);
+            batch.startUser(0);
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+
+                if ("uid".equals(field)) {
+                    batch.setVkUserId(parser.getValueAsInt());
+                } else if ("sex".equals(field)) {
+                    batch.setSex(parser.getValueAsInt() - 1);
+                } else if ("deactivated".equals(field)) {
+                    parser.skipChildren();
+                    batch.setDeactivated(true);
+                } else if (token.isStructStart()) {
+                    // same as text(parser)
+                    parser.skipChildren();
+                    setText(batch, field, new char[0], 0, 0);
+                } else {
+                    setText(batch, field, parser.getTextCharacters(), parser.getTextOffset(),
+                            parser.getTextLength());
+                }
+            }
+        }
+        return batch.build();
+    }
+
+    private static void setText(VkUserBatchBuilder batch, String field, char[] chars, int offset, int length) {
+        if ("first_name".equals(field)) {
+            batch.setFirstName(chars, offset, length);
+        } else if ("last_name".equals(field)) {
+            batch.setLastName(chars, offset, length);
+        } else if ("photo_max_orig".equals(field)) {
+            batch.setPhoto(chars, offset, length);
+        } else if ("photo_100".equals(field)) {
+            batch.setAvatar(chars, offset, length);
+        } else if ("about".equals(field)) {
+            batch.setAbout(chars, offset, length);
+        } else if ("bdate".equals(field)) {
+            batch.setBdate(chars, offset, length);
+        }
+    }
+
+    public static List<VkPhoto> toPhotoList(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<VkPhoto> result = new ArrayList<VkPhoto>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            result.add(toVkPhoto(parser));
+        }
+        return result;
+    }
+
+    public static VkPhoto toVkPhoto(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        VkPhoto vkPhoto = new VkPhoto();
+        String[] urls = new String[photoSizesBasic.length];
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            int sizeIndex = indexOf(photoSizesBasic, field);
+            if (sizeIndex >= 0) {
+                urls[sizeIndex] = text(parser);
+            } else if ("pid".equals(field)) {
+                vkPhoto.setPhotoId(parser.getValueAsInt());
+            } else if ("likes".equals(field)) {
+                readLikes(parser, vkPhoto);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        vkPhoto.setUrl3ExtraBig(firstNonNull(urls, 0));
+        vkPhoto.setUrl2ExtraBig(firstNonNull(urls, 1));
+        vkPhoto.setUrlExtraBig(firstNonNull(urls, 2));
+        vkPhoto.setUrlBig(firstNonNull(urls, 3));
+        vkPhoto.setUrlMedium(firstNonNull(urls, 4));
+        vkPhoto.setUrlSmall(firstNonNull(urls, 5));
+        return vkPhoto;
+    }
+
+    public static List<VkAlbum> toAlbumList(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<VkAlbum> result = new ArrayList<VkAlbum>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            result.add(toVkAlbum(parser));
+        }
+        return result;
+    }
+
+    public static VkAlbum toVkAlbum(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        VkAlbum album = new VkAlbum();
+        VkPhoto cover = new VkPhoto();
+        Map<String, String> sizesMap = new HashMap<String, String>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("aid".equals(field)) {
+                album.setAlbumId(parser.getValueAsLong());
+            } else if ("title".equals(field)) {
+                album.setName(text(parser));
+            } else if ("size".equals(field)) {
+                album.setSize(parser.getValueAsInt());
+            } else if ("sizes".equals(field)) {
+                readSizes(parser, sizesMap);
+            } else if ("likes".equals(field)) {
+                readLikes(parser, cover);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        cover.setUrl3ExtraBig(getPhotoUrlExt(photoSizes, sizesMap, 0));
+        cover.setUrl2ExtraBig(getPhotoUrlExt(photoSizes, sizesMap, 1));
+        cover.setUrlExtraBig(getPhotoUrlExt(photoSizes, sizesMap, 2));
+        cover.setUrlBig(getPhotoUrlExt(photoSizes, sizesMap, 3));
+        cover.setUrlMedium(getPhotoUrlExt(photoSizes, sizesMap, 4));
+        cover.setUrlSmall(getPhotoUrlExt(photoSizes, sizesMap, 5));
+        cover.setUrlPreviewBig(getPhotoUrlExt(previewSizes, sizesMap, 0));
+        cover.setUrlPreviewMedium(getPhotoUrlExt(previewSizes, sizesMap, 1));
+        cover.setUrlPreviewSmall(getPhotoUrlExt(previewSizes, sizesMap, 2));
+        album.setCover(cover);
+        return album;
+    }
+
+    private static void readSizes(JsonParser parser, Map<String, String> sizesMap) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser, JsonToken.START_OBJECT);
+            String type = null, src = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("type".equals(field)) {
+                    type = text(parser);
+                } else if ("src".equals(field)) {
+                    src = text(parser);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            sizesMap.put(type, src);
+        }
+    }
+
+    private static void readLikes(JsonParser parser, VkPhoto photo) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("count".equals(field)) {
+                photo.setLikesCount(parser.getValueAsLong(0));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static String getPhotoUrlExt(String[] sizeNames, Map<String, String> sizesMap, int startIndex) {
+        for (int i = startIndex; i < sizeNames.length; i++) {
+            String size = sizeNames[i];
+            if (sizesMap.containsKey(size)) {
+                return sizesMap.get(size);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads wall messages, skipping the leading total count
+     */
+    public static List<VkWallMessage> toWallMessageList(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<VkWallMessage> result = new ArrayList<VkWallMessage>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            // it may be 'count' (integer), skipping it
+            if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            result.add(toVkWallMessage(parser));
+        }
+        return result;
+    }
+
+    /**
+     * Reads wall messages together with the leading total count
+     */
+    public static WallMessages toWallMessages(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        int totalCount = 0;
+        List<VkWallMessage> messages = new ArrayList<VkWallMessage>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                messages.add(toVkWallMessage(parser));
+            } else if (parser.getCurrentToken() == JsonToken.VALUE_NUMBER_INT) {
+                totalCount = parser.getValueAsInt();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new WallMessages(totalCount, messages);
+    }
+
+    public static VkWallMessage toVkWallMessage(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        int messageId = 0, senderId = 0, receiverId = 0;
+        long date = 0;
+        String text = null;
+        VkMessageSender signer = null;
+        List<VkAttachment> attachments = null;
+        boolean pinned = false;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("id".equals(field)) {
+                messageId = parser.getValueAsInt();
+            } else if ("from_id".equals(field)) {
+                senderId = parser.getValueAsInt();
+            } else if ("to_id".equals(field)) {
+                receiverId = parser.getValueAsInt();
+            } else if ("date".equals(field)) {
+                date = parser.getValueAsLong();
+            } else if ("text".equals(field)) {
+                text = text(parser);
+            } else if ("signer_id".equals(field)) {
+                signer = VkMessageSender.of(parser.getValueAsInt());
+            } else if ("attachments".equals(field)) {
+                attachments = toAttachments(parser);
+            } else if ("is_pinned".equals(field)) {
+                pinned = parser.getValueAsInt() == 1;
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        VkWallMessageBuilder builder = VkWallMessageBuilder.message(messageId);
+        builder.addSender(senderId);
+        builder.addReceiver(receiverId);
+        builder.addDate(date);
+        builder.addText(text);
+        builder.addPinned(pinned);
+        if (signer != null) {
+            builder.addSigner(signer);
+        }
+        if (attachments != null) {
+            for (VkAttachment attachment : attachments) {
+                builder.addAttachment(attachment);
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static List<VkAttachment> toAttachments(JsonParser parser) throws IOException {
+        Validate.isTrue(parser.getCurrentToken() == JsonToken.START_ARRAY,
+                "attachments is expected to be an array, got %s", parser.getCurrentToken());
+
+        List<VkAttachment> result = new ArrayList<VkAttachment>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            VkAttachment attachment = toAttachment(parser);
+            // only links are supported, the other attachments are skipped
+            if (attachment != null) {
+                result.add(attachment);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return link attachment, or <code>null</code> for the other types
+     */
+    private static VkAttachment toAttachment(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        String typeString = null, title = null, url = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("type".equals(field)) {
+                typeString = text(parser);
+            } else if ("link".equals(field) && parser.getCurrentToken() == JsonToken.START_OBJECT) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String linkField = parser.getCurrentName();
+                    parser.nextToken();
+                    if ("title".equals(linkField)) {
+                        title = text(parser);
+                    } else if ("url".equals(linkField)) {
+                        url = text(parser);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        Validate.notNull(typeString, "attachment is expected to have a type");
+        VkAttachmentType type = VkAttachmentType.valueOf(typeString.toUpperCase());
+
+        return type == VkAttachmentType.LINK ? new VkLinkAttachment(title, url) : null;
+    }
+
+    /**
+     * Reads groups, skipping the first element of the array if it holds the
+     * total count: groups.get returns it, groups.getById doesn't
+     */
+    public static List<VkGroup> toGroupList(JsonParser parser) throws IOException {
+        return toGroupList(parser, null);
+    }
+
+    /**
+     * @param strings tables the groups are compacted with, or <code>null</code>
+     */
+    public static List<VkGroup> toGroupList(JsonParser parser, CompactStrings strings) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        List<VkGroup> result = new ArrayList<VkGroup>();
+
+        JsonToken token = parser.nextToken();
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            token = parser.nextToken();
+        }
+
+        while (token != JsonToken.END_ARRAY) {
+            result.add(toVkGroup(parser, strings));
+            token = parser.nextToken();
+        }
+        return result;
+    }
+
+    public static VkGroup toVkGroup(JsonParser parser) throws IOException {
+        return toVkGroup(parser, null);
+    }
+
+    /**
+     * @param strings tables the group is compacted with, or <code>null</code>
+     */
+    public static VkGroup toVkGroup(JsonParser parser, CompactStrings strings) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        int gid = 0;
+        String name = null, screenName = null, type = null, photo = null, photoMedium = null, photoBig = null;
+        String membersCount = null, verified = null;
+        Integer isClosed = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+
+            if ("gid".equals(field)) {
+                gid = parser.getValueAsInt();
+            } else if ("name".equals(field)) {
+                name = text(parser);
+            } else if ("screen_name".equals(field)) {
+                screenName = text(parser);
+            } else if ("is_closed".equals(field)) {
+                isClosed = parser.getValueAsInt();
+            } else if ("type".equals(field)) {
+                type = text(parser);
+            } else if ("photo".equals(field)) {
+                photo = text(parser);
+            } else if ("photo_medium".equals(field)) {
+                photoMedium = text(parser);
+            } else if ("photo_big".equals(field)) {
+                photoBig = text(parser);
+            } else if ("members_count".equals(field)) {
+                membersCount = text(parser);
+            } else if ("verified".equals(field)) {
+                verified = text(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        VkGroupBuilder builder = VkGroupBuilder.group(gid);
+        if (name != null) {
+            builder.addGroupName(name);
+        }
+        if (screenName != null) {
+            builder.addScreenName(screenName);
+        }
+        if (isClosed != null) {
+            builder.setClosed(isClosed);
+        }
+        if (type != null) {
+            builder.setGroupType(type);
+        }
+        if (photo != null) {
+            builder.addPhoto(photo);
+        }
+        if (photoMedium != null) {
+            builder.addPhotoMedium(photoMedium);
+        }
+        if (photoBig != null) {
+            builder.addPhotoBig(photoBig);
+        }
+        if (membersCount != null) {
+            builder.addMembersCount(membersCount);
+        }
+        if (verified != null) {
+            builder.addVerified(verified);
+        }
+        if (strings != null) {
+            builder.compactWith(strings);
+        }
+
+        return builder.build();
+    }
+
+    public static Set<Integer> toIntegerSet(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        Set<Integer> result = new HashSet<Integer>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            result.add(parser.getValueAsInt());
+        }
+        return result;
+    }
+
+    public static IntIdSet toIntIdSet(JsonParser parser, IntIdSetBuilder builder) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            builder.add(parser.getValueAsInt());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads response of friends.getMutual with target_uids: objects with the
+     * id of the target and its common friends
+     * 
+     * @return mutual friends by the target, in the order of the response
+     */
+    public static Map<Integer, IntIdSet> toMutualFriends(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_ARRAY);
+        Map<Integer, IntIdSet> result = new LinkedHashMap<Integer, IntIdSet>();
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser, JsonToken.START_OBJECT);
+
+            Integer id = null;
+            IntIdSet friends = IntIdSet.empty();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+                if ("id".equals(field)) {
+                    id = parser.getValueAsInt();
+                } else if ("common_friends".equals(field)) {
+                    friends = toIntIdSet(parser, IntIdSetBuilder.ids());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+
+            if (id != null) {
+                result.put(id, friends);
+            }
+        }
+        return result;
+    }
+
+    public static GroupUsers toGroupUsers(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        int totalCount = 0;
+        Set<Integer> users = Collections.emptySet();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("count".equals(field)) {
+                totalCount = parser.getValueAsInt();
+            } else if ("users".equals(field)) {
+                users = toIntegerSet(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return new GroupUsers(totalCount, users);
+    }
+
+    public static GroupUserIds toGroupUserIds(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        int totalCount = 0;
+        IntIdSet users = IntIdSet.empty();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("count".equals(field)) {
+                totalCount = parser.getValueAsInt();
+            } else if ("users".equals(field)) {
+                users = toIntIdSet(parser, IntIdSetBuilder.withExpectedSize(Math.min(totalCount, 1000)));
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return new GroupUserIds(totalCount, users);
+    }
+
+    public static VkErrorResponse toVkError(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        int errorCode = 0;
+        String errorMessage = null;
+        List<VkMethodParam> params = new ArrayList<VkMethodParam>();
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("error_code".equals(field)) {
+                errorCode = parser.getValueAsInt();
+            } else if ("error_msg".equals(field)) {
+                errorMessage = text(parser);
+            } else if ("request_params".equals(field) && parser.getCurrentToken() == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    params.add(toVkMethodParam(parser));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        VkErrorResponse vkError = new VkErrorResponse(errorCode, errorMessage);
+        for (VkMethodParam param : params) {
+            vkError.addMethodParam(param);
+        }
+        return vkError;
+    }
+
+    private static VkMethodParam toVkMethodParam(JsonParser parser) throws IOException {
+        expect(parser, JsonToken.START_OBJECT);
+
+        String key = null, value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("key".equals(field)) {
+                key = text(parser);
+            } else if ("value".equals(field)) {
+                value = text(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        return new VkMethodParam(key, value);
+    }
+
+    /**
+     * Reads textual representation of the current value the same way
+     * {@link com.fasterxml.jackson.databind.JsonNode#asText()} does
+     */
+    private static String text(JsonParser parser) throws IOException {
+        JsonToken token = parser.getCurrentToken();
+        if (token.isStructStart()) {
+            parser.skipChildren();
+            return "";
+        }
+        return parser.getText();
+    }
+
+    private static void expect(JsonParser parser, JsonToken token) {
+        Validate.isTrue(parser.getCurrentToken() == token, "expected %s, got %s", token, parser.getCurrentToken());
+    }
+
+    private static int indexOf(String[] values, String value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i].equals(value)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String firstNonNull(String[] values, int startIndex) {
+        for (int i = startIndex; i < values.length; i++) {
+            if (values[i] != null) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.googlecode.vkapi.convert;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.googlecode.vkapi.domain.error.VkErrorResponse;
+
+/**
+ * Answer of vk.com "execute" method: results of the calls in the order they
+ * were made and the errors of the failed ones. Failed calls have
+ * <code>false</code> as their result, and their errors follow in the same
+ * order in "execute_errors"
+ *
+ * @see JsonConverter#readExecuteResponse(java.io.InputStream)
+ */
+public final class VkExecuteResponse {
+
+    private final List<JsonNode> results;
+    private final List<VkErrorResponse> errors;
+
+    public VkExecuteResponse(List<JsonNode> results, List<VkErrorResponse> errors) {
+        this.results = Collections.unmodifiableList(results);
+        this.errors = Collections.unmodifiableList(errors);
+    }
+
+    public List<JsonNode> getResults() {
+        return results;
+    }
+
+    public List<VkErrorResponse> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "VkExecuteResponse [results=" + results.size() + ", errors=" + errors + "]";
+    }
+
+}
@@ -0,0 +1,46 @@
+package com.googlecode.vkapi.convert;
+
+import com.googlecode.vkapi.domain.error.VkErrorResponse;
+
+/**
+ * Answer of vk.com read from the stream: either converted "response" or
+ * "error" if the method failed
+ *
+ * @see JsonConverter#readResponse(java.io.InputStream, ResponseReader)
+ */
+public final class VkResponse<T> {
+
+    private final T value;
+    private final VkErrorResponse error;
+
+    private VkResponse(T value, VkErrorResponse error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    public static <T> VkResponse<T> of(T value) {
+        return new VkResponse<T>(value, null);
+    }
+
+    public static <T> VkResponse<T> error(VkErrorResponse error) {
+        return new VkResponse<T>(null, error);
+    }
+
+    public boolean isError() {
+        return error != null;
+    }
+
+    public T getValue() {
+        return value;
+    }
+
+    public VkErrorResponse getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return isError() ? "VkResponse [error=" + error + "]" : "VkResponse [value=" + value + "]";
+    }
+
+}
@@ -0,0 +1,160 @@
+package com.googlecode.vkapi.domain;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Shared tables for keeping many users and groups in memory at a lower cost.
+ * Repeating values, such as first names and birthdays, are deduplicated, so
+ * equal strings become one instance. Photo urls are split into the prefix
+ * with the host and the server, which is shared by many photos and stored
+ * once, and the rest of the url.<br>
+ * <br>
+ *
+ * Deduplication is lossy: the table has a fixed size and a value may replace
+ * another one with the same slot, so the table never grows, while frequent
+ * values stay shared. The amount of url prefixes is limited by
+ * {@link #MAX_PREFIXES}, urls with other prefixes are stored whole. The same
+ * tables should be used for all the objects kept together. Thread-safe
+ *
+ * @see com.googlecode.vkapi.domain.user.VkUserBuilder#compactWith(CompactStrings)
+ * @see com.googlecode.vkapi.domain.group.VkGroupBuilder#compactWith(CompactStrings)
+ */
+public final class CompactStrings {
+
+    /**
+     * Maximal amount of url prefixes, so an id of a prefix takes 14 bits
+     */
+    public static final int MAX_PREFIXES = (1 << 14) - 1;
+
+    /**
+     * Longer values are unlikely to repeat and would only push the short ones
+     * out of the table
+     */
+    private static final int MAX_DEDUPLICATED_LENGTH = 256;
+
+    private static final int DEFAULT_TABLE_SIZE = 1 << 16;
+
+    // races are harmless: strings are immutable, and a lost write only loses
+    // deduplication of one value
+    private final String[] table;
+    private final int mask;
+
+    private final ConcurrentMap<String, Integer> prefixIds = new ConcurrentHashMap<String, Integer>();
+    private final String[] prefixes = new String[MAX_PREFIXES + 1];
+    private int prefixCount;
+
+    public CompactStrings() {
+        this(DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * @param tableSize amount of slots for deduplicated values, a power of two
+     */
+    public CompactStrings(int tableSize) {
+        Validate.isTrue(tableSize > 0 && Integer.bitCount(tableSize) == 1,
+                "tableSize must be a positive power of two, got %d", tableSize);
+        this.table = new String[tableSize];
+        this.mask = tableSize - 1;
+        this.prefixes[0] = "";
+    }
+
+    /**
+     * @param value to be deduplicated, may be <code>null</code>
+     * @return equal instance seen before, or the value itself
+     */
+    public String dedupe(String value) {
+        if (value == null || value.length() > MAX_DEDUPLICATED_LENGTH) {
+            return value;
+        }
+
+        int hash = value.hashCode();
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        String cached = table[slot];
+        if (cached != null && cached.hashCode() == hash && cached.equals(value)) {
+            return cached;
+        }
+
+        table[slot] = value;
+        return value;
+    }
+
+    /**
+     * @param url of a photo, may be <code>null</code>
+     * @return id of the prefix of the url, from 1 to {@link #MAX_PREFIXES}, or
+     * 0 if the url is to be stored whole
+     */
+    public int prefixId(String url) {
+        int length = prefixLength(url);
+        if (length == 0) {
+            return 0;
+        }
+
+        String prefix = url.substring(0, length);
+        Integer id = prefixIds.get(prefix);
+        return id != null ? id : register(prefix);
+    }
+
+    private synchronized int register(String prefix) {
+        Integer id = prefixIds.get(prefix);
+        if (id != null) {
+            return id;
+        }
+        if (prefixCount == MAX_PREFIXES) {
+            return 0;
+        }
+
+        prefixCount++;
+        prefixes[prefixCount] = prefix;
+        // published to other threads by the map
+        prefixIds.put(prefix, prefixCount);
+        return prefixCount;
+    }
+
+    /**
+     * @param url of a photo, may be <code>null</code>
+     * @param prefixId obtained for the url by {@link #prefixId(String)}
+     * @return the rest of the url after the prefix
+     */
+    public String suffix(String url, int prefixId) {
+        if (url == null || prefixId == 0) {
+            return url;
+        }
+        return url.substring(prefixes[prefixId].length());
+    }
+
+    /**
+     * @param prefixId obtained by {@link #prefixId(String)}
+     * @param suffix obtained by {@link #suffix(String, int)}
+     * @return the original url
+     */
+    public String url(int prefixId, String suffix) {
+        if (suffix == null || prefixId == 0) {
+            return suffix;
+        }
+        return prefixes[prefixId].concat(suffix);
+    }
+
+    /**
+     * Prefix is the scheme, the host and the first segment of the path, such
+     * as "https://pp.vk.me/c625520/", which is the storage server of the photo
+     */
+    private static int prefixLength(String url) {
+        if (url == null) {
+            return 0;
+        }
+        int scheme = url.indexOf("://");
+        if (scheme < 0) {
+            return 0;
+        }
+        int host = url.indexOf('/', scheme + 3);
+        if (host < 0) {
+            return 0;
+        }
+        int server = url.indexOf('/', host + 1);
+        return server < 0 ? 0 : server + 1;
+    }
+
+}
@@ -10,17 +10,39 @@ import java.util.Map;
  */
 public enum VkErrorCode {
 
+    /**
+     * Unknown error occurred on vk.com side, the request may succeed if
+     * repeated later
+     */
+    UNKNOWN_ERROR_OCCURRED(1),
+
     /**
      * When querying vk api with expired auth token
      */
     EXPIRED_AUTH_TOKEN(5),
 
+    /**
+     * When the amount of requests with one token exceeds the allowed rate
+     */
+    TOO_MANY_REQUESTS(6),
+
     /**
      * When querying vk api with token of deleted application; or when the
      * application was blocked by vk
      */
     APPLICATION_BLOCKED(8),
 
+    /**
+     * When too many similar requests are performed, e.g. the same message is
+     * posted several times
+     */
+    FLOOD_CONTROL(9),
+
+    /**
+     * Internal error of vk.com
+     */
+    INTERNAL_SERVER_ERROR(10),
+
     /**
      * Unknown error (not added to this class)
      */
@@ -1,34 +1,82 @@
 package com.googlecode.vkapi.domain.group;
 
+import com.googlecode.vkapi.domain.CompactStrings;
+
 /**
- * VK.com group with all group related information. Immutable.
+ * VK.com group with all group related information. Immutable.<br>
+ * <br>
+ * 
+ * Groups built with {@link CompactStrings} share names with other groups, and
+ * keep only the id of the prefix of the photo urls if all the photos are
+ * stored on the same server, see
+ * {@link VkGroupBuilder#compactWith(CompactStrings)}
  * 
  * @author Alexey Grigorev
  */
 public class VkGroup {
 
+    private static final VkGroupType[] GROUP_TYPES = VkGroupType.values();
+
+    // bits of the packed field
+    private static final int PREFIX_MASK = (1 << 14) - 1;
+    private static final int TYPE_SHIFT = 14;
+    private static final int TYPE_MASK = 0x3;
+    // value of the type bits for null
+    private static final int NO_TYPE = 3;
+    private static final int CLOSED_BIT = 1 << 16;
+    private static final int VERIFIED_BIT = 1 << 17;
+
     private final long groupId;
     private final String groupName;
     private final String screenName;
-    private final boolean closed;
-    private final VkGroupType groupType;
+    // whole urls, or the rest after the prefix when compact
     private final String photo;
     private final String photoMedium;
     private final String photoBig;
     private final long membersCount; 
-    private final boolean verified;
+    // prefix of the photos, type, closed and verified
+    private final int packed;
+    // null if not compact
+    private final CompactStrings strings;
 
     public VkGroup(VkGroupBuilder vkGroupBuilder) {
-        groupId = vkGroupBuilder.getGroupId();
-        groupName = vkGroupBuilder.getGroupName();
-        screenName = vkGroupBuilder.getScreenName();
-        closed = vkGroupBuilder.isClosed();
-        groupType = vkGroupBuilder.getGroupType();
-        photo = vkGroupBuilder.getPhoto();
-        photoMedium = vkGroupBuilder.getPhotoMedium();
-        photoBig = vkGroupBuilder.getPhotoBig();
-        membersCount = vkGroupBuilder.getMembersCount();
-        verified = vkGroupBuilder.isVerified();
+        CompactStrings strings = vkGroupBuilder.getCompactStrings();
+        String photo = vkGroupBuilder.getPhoto();
+        String photoMedium = vkGroupBuilder.getPhotoMedium();
+        String photoBig = vkGroupBuilder.getPhotoBig();
+
+        VkGroupType groupType = vkGroupBuilder.getGroupType();
+        int packed = (groupType != null ? groupType.ordinal() : NO_TYPE) << TYPE_SHIFT;
+        if (vkGroupBuilder.isClosed()) {
+            packed = packed | CLOSED_BIT;
+        }
+        if (vkGroupBuilder.isVerified()) {
+            packed = packed | VERIFIED_BIT;
+        }
+
+        int prefix = 0;
+        if (strings != null) {
+            prefix = strings.prefixId(photo != null ? photo : photoMedium != null ? photoMedium : photoBig);
+            if (!hasPrefix(strings, photo, prefix) || !hasPrefix(strings, photoMedium, prefix)
+                    || !hasPrefix(strings, photoBig, prefix)) {
+                prefix = 0;
+            }
+        }
+
+        this.groupId = vkGroupBuilder.getGroupId();
+        this.groupName = strings != null ? strings.dedupe(vkGroupBuilder.getGroupName())
+                : vkGroupBuilder.getGroupName();
+        this.screenName = vkGroupBuilder.getScreenName();
+        this.photo = prefix != 0 ? strings.suffix(photo, prefix) : photo;
+        this.photoMedium = prefix != 0 ? strings.suffix(photoMedium, prefix) : photoMedium;
+        this.photoBig = prefix != 0 ? strings.suffix(photoBig, prefix) : photoBig;
+        this.membersCount = vkGroupBuilder.getMembersCount();
+        this.packed = packed | prefix;
+        this.strings = prefix != 0 ? strings : null;
+    }
+
+    private static boolean hasPrefix(CompactStrings strings, String url, int prefix) {
+        return url == null || strings.prefixId(url) == prefix;
     }
 
     public long getGroupId() {
@@ -44,23 +92,31 @@ public class VkGroup {
     }
 
     public boolean isClosed() {
-        return closed;
+        return (packed & CLOSED_BIT) != 0;
     }
 
     public VkGroupType getGroupType() {
-        return groupType;
+        int type = (packed >>> TYPE_SHIFT) & TYPE_MASK;
+        return type != NO_TYPE ? GROUP_TYPES[type] : null;
     }
 
     public String getPhoto() {
-        return photo;
+        return url(photo);
     }
 
     public String getPhotoMedium() {
-        return photoMedium;
+        return url(photoMedium);
     }
 
     public String getPhotoBig() {
-        return photoBig;
+        return url(photoBig);
+    }
+
+    private String url(String suffix) {
+        if (strings == null) {
+            return suffix;
+        }
+        return strings.url(packed & PREFIX_MASK, suffix);
     }
 
     public long getMembersCount() {
@@ -68,7 +124,7 @@ public class VkGroup {
 	}
 
 	public boolean isVerified() {
-		return verified;
+		return (packed & VERIFIED_BIT) != 0;
 	}
 
     @Override
@@ -92,7 +148,7 @@ public class VkGroup {
 
     @Override
     public String toString() {
-        return "VkGroup [groupId=" + groupId + ", groupName=" + groupName + ", groupType=" + groupType + "]";
+        return "VkGroup [groupId=" + groupId + ", groupName=" + groupName + ", groupType=" + getGroupType() + "]";
     }
 
 }
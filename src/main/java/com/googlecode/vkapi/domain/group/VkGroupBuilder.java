@@ -1,6 +1,9 @@
 package com.googlecode.vkapi.domain.group;
 
 import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.domain.CompactStrings;
 
 /**
  * Builder for constructing immutable {@link VkGroup}
@@ -19,6 +22,7 @@ public class VkGroupBuilder {
     private String photoBig;
     private long membersCount;
     private boolean verified;
+    private CompactStrings compactStrings;
 
     private VkGroupBuilder(long groupId) {
         this.groupId = groupId;
@@ -81,6 +85,19 @@ public class VkGroupBuilder {
         return this;
     }
 
+    /**
+     * Makes the group share its strings with other groups built with the same
+     * tables: the name is deduplicated, and photo urls keep only the part
+     * after the shared prefix
+     * 
+     * @param compactStrings tables shared by the groups kept together
+     */
+    public VkGroupBuilder compactWith(CompactStrings compactStrings) {
+        Validate.notNull(compactStrings, "Expected compactStrings not to be null");
+        this.compactStrings = compactStrings;
+        return this;
+    }
+
     public long getGroupId() {
         return groupId;
     }
@@ -121,6 +138,10 @@ public class VkGroupBuilder {
         return verified;
     }
 
+    public CompactStrings getCompactStrings() {
+        return compactStrings;
+    }
+
     public VkGroup build() {
         return new VkGroup(this);
     }
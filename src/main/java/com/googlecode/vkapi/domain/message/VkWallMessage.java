@@ -18,6 +18,7 @@ public class VkWallMessage {
     private final VkMessageSender receiver;
     private final String text;
     private final List<VkAttachment> attachments;
+    private final boolean pinned;
 
     public VkWallMessage(VkWallMessageBuilder builder) {
         messageId = builder.getMessageId();
@@ -28,6 +29,7 @@ public class VkWallMessage {
 
         text = builder.getText();
         attachments = builder.getAttachments();
+        pinned = builder.isPinned();
     }
 
     public int getMessageId() {
@@ -50,6 +52,14 @@ public class VkWallMessage {
         return attachments;
     }
 
+    /**
+     * @return <code>true</code> if the message is pinned to the top of the
+     * wall, so it goes first regardless of its date
+     */
+    public boolean isPinned() {
+        return pinned;
+    }
+
     public VkMessageSender getSender() {
         return sender;
     }
@@ -20,6 +20,7 @@ public class VkWallMessageBuilder {
     private long date;
     private String text;
     private VkMessageSender signer;
+    private boolean pinned;
 
     private List<VkAttachment> attachments = new ArrayList<VkAttachment>();
 
@@ -88,6 +89,15 @@ public class VkWallMessageBuilder {
         return signer;
     }
 
+    public VkWallMessageBuilder addPinned(boolean pinned) {
+        this.pinned = pinned;
+        return this;
+    }
+
+    public boolean isPinned() {
+        return pinned;
+    }
+
     public VkWallMessageBuilder addAttachment(VkAttachment attachment) {
         attachments.add(attachment);
         return this;
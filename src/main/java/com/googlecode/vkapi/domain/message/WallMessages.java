@@ -0,0 +1,43 @@
+package com.googlecode.vkapi.domain.message;
+
+import java.util.List;
+
+import com.googlecode.vkapi.HttpVkApi;
+
+/**
+ * Wall messages together with the total amount of messages on the wall, which
+ * vk.com returns as the first element of wall.get response. Used in
+ * {@link HttpVkApi#allGroupWallMessages(long, com.googlecode.vkapi.WallFiler, com.googlecode.vkapi.domain.OAuthToken)}
+ *
+ * @see WallWatermark
+ */
+public class WallMessages {
+
+    private final int totalCount;
+    private final List<VkWallMessage> messages;
+
+    public WallMessages(int totalCount, List<VkWallMessage> messages) {
+        this.totalCount = totalCount;
+        this.messages = messages;
+    }
+
+    /**
+     * @return amount of messages on the wall at the time of the request
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return messages from the newest to the oldest
+     */
+    public List<VkWallMessage> getMessages() {
+        return messages;
+    }
+
+    @Override
+    public String toString() {
+        return "WallMessages [totalCount=" + totalCount + ", messages=" + messages.size() + "]";
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.googlecode.vkapi.domain.message;
+
+import java.util.Collection;
+
+/**
+ * The newest wall message seen by the previous synchronization of a wall.
+ * Message ids grow on each wall, so the messages with greater id are new. If
+ * only the date is known, the messages of the same second as the watermark
+ * are taken as new too, so nothing is missed at the cost of repeating them
+ * 
+ * @see WallMessages
+ */
+public final class WallWatermark {
+
+    private static final WallWatermark NONE = new WallWatermark(0, 0);
+
+    private final int messageId;
+    private final long date;
+
+    private WallWatermark(int messageId, long date) {
+        this.messageId = messageId;
+        this.date = date;
+    }
+
+    /**
+     * @return watermark before any message, for synchronizing the whole wall
+     */
+    public static WallWatermark none() {
+        return NONE;
+    }
+
+    /**
+     * @param messageId of the newest seen message, 0 if unknown
+     * @param date of the newest seen message, 0 if unknown
+     */
+    public static WallWatermark of(int messageId, long date) {
+        return new WallWatermark(messageId, date);
+    }
+
+    /**
+     * @param message the newest seen message
+     */
+    public static WallWatermark of(VkWallMessage message) {
+        return new WallWatermark(message.getMessageId(), message.getDate());
+    }
+
+    /**
+     * @param message from the same wall
+     * @return <code>true</code> if the message was seen before
+     */
+    public boolean isSeen(VkWallMessage message) {
+        if (messageId > 0) {
+            return message.getMessageId() <= messageId;
+        }
+        return message.getDate() < date;
+    }
+
+    /**
+     * @param messages obtained since this watermark
+     * @return watermark at the newest of this one and the given messages
+     */
+    public WallWatermark advance(Collection<VkWallMessage> messages) {
+        WallWatermark result = this;
+        for (VkWallMessage message : messages) {
+            if (message.getMessageId() > result.messageId) {
+                result = of(message);
+            }
+        }
+        return result;
+    }
+
+    public int getMessageId() {
+        return messageId;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    @Override
+    public int hashCode() {
+        return messageId * 31 + (int) (date ^ (date >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof WallWatermark)) {
+            return false;
+        }
+        WallWatermark other = (WallWatermark) obj;
+        return messageId == other.messageId && date == other.date;
+    }
+
+    @Override
+    public String toString() {
+        return "WallWatermark [messageId=" + messageId + ", date=" + date + "]";
+    }
+
+}
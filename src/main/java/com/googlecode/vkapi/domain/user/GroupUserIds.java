@@ -0,0 +1,38 @@
+package com.googlecode.vkapi.domain.user;
+
+import com.googlecode.vkapi.HttpVkApi;
+
+/**
+ * Same as {@link GroupUsers}, but with ids of users kept in {@link IntIdSet}.
+ * Used in
+ * {@link HttpVkApi#groupUserIds(long, com.googlecode.vkapi.domain.OAuthToken)}
+ *
+ * @see GroupUsers
+ */
+public class GroupUserIds {
+
+    private final int totalCount;
+    private final IntIdSet users;
+
+    public GroupUserIds(int totalCount, IntIdSet users) {
+        this.totalCount = totalCount;
+        this.users = users;
+    }
+
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    public IntIdSet getUsers() {
+        return users;
+    }
+
+    /**
+     * @return <code>true</code> if all users are extracted per one current
+     * query
+     */
+    public boolean allExtracted() {
+        return totalCount == users.size();
+    }
+
+}
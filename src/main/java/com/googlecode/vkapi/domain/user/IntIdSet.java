@@ -0,0 +1,211 @@
+package com.googlecode.vkapi.domain.user;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Set of vk.com ids kept in a sorted array of primitive ints. Takes 4 bytes
+ * per id, so it is suitable for members of large groups, where
+ * <code>Set&lt;Integer&gt;</code> would take tens of bytes per id. Immutable.
+ *
+ * @see IntIdSetBuilder
+ */
+public final class IntIdSet {
+
+    private static final IntIdSet EMPTY = new IntIdSet(new int[0], 0);
+
+    private final int[] ids;
+    private final int size;
+
+    /**
+     * @param ids sorted array of distinct ids, not copied
+     * @param size amount of ids in the array to be used
+     */
+    IntIdSet(int[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    public static IntIdSet empty() {
+        return EMPTY;
+    }
+
+    public static IntIdSet of(int... ids) {
+        IntIdSetBuilder builder = IntIdSetBuilder.withExpectedSize(ids.length);
+        for (int id : ids) {
+            builder.add(id);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * @param index of the id, between 0 and {@link #size()}
+     * @return index-th smallest id of the set
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " is out of [0, " + size + ")");
+        }
+        return ids[index];
+    }
+
+    /**
+     * @return sorted copy of the ids
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * @return boxed copy of the ids, for using with code expecting
+     * {@link Set}
+     */
+    public Set<Integer> toSet() {
+        Set<Integer> result = new LinkedHashSet<Integer>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            result.add(ids[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @param another set
+     * @return ids present in both sets
+     */
+    public IntIdSet intersect(IntIdSet another) {
+        int[] result = new int[Math.min(size, another.size)];
+        int count = 0, i = 0, j = 0;
+
+        while (i < size && j < another.size) {
+            int left = ids[i], right = another.ids[j];
+            if (left < right) {
+                i++;
+            } else if (left > right) {
+                j++;
+            } else {
+                result[count++] = left;
+                i++;
+                j++;
+            }
+        }
+
+        return trimmed(result, count);
+    }
+
+    /**
+     * Counts ids present in both sets without building the intersection
+     *
+     * @param another set
+     * @return size of the intersection
+     */
+    public int intersectionSize(IntIdSet another) {
+        int count = 0, i = 0, j = 0;
+
+        while (i < size && j < another.size) {
+            int left = ids[i], right = another.ids[j];
+            if (left < right) {
+                i++;
+            } else if (left > right) {
+                j++;
+            } else {
+                count++;
+                i++;
+                j++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * @param another set
+     * @return ids present in any of the sets
+     */
+    public IntIdSet union(IntIdSet another) {
+        int[] result = new int[size + another.size];
+        int count = 0, i = 0, j = 0;
+
+        while (i < size && j < another.size) {
+            int left = ids[i], right = another.ids[j];
+            if (left < right) {
+                result[count++] = left;
+                i++;
+            } else if (left > right) {
+                result[count++] = right;
+                j++;
+            } else {
+                result[count++] = left;
+                i++;
+                j++;
+            }
+        }
+
+        while (i < size) {
+            result[count++] = ids[i++];
+        }
+
+        while (j < another.size) {
+            result[count++] = another.ids[j++];
+        }
+
+        return trimmed(result, count);
+    }
+
+    /**
+     * Sets are kept for long, e.g. in the cache, so the results of the
+     * operations don't hold on to the arrays sized for the worst case
+     */
+    private static IntIdSet trimmed(int[] ids, int size) {
+        return new IntIdSet(size < ids.length ? Arrays.copyOf(ids, size) : ids, size);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (obj instanceof IntIdSet) {
+            IntIdSet another = (IntIdSet) obj;
+            if (size != another.size) {
+                return false;
+            }
+            for (int i = 0; i < size; i++) {
+                if (ids[i] != another.ids[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 1;
+        for (int i = 0; i < size; i++) {
+            result = 31 * result + ids[i];
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "IntIdSet [size=" + size + "]";
+    }
+
+}
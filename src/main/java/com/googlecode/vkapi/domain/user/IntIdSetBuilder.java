@@ -0,0 +1,67 @@
+package com.googlecode.vkapi.domain.user;
+
+import java.util.Arrays;
+
+/**
+ * Builder for {@link IntIdSet}. Ids may be added in any order and with
+ * duplicates, they are sorted and deduplicated on {@link #build()}
+ *
+ * @see IntIdSet
+ */
+public class IntIdSetBuilder {
+
+    private int[] ids;
+    private int size;
+
+    private IntIdSetBuilder(int expectedSize) {
+        this.ids = new int[Math.max(expectedSize, 16)];
+    }
+
+    public static IntIdSetBuilder ids() {
+        return new IntIdSetBuilder(16);
+    }
+
+    public static IntIdSetBuilder withExpectedSize(int expectedSize) {
+        return new IntIdSetBuilder(expectedSize);
+    }
+
+    public IntIdSetBuilder add(int id) {
+        ensureCapacity(size + 1);
+        ids[size++] = id;
+        return this;
+    }
+
+    public IntIdSetBuilder addAll(IntIdSet set) {
+        int setSize = set.size();
+        ensureCapacity(size + setSize);
+        for (int i = 0; i < setSize; i++) {
+            ids[size++] = set.get(i);
+        }
+        return this;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(capacity, ids.length * 2));
+        }
+    }
+
+    public IntIdSet build() {
+        if (size == 0) {
+            return IntIdSet.empty();
+        }
+
+        int[] result = Arrays.copyOf(ids, size);
+        Arrays.sort(result);
+
+        int distinct = 1;
+        for (int i = 1; i < result.length; i++) {
+            if (result[i] != result[distinct - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+
+        return new IntIdSet(result, distinct);
+    }
+
+}
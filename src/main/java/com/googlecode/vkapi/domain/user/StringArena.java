@@ -0,0 +1,202 @@
+package com.googlecode.vkapi.domain.user;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Column of strings stored one after another in a single array, so a million
+ * of strings take two arrays instead of a million of objects. The i-th string
+ * is addressed by the end offset of the previous one and its own end offset;
+ * ends of <code>null</code> strings are stored inverted. Characters are kept
+ * one byte each while all of them fit into Latin-1, as urls and dates do, and
+ * two bytes each after the first wider character.<br>
+ * <br>
+ *
+ * Strings are appended in the order of rows, and the last one may be
+ * replaced. {@link #snapshot()} shares the arrays with the column, which
+ * copies them before changing a row visible to a snapshot. Not thread-safe
+ * while being filled
+ */
+final class StringArena {
+
+    // exactly one of the arrays is used
+    private byte[] latin1;
+    private char[] chars;
+    private int length;
+    private int[] ends;
+    private int count;
+    // rows visible to snapshots, which must not be changed in place
+    private int sharedCount;
+
+    StringArena(int expectedSize, int expectedLength) {
+        this.latin1 = new byte[Math.max(expectedSize * expectedLength, 16)];
+        this.ends = new int[Math.max(expectedSize, 16)];
+    }
+
+    private StringArena(StringArena source) {
+        this.latin1 = source.latin1;
+        this.chars = source.chars;
+        this.length = source.length;
+        this.ends = source.ends;
+        this.count = source.count;
+        this.sharedCount = source.count;
+    }
+
+    int size() {
+        return count;
+    }
+
+    /**
+     * Sets the value of the row, filling the rows before it with
+     * <code>null</code>s. Value of the last row is replaced
+     */
+    void set(int row, char[] value, int offset, int valueLength) {
+        if (row == count - 1) {
+            unshare(row);
+            length = start(row);
+            count--;
+        }
+        fillNulls(row);
+
+        if (latin1 != null && !isLatin1(value, offset, valueLength)) {
+            inflate();
+        }
+        ensureCapacity(length + valueLength);
+        if (latin1 != null) {
+            for (int i = 0; i < valueLength; i++) {
+                latin1[length + i] = (byte) value[offset + i];
+            }
+        } else {
+            System.arraycopy(value, offset, chars, length, valueLength);
+        }
+        length = length + valueLength;
+        append(length);
+    }
+
+    void set(int row, String value) {
+        if (value == null) {
+            fillNulls(row + 1);
+        } else {
+            set(row, value.toCharArray(), 0, value.length());
+        }
+    }
+
+    /**
+     * Adds <code>null</code>s until the column has the given amount of rows
+     */
+    void fillNulls(int rows) {
+        while (count < rows) {
+            append(~length);
+        }
+    }
+
+    private static boolean isLatin1(char[] value, int offset, int valueLength) {
+        for (int i = offset; i < offset + valueLength; i++) {
+            if (value[i] > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void inflate() {
+        chars = new char[latin1.length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) (latin1[i] & 0xFF);
+        }
+        latin1 = null;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (latin1 != null && capacity > latin1.length) {
+            latin1 = Arrays.copyOf(latin1, Math.max(capacity, latin1.length * 2));
+        } else if (chars != null && capacity > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(capacity, chars.length * 2));
+        }
+    }
+
+    private void append(int end) {
+        if (count == ends.length) {
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        ends[count++] = end;
+    }
+
+    private void unshare(int row) {
+        if (row < sharedCount) {
+            latin1 = latin1 != null ? latin1.clone() : null;
+            chars = chars != null ? chars.clone() : null;
+            ends = ends.clone();
+            sharedCount = 0;
+        }
+    }
+
+    private int start(int row) {
+        return row == 0 ? 0 : decode(ends[row - 1]);
+    }
+
+    private static int decode(int end) {
+        return end < 0 ? ~end : end;
+    }
+
+    boolean isNull(int row) {
+        return ends[row] < 0;
+    }
+
+    int length(int row) {
+        return isNull(row) ? 0 : ends[row] - start(row);
+    }
+
+    char charAt(int row, int index) {
+        int position = start(row) + index;
+        return latin1 != null ? (char) (latin1[position] & 0xFF) : chars[position];
+    }
+
+    String get(int row) {
+        if (isNull(row)) {
+            return null;
+        }
+        int start = start(row);
+        if (latin1 != null) {
+            return new String(latin1, start, ends[row] - start, StandardCharsets.ISO_8859_1);
+        }
+        return new String(chars, start, ends[row] - start);
+    }
+
+    /**
+     * Compares the value without creating a string
+     */
+    boolean contentEquals(int row, CharSequence value) {
+        if (isNull(row)) {
+            return value == null;
+        }
+        if (value == null || value.length() != length(row)) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (charAt(row, i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isNotBlank(int row) {
+        int length = length(row);
+        for (int i = 0; i < length; i++) {
+            if (!Character.isWhitespace(charAt(row, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return column with the current rows, sharing the arrays with this one
+     */
+    StringArena snapshot() {
+        sharedCount = count;
+        return new StringArena(this);
+    }
+
+}
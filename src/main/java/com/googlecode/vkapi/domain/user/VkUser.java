@@ -2,33 +2,73 @@ package com.googlecode.vkapi.domain.user;
 
 import org.apache.commons.lang3.StringUtils;
 
+import com.googlecode.vkapi.domain.CompactStrings;
+
 /**
- * VK.com user with all user related information. Immutable.
+ * VK.com user with all user related information. Immutable.<br>
+ * <br>
+ * 
+ * Users built with {@link CompactStrings} share names and birthdays with
+ * other users, and keep only the ids of the prefixes of the photo urls, see
+ * {@link VkUserBuilder#compactWith(CompactStrings)}
  * 
  * @author Alexey Grigorev
  */
 public class VkUser {
 
+    // bits of the packed field
+    private static final int PREFIX_BITS = 14;
+    private static final int PREFIX_MASK = (1 << PREFIX_BITS) - 1;
+    private static final int AVATAR_SHIFT = PREFIX_BITS;
+    private static final int SEX_SHIFT = 2 * PREFIX_BITS;
+    private static final int SEX_MASK = 0x7;
+    private static final int DEACTIVATED_BIT = 1 << 31;
+
     private final int vkUserId;
     private final String firstName;
     private final String lastName;
+    // whole urls, or the rest after the prefixes when compact
     private final String photo;
     private final String avatar;
     private final String bdate;
-    private final int sex;
     private final String about;
-    private final boolean isDeactivated;
+    // prefix of photo, prefix of avatar, sex + 1 and deactivated
+    private final int packed;
+    // null if not compact
+    private final CompactStrings strings;
 
     public VkUser(VkUserBuilder vkUserBuilder) {
+        CompactStrings strings = vkUserBuilder.getCompactStrings();
+        String photo = vkUserBuilder.getPhoto();
+        String avatar = vkUserBuilder.getAvatar();
+
+        int packed = (vkUserBuilder.getSex() + 1) << SEX_SHIFT;
+        if (vkUserBuilder.isDeactivated()) {
+            packed = packed | DEACTIVATED_BIT;
+        }
+
         this.vkUserId = vkUserBuilder.getVkUserId();
-        this.firstName = vkUserBuilder.getFirstName();
-        this.lastName = vkUserBuilder.getLastName();
-        this.photo = vkUserBuilder.getPhoto();
-        this.avatar = vkUserBuilder.getAvatar();
-        this.bdate = vkUserBuilder.getBdate();
-        this.sex = vkUserBuilder.getSex();
         this.about = vkUserBuilder.getAbout();
-        this.isDeactivated = vkUserBuilder.isDeactivated();
+        if (strings == null) {
+            this.firstName = vkUserBuilder.getFirstName();
+            this.lastName = vkUserBuilder.getLastName();
+            this.bdate = vkUserBuilder.getBdate();
+            this.photo = photo;
+            this.avatar = avatar;
+        } else {
+            this.firstName = strings.dedupe(vkUserBuilder.getFirstName());
+            this.lastName = strings.dedupe(vkUserBuilder.getLastName());
+            this.bdate = strings.dedupe(vkUserBuilder.getBdate());
+
+            int photoPrefix = strings.prefixId(photo);
+            int avatarPrefix = strings.prefixId(avatar);
+            this.photo = strings.suffix(photo, photoPrefix);
+            this.avatar = strings.suffix(avatar, avatarPrefix);
+            packed = packed | photoPrefix | (avatarPrefix << AVATAR_SHIFT);
+        }
+
+        this.packed = packed;
+        this.strings = strings;
     }
 
     public int getVkUserId() {
@@ -44,11 +84,17 @@ public class VkUser {
     }
 
     public String getPhoto() {
-        return photo;
+        if (strings == null) {
+            return photo;
+        }
+        return strings.url(packed & PREFIX_MASK, photo);
     }
 
     public String getAvatar() {
-		return avatar;
+        if (strings == null) {
+            return avatar;
+        }
+        return strings.url((packed >>> AVATAR_SHIFT) & PREFIX_MASK, avatar);
 	}
 
 	public String getBdate() {
@@ -56,7 +102,7 @@ public class VkUser {
     }
 
 	public int getSex() {
-		return sex;
+		return ((packed >>> SEX_SHIFT) & SEX_MASK) - 1;
 	}
 
 	public String getAbout() {
@@ -64,7 +110,7 @@ public class VkUser {
 	}
 
     public boolean isDeactivated() {
-		return isDeactivated;
+		return (packed & DEACTIVATED_BIT) != 0;
 	}
 
 	public boolean withBirthday() {
@@ -0,0 +1,210 @@
+package com.googlecode.vkapi.domain.user;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Users kept by columns instead of by objects: ids in an <code>int[]</code>,
+ * sex in a <code>byte[]</code>, deactivated flags in a bit set, and strings
+ * in char arrays shared by all the users of a column. Suitable for scanning
+ * large amounts of users, such as counting by sex or looking for birthdays,
+ * since a scan over a column reads one array and no objects are created per
+ * user. Immutable.<br>
+ * <br>
+ *
+ * Users are addressed by their index in the batch. String getters create a
+ * new string on each call, {@link #toVkUser(int)} creates the whole user.
+ *
+ * @see VkUserBatchBuilder
+ */
+public final class VkUserBatch {
+
+    private final int size;
+    private final int[] ids;
+    private final byte[] sex;
+    private final BitSet deactivated;
+    private final StringArena firstNames;
+    private final StringArena lastNames;
+    private final StringArena photos;
+    private final StringArena avatars;
+    private final StringArena bdates;
+    private final StringArena abouts;
+
+    VkUserBatch(int size, int[] ids, byte[] sex, BitSet deactivated, StringArena firstNames,
+            StringArena lastNames, StringArena photos, StringArena avatars, StringArena bdates, StringArena abouts) {
+        this.size = size;
+        this.ids = ids;
+        this.sex = sex;
+        this.deactivated = deactivated;
+        this.firstNames = firstNames;
+        this.lastNames = lastNames;
+        this.photos = photos;
+        this.avatars = avatars;
+        this.bdates = bdates;
+        this.abouts = abouts;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getVkUserId(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    /**
+     * @return -1 for unknown, 0 for female and 1 for male, as
+     * {@link VkUser#getSex()}
+     */
+    public int getSex(int index) {
+        checkIndex(index);
+        return sex[index];
+    }
+
+    public boolean isDeactivated(int index) {
+        checkIndex(index);
+        return deactivated.get(index);
+    }
+
+    public String getFirstName(int index) {
+        checkIndex(index);
+        return firstNames.get(index);
+    }
+
+    public String getLastName(int index) {
+        checkIndex(index);
+        return lastNames.get(index);
+    }
+
+    public String getPhoto(int index) {
+        checkIndex(index);
+        return photos.get(index);
+    }
+
+    public String getAvatar(int index) {
+        checkIndex(index);
+        return avatars.get(index);
+    }
+
+    public String getBdate(int index) {
+        checkIndex(index);
+        return bdates.get(index);
+    }
+
+    public String getAbout(int index) {
+        checkIndex(index);
+        return abouts.get(index);
+    }
+
+    /**
+     * Same as {@link VkUser#withBirthday()}, without creating the string
+     */
+    public boolean withBirthday(int index) {
+        checkIndex(index);
+        return bdates.isNotBlank(index);
+    }
+
+    /**
+     * Compares the birthday without creating a string, e.g. for looking for
+     * the users born on "7.7"
+     *
+     * @param prefix of the birthday in the format of vk.com, "7.7.1987"
+     * @return <code>true</code> if the birthday of the user starts with the
+     * prefix
+     */
+    public boolean bdateStartsWith(int index, String prefix) {
+        checkIndex(index);
+        if (bdates.length(index) < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (bdates.charAt(index, i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compares the first name without creating a string
+     */
+    public boolean firstNameEquals(int index, String firstName) {
+        checkIndex(index);
+        return firstNames.contentEquals(index, firstName);
+    }
+
+    /**
+     * @param value of sex, as returned by {@link #getSex(int)}
+     * @return amount of users with the given sex
+     */
+    public int countSex(int value) {
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (sex[i] == value) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int countDeactivated() {
+        return deactivated.cardinality();
+    }
+
+    /**
+     * @return index of the first user with the given id, or -1
+     */
+    public int indexOf(int vkUserId) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == vkUserId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return new object of the index-th user
+     */
+    public VkUser toVkUser(int index) {
+        checkIndex(index);
+        return VkUserBuilder.user(ids[index])
+                .addName(firstNames.get(index), lastNames.get(index))
+                .addPhoto(photos.get(index))
+                .addAvatar(avatars.get(index))
+                .addBirthday(bdates.get(index))
+                .setSex(sex[index])
+                .setAbout(abouts.get(index))
+                .setDeactivated(deactivated.get(index))
+                .build();
+    }
+
+    /**
+     * @return new objects of all the users, in the order of the batch
+     */
+    public List<VkUser> toList() {
+        List<VkUser> result = new ArrayList<VkUser>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(toVkUser(i));
+        }
+        return result;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " is out of [0, " + size + ")");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "VkUserBatch [size=" + size + "]";
+    }
+
+}
@@ -0,0 +1,170 @@
+package com.googlecode.vkapi.domain.user;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.apache.commons.lang3.Validate;
+
+/**
+ * Builder for {@link VkUserBatch}. Users are added one by one: each one is
+ * started with {@link #startUser(int)}, then its fields are set in any
+ * order, and the fields which were not set are <code>null</code>. String
+ * fields may be copied straight from a char buffer, such as the one of a
+ * json parser, so no strings are created while filling the batch.
+ *
+ * @see VkUserBatch
+ */
+public class VkUserBatchBuilder {
+
+    // average lengths of the values, for sizing the arenas
+    private static final int NAME_LENGTH = 8;
+    private static final int URL_LENGTH = 64;
+    private static final int BDATE_LENGTH = 9;
+
+    private int[] ids;
+    private byte[] sex;
+    private final BitSet deactivated = new BitSet();
+    private final StringArena firstNames;
+    private final StringArena lastNames;
+    private final StringArena photos;
+    private final StringArena avatars;
+    private final StringArena bdates;
+    private final StringArena abouts;
+    private int size;
+    // users visible to the built batches, which must not be changed in place
+    private int sharedSize;
+
+    private VkUserBatchBuilder(int expectedSize) {
+        int capacity = Math.max(expectedSize, 16);
+        this.ids = new int[capacity];
+        this.sex = new byte[capacity];
+        this.firstNames = new StringArena(capacity, NAME_LENGTH);
+        this.lastNames = new StringArena(capacity, NAME_LENGTH);
+        this.photos = new StringArena(capacity, URL_LENGTH);
+        this.avatars = new StringArena(capacity, URL_LENGTH);
+        this.bdates = new StringArena(capacity, BDATE_LENGTH);
+        this.abouts = new StringArena(0, 0);
+    }
+
+    public static VkUserBatchBuilder userBatch() {
+        return new VkUserBatchBuilder(16);
+    }
+
+    public static VkUserBatchBuilder withExpectedSize(int expectedSize) {
+        return new VkUserBatchBuilder(expectedSize);
+    }
+
+    /**
+     * Starts the next user, which fields are set by the following calls
+     */
+    public VkUserBatchBuilder startUser(int vkUserId) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            sex = Arrays.copyOf(sex, size * 2);
+        }
+        ids[size] = vkUserId;
+        sex[size] = -1;
+        size++;
+        return this;
+    }
+
+    /**
+     * Adds the user with all its fields
+     */
+    public VkUserBatchBuilder add(VkUser user) {
+        startUser(user.getVkUserId());
+        int row = current();
+        firstNames.set(row, user.getFirstName());
+        lastNames.set(row, user.getLastName());
+        photos.set(row, user.getPhoto());
+        avatars.set(row, user.getAvatar());
+        bdates.set(row, user.getBdate());
+        abouts.set(row, user.getAbout());
+        return setSex(user.getSex()).setDeactivated(user.isDeactivated());
+    }
+
+    /**
+     * Overrides the id given to {@link #startUser(int)}, for sources where
+     * the id is not the first field
+     */
+    public VkUserBatchBuilder setVkUserId(int vkUserId) {
+        unshare();
+        ids[current()] = vkUserId;
+        return this;
+    }
+
+    /**
+     * @param sex -1 for unknown, 0 for female, 1 for male
+     */
+    public VkUserBatchBuilder setSex(int sex) {
+        Validate.inclusiveBetween(-1, 6, sex, "sex must be between -1 and 6, got %d", sex);
+        unshare();
+        this.sex[current()] = (byte) sex;
+        return this;
+    }
+
+    public VkUserBatchBuilder setDeactivated(boolean isDeactivated) {
+        deactivated.set(current(), isDeactivated);
+        return this;
+    }
+
+    public VkUserBatchBuilder setFirstName(char[] chars, int offset, int length) {
+        firstNames.set(current(), chars, offset, length);
+        return this;
+    }
+
+    public VkUserBatchBuilder setLastName(char[] chars, int offset, int length) {
+        lastNames.set(current(), chars, offset, length);
+        return this;
+    }
+
+    public VkUserBatchBuilder setPhoto(char[] chars, int offset, int length) {
+        photos.set(current(), chars, offset, length);
+        return this;
+    }
+
+    public VkUserBatchBuilder setAvatar(char[] chars, int offset, int length) {
+        avatars.set(current(), chars, offset, length);
+        return this;
+    }
+
+    public VkUserBatchBuilder setBdate(char[] chars, int offset, int length) {
+        bdates.set(current(), chars, offset, length);
+        return this;
+    }
+
+    public VkUserBatchBuilder setAbout(char[] chars, int offset, int length) {
+        abouts.set(current(), chars, offset, length);
+        return this;
+    }
+
+    private void unshare() {
+        if (current() < sharedSize) {
+            ids = ids.clone();
+            sex = sex.clone();
+            sharedSize = 0;
+        }
+    }
+
+    private int current() {
+        Validate.validState(size > 0, "startUser must be called before setting the fields");
+        return size - 1;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public VkUserBatch build() {
+        StringArena[] columns = { firstNames, lastNames, photos, avatars, bdates, abouts };
+        for (StringArena column : columns) {
+            column.fillNulls(size);
+        }
+
+        // arrays are shared with the batch until a user visible to it changes
+        sharedSize = size;
+        return new VkUserBatch(size, ids, sex, (BitSet) deactivated.clone(), firstNames.snapshot(),
+                lastNames.snapshot(), photos.snapshot(), avatars.snapshot(), bdates.snapshot(), abouts.snapshot());
+    }
+
+}
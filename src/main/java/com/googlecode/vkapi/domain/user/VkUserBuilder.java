@@ -1,5 +1,9 @@
 package com.googlecode.vkapi.domain.user;
 
+import org.apache.commons.lang3.Validate;
+
+import com.googlecode.vkapi.domain.CompactStrings;
+
 /**
  * Builder for {@link VkUser} class
  * 
@@ -18,6 +22,7 @@ public class VkUserBuilder {
     private int sex;
     private String about;
     private boolean isDeactivated;
+    private CompactStrings compactStrings;
 
     private VkUserBuilder(int vkUserId) {
         this.vkUserId = vkUserId;
@@ -48,7 +53,12 @@ public class VkUserBuilder {
         return this;
     }
 
+	/**
+	 * @param sex -1 for unknown, 0 for female, 1 for male; values up to 6 are
+	 * accepted
+	 */
 	public VkUserBuilder setSex(int sex) {
+		Validate.inclusiveBetween(-1, 6, sex, "sex must be between -1 and 6, got %d", sex);
 		this.sex = sex;
         return this;
 	}
@@ -63,6 +73,19 @@ public class VkUserBuilder {
 		return this;
 	}
 
+    /**
+     * Makes the user share its strings with other users built with the same
+     * tables: names and birthday are deduplicated, and photo urls keep only
+     * the part after the shared prefix
+     * 
+     * @param compactStrings tables shared by the users kept together
+     */
+    public VkUserBuilder compactWith(CompactStrings compactStrings) {
+        Validate.notNull(compactStrings, "Expected compactStrings not to be null");
+        this.compactStrings = compactStrings;
+        return this;
+    }
+
     public VkUser build() {
         return new VkUser(this);
     }
@@ -102,4 +125,8 @@ public class VkUserBuilder {
 	public boolean isDeactivated() {
 		return isDeactivated;
 	}
+
+	public CompactStrings getCompactStrings() {
+		return compactStrings;
+	}
 }
@@ -21,6 +21,11 @@ public class VkException extends Exception {
         this.error = null;
     }
 
+    public VkException(String message, Throwable cause) {
+        super(message, cause);
+        this.error = null;
+    }
+
     public VkException(VkErrorResponse error) {
         super("Attached error: " + error);
         this.error = error;
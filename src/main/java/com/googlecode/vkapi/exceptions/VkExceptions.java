@@ -54,16 +54,49 @@ public final class VkExceptions {
      * @see VkErrorResponse
      */
     public static void throwAppropriate(VkErrorResponse error, OAuthToken authToken) throws VkException {
+        throw appropriate(error, authToken);
+    }
+
+    /**
+     * Same as {@link #throwAppropriate(VkErrorResponse, OAuthToken)}, but
+     * returns the exception instead of throwing it, e.g. for completing a
+     * future with it
+     * 
+     * @param error to be wrapped in exception
+     * @param authToken with which the error was obtained
+     * @return exception of appropriate type
+     */
+    public static VkException appropriate(VkErrorResponse error, OAuthToken authToken) {
         switch (error.getError()) {
             case EXPIRED_AUTH_TOKEN:
-                throw new VkTokenExpiredException(error, authToken);
+                return new VkTokenExpiredException(error, authToken);
 
             case APPLICATION_BLOCKED:
-                throw new VkApplicatioBlockedException(error, authToken);
+                return new VkApplicatioBlockedException(error, authToken);
 
             default:
-                throw new VkException(error);
+                return new VkException(error);
+        }
+    }
+
+    /**
+     * Short name of the reason of the failure for counting the failures, e.g.
+     * in metrics
+     * 
+     * @param exception to be named
+     * @return name of {@link VkErrorCode} if vk.com returned an error, "IO"
+     * if vk.com couldn't be reached, "HTTP_" and the status for http errors,
+     * and "OTHER" for the rest
+     */
+    public static String reasonOf(VkException exception) {
+        if (exception instanceof VkIOException) {
+            int status = ((VkIOException) exception).getStatusCode();
+            return status == 0 ? "IO" : "HTTP_" + status;
+        }
+        if (exception.getError() != null) {
+            return exception.getError().getError().name();
         }
+        return "OTHER";
     }
 
 }
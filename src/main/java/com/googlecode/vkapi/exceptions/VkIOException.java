@@ -0,0 +1,30 @@
+package com.googlecode.vkapi.exceptions;
+
+import java.io.IOException;
+
+import org.apache.http.client.HttpResponseException;
+
+/**
+ * Thrown when vk.com can't be reached or answers with http error, so the
+ * request failed before vk.com could return any result
+ * 
+ * @see VkException
+ */
+@SuppressWarnings("serial")
+public class VkIOException extends VkException {
+
+    public VkIOException(String message, IOException cause) {
+        super(message + ": " + cause, cause);
+    }
+
+    /**
+     * @return http status of the response, or 0 if there was no response
+     */
+    public int getStatusCode() {
+        if (getCause() instanceof HttpResponseException) {
+            return ((HttpResponseException) getCause()).getStatusCode();
+        }
+        return 0;
+    }
+
+}
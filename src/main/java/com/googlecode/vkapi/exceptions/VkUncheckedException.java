@@ -0,0 +1,24 @@
+package com.googlecode.vkapi.exceptions;
+
+/**
+ * Carries {@link VkException} through the interfaces which can't throw
+ * checked exceptions, such as {@link java.util.Iterator}
+ * 
+ * @see VkException
+ */
+@SuppressWarnings("serial")
+public class VkUncheckedException extends RuntimeException {
+
+    public VkUncheckedException(VkException cause) {
+        super(cause.getMessage(), cause);
+    }
+
+    /**
+     * @return the original exception
+     */
+    @Override
+    public synchronized VkException getCause() {
+        return (VkException) super.getCause();
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.googlecode.vkapi.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+
+/**
+ * Measurements of one method of vk.com api collected by
+ * {@link SimpleVkMetrics}
+ */
+public class MethodMetrics {
+
+    private final String method;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<RequestPhase, LatencyHistogram> phases = new EnumMap<RequestPhase, LatencyHistogram>(
+            RequestPhase.class);
+    private final ConcurrentMap<String, AtomicLong> errors = new ConcurrentHashMap<String, AtomicLong>();
+
+    MethodMetrics(String method) {
+        this.method = method;
+        // filled once, so reading it from many threads is safe
+        for (RequestPhase phase : RequestPhase.values()) {
+            phases.put(phase, new LatencyHistogram());
+        }
+    }
+
+    void recordError(VkException exception) {
+        String reason = VkExceptions.reasonOf(exception);
+        AtomicLong counter = errors.get(reason);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = errors.putIfAbsent(reason, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return amount of the requests, successful or not
+     */
+    public long getRequests() {
+        return latency.getCount();
+    }
+
+    /**
+     * @return total time of the requests
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * @param phase of the requests
+     * @return time spent in the phase by the requests where it took place
+     */
+    public LatencyHistogram getLatency(RequestPhase phase) {
+        return phases.get(phase);
+    }
+
+    /**
+     * @return amount of the failed requests by reason, see
+     * {@link VkExceptions#reasonOf(VkException)}
+     */
+    public Map<String, Long> getErrors() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : errors.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(method).append(": ").append(latency);
+        for (Map.Entry<RequestPhase, LatencyHistogram> phase : phases.entrySet()) {
+            if (phase.getValue().getCount() > 0) {
+                result.append("\n  ").append(phase.getKey()).append(": ").append(phase.getValue());
+            }
+        }
+        if (!errors.isEmpty()) {
+            result.append("\n  errors: ").append(getErrors());
+        }
+        return result.toString();
+    }
+
+}
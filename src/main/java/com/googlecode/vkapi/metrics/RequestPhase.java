@@ -0,0 +1,41 @@
+package com.googlecode.vkapi.metrics;
+
+/**
+ * Parts of the time spent on one request to vk.com
+ */
+public enum RequestPhase {
+
+    /**
+     * Waiting for the rate limit of the token to allow the request
+     */
+    SCHEDULE,
+
+    /**
+     * Waiting for a free connection in the pool
+     */
+    LEASE,
+
+    /**
+     * Connecting if needed, sending the request and waiting for the headers
+     * of the response
+     */
+    NETWORK,
+
+    /**
+     * Reading and decompressing the body of the response
+     */
+    BODY_READ,
+
+    /**
+     * Tokenizing the json. For responses read straight from the stream it
+     * includes building the domain objects, which happens in the same pass
+     */
+    PARSE,
+
+    /**
+     * Building the domain objects from the response which was read as a whole
+     * before, e.g. the access token
+     */
+    CONVERSION;
+
+}
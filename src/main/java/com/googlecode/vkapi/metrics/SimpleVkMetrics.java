@@ -0,0 +1,73 @@
+package com.googlecode.vkapi.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.vkapi.exceptions.VkException;
+
+/**
+ * {@link VkMetrics} which keeps the measurements in memory: counters of the
+ * requests and errors, and histograms of the latencies of each method and
+ * each phase of the requests
+ */
+public class SimpleVkMetrics implements VkMetrics {
+
+    private final ConcurrentMap<String, MethodMetrics> methods = new ConcurrentHashMap<String, MethodMetrics>();
+
+    @Override
+    public void recordRequest(String method, long nanos) {
+        metricsOf(method).getLatency().record(nanos);
+    }
+
+    @Override
+    public void recordPhase(String method, RequestPhase phase, long nanos) {
+        metricsOf(method).getLatency(phase).record(nanos);
+    }
+
+    @Override
+    public void recordError(String method, VkException exception) {
+        metricsOf(method).recordError(exception);
+    }
+
+    private MethodMetrics metricsOf(String method) {
+        MethodMetrics metrics = methods.get(method);
+        if (metrics != null) {
+            return metrics;
+        }
+
+        MethodMetrics created = new MethodMetrics(method);
+        MethodMetrics existing = methods.putIfAbsent(method, created);
+        return existing != null ? existing : created;
+    }
+
+    /**
+     * @param method of vk.com api, such as "users.get"
+     * @return measurements of the method, or <code>null</code> if it wasn't
+     * called
+     */
+    public MethodMetrics getMethod(String method) {
+        return methods.get(method);
+    }
+
+    /**
+     * @return measurements of all the called methods by their names
+     */
+    public Map<String, MethodMetrics> getMethods() {
+        return new TreeMap<String, MethodMetrics>(methods);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        for (MethodMetrics metrics : getMethods().values()) {
+            if (result.length() > 0) {
+                result.append('\n');
+            }
+            result.append(metrics);
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.googlecode.vkapi.metrics;
+
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+
+/**
+ * Receives measurements of the requests to vk.com, e.g. for exporting them
+ * to a monitoring system. The methods are called on the threads performing
+ * the requests, so they should be thread-safe and fast.<br>
+ * <br>
+ *
+ * Methods are named as in vk.com api, such as "users.get" or "wall.get", and
+ * "access_token" for authorization
+ *
+ * @see SimpleVkMetrics
+ */
+public interface VkMetrics {
+
+    /**
+     * Ignores all the measurements. When it is used, nothing is measured at
+     * all
+     */
+    VkMetrics NOOP = new VkMetrics() {
+        @Override
+        public void recordRequest(String method, long nanos) {
+        }
+
+        @Override
+        public void recordPhase(String method, RequestPhase phase, long nanos) {
+        }
+
+        @Override
+        public void recordError(String method, VkException exception) {
+        }
+    };
+
+    /**
+     * Called once for each request, successful or not
+     * 
+     * @param method of vk.com api
+     * @param nanos total time of the request
+     */
+    void recordRequest(String method, long nanos);
+
+    /**
+     * Called for each phase of the request which took place
+     * 
+     * @param method of vk.com api
+     * @param phase of the request
+     * @param nanos time spent in the phase
+     */
+    void recordPhase(String method, RequestPhase phase, long nanos);
+
+    /**
+     * Called for each failed request in addition to
+     * {@link #recordRequest(String, long)}
+     * 
+     * @param method of vk.com api
+     * @param exception thrown by the request, see
+     * {@link VkExceptions#reasonOf(VkException)} for grouping them
+     */
+    void recordError(String method, VkException exception);
+
+}
@@ -0,0 +1,45 @@
+package com.googlecode.vkapi;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.IntIdSetBuilder;
+
+import junit.framework.TestCase;
+
+public class CacheWeightsTest extends TestCase {
+
+    public void testMapIsWeighedByItsEntries() {
+        Map<Integer, IntIdSet> mutualFriends = new LinkedHashMap<Integer, IntIdSet>();
+        for (int target = 1; target <= 100; target++) {
+            IntIdSetBuilder ids = IntIdSetBuilder.withExpectedSize(500);
+            for (int id = 0; id < 500; id++) {
+                ids.add(target * 1000 + id);
+            }
+            mutualFriends.put(target, ids.build());
+        }
+
+        long weight = CacheWeights.of("key", Collections.unmodifiableMap(mutualFriends));
+
+        assertTrue("weight " + weight, weight > 100 * 500 * 4);
+    }
+
+    public void testEmptyMapIsLight() {
+        assertTrue(CacheWeights.of("", Collections.emptyMap()) < 128);
+    }
+
+    public void testIntIdSetIsWeighedBySize() {
+        int[] ids = new int[1000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+
+        long small = CacheWeights.of("", IntIdSet.of(1, 2, 3));
+        long large = CacheWeights.of("", IntIdSet.of(ids));
+
+        assertTrue(large - small >= 4 * 997);
+    }
+
+}
@@ -0,0 +1,220 @@
+package com.googlecode.vkapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.VkOAuthToken;
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.group.VkGroupBuilder;
+import com.googlecode.vkapi.domain.message.VkWallMessage;
+import com.googlecode.vkapi.domain.photo.VkAlbum;
+import com.googlecode.vkapi.domain.photo.VkPhoto;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.exceptions.VkException;
+
+import junit.framework.TestCase;
+
+public class CachingVkApiTest extends TestCase {
+
+    private final OAuthToken token = new VkOAuthToken("token", 3600);
+    private final StubApi stub = new StubApi();
+    private final CachingVkApi api = new CachingVkApi(stub);
+
+    public void testBulkGroupsShareEntriesWithSingleLookups() throws VkException {
+        api.groupsInfo(new long[] { 1, 2, 3 }, token);
+        assertEquals(2, api.groupInfo(2, token).getGroupId());
+        assertEquals(0, stub.calls.get());
+
+        List<VkGroup> groups = api.groupsInfo(new long[] { 3, 4, 1 }, token);
+
+        assertEquals(Arrays.asList("[1, 2, 3]", "[4]"), stub.requested);
+        assertEquals(3, groups.size());
+        assertEquals(3, groups.get(0).getGroupId());
+        assertEquals(4, groups.get(1).getGroupId());
+        assertEquals(1, groups.get(2).getGroupId());
+    }
+
+    public void testMissingGroupsAreSkipped() throws VkException {
+        List<VkGroup> groups = api.groupsInfo(new long[] { 1, StubApi.MISSING, 2 }, token);
+
+        assertEquals(2, groups.size());
+        assertEquals(1, groups.get(0).getGroupId());
+        assertEquals(2, groups.get(1).getGroupId());
+    }
+
+    public void testBulkTargetsShareEntriesWithSinglePairs() throws VkException {
+        Map<Integer, IntIdSet> friends = api.mutualFriendIds(1, new int[] { 3, 2 }, token);
+        assertEquals(Arrays.asList(3, 2), new ArrayList<Integer>(friends.keySet()));
+
+        assertEquals(IntIdSet.of(3), api.mutualFriendIds(1, 3, token));
+        assertEquals(Arrays.asList("1:[3, 2]"), stub.requested);
+    }
+
+    public void testConcurrentMissLoadsOnce() throws Exception {
+        stub.release = new CountDownLatch(1);
+        Thread waiter = Thread.currentThread();
+
+        Thread leader = new Thread(() -> {
+            try {
+                api.groupInfo(7, token);
+            } catch (VkException e) {
+                // the waiter's result is checked
+            }
+        });
+        leader.start();
+        stub.started.await();
+
+        Thread releaser = new Thread(() -> {
+            while (waiter.getState() != Thread.State.WAITING) {
+                Thread.yield();
+            }
+            stub.release.countDown();
+        });
+        releaser.start();
+
+        try {
+            assertEquals(7, api.groupInfo(7, token).getGroupId());
+        } finally {
+            leader.join();
+            releaser.join();
+        }
+        assertEquals(1, stub.calls.get());
+    }
+
+    /**
+     * Answers with a group for any id except {@link #MISSING} and remembers
+     * the bulk requests
+     */
+    private static class StubApi implements VkUsersApi {
+        static final long MISSING = 404;
+
+        private final List<String> requested = Collections.synchronizedList(new ArrayList<String>());
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch release;
+
+        @Override
+        public VkGroup groupInfo(long groupId, OAuthToken authToken) throws VkException {
+            calls.incrementAndGet();
+            started.countDown();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new VkException("Interrupted");
+                }
+            }
+            return groupId != MISSING ? VkGroupBuilder.group(groupId).build() : null;
+        }
+
+        @Override
+        public List<VkGroup> groupsInfo(long[] groupIds, OAuthToken authToken) throws VkException {
+            requested.add(Arrays.toString(groupIds));
+            List<VkGroup> result = new ArrayList<VkGroup>();
+            for (long groupId : groupIds) {
+                if (groupId != MISSING) {
+                    result.add(VkGroupBuilder.group(groupId).build());
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public Map<Integer, IntIdSet> mutualFriendIds(int sourceId, int[] targetIds, OAuthToken authToken) {
+            requested.add(sourceId + ":" + Arrays.toString(targetIds));
+            Map<Integer, IntIdSet> result = new LinkedHashMap<Integer, IntIdSet>();
+            for (int targetId : targetIds) {
+                result.put(targetId, IntIdSet.of(targetId));
+            }
+            return result;
+        }
+
+        @Override
+        public Set<Integer> mutualFriends(int user1Id, int user2Id, OAuthToken authToken) {
+            return Collections.singleton(user2Id);
+        }
+
+        @Override
+        public List<VkUser> usersInfo(int[] userIds, OAuthToken authToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getAuthUri() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public OAuthToken authUser(String code) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public VkUser currentUserInfo(OAuthToken authToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkUser> getFriends(OAuthToken authToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkGroup> getGroups(OAuthToken authToken, int count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkWallMessage> lastGroupWallMessages(long groupId, WallFiler filter,
+                OAuthToken authToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkWallMessage> lastGroupWallMessages(long groupId, WallFiler filter, int limit,
+                OAuthToken authToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<Integer> groupUsers(long vkGroupId, OAuthToken authToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkPhoto> currentUserProfilePhotos(OAuthToken authToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkAlbum> albums(OAuthToken authToken) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkPhoto> get(OAuthToken authToken, long albumId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkPhoto> photosGetById(OAuthToken authToken, long[] photoIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<VkPhoto> photosGetById(OAuthToken authToken, String[] photoIds) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
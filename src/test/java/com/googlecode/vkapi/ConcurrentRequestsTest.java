@@ -0,0 +1,117 @@
+package com.googlecode.vkapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.VkOAuthToken;
+import com.googlecode.vkapi.exceptions.VkException;
+
+import junit.framework.TestCase;
+
+public class ConcurrentRequestsTest extends TestCase {
+
+    private final OAuthToken token = new VkOAuthToken("token", 3600);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Override
+    protected void tearDown() {
+        executor.shutdownNow();
+    }
+
+    public void testReturnsResultsInOrder() throws VkException {
+        ConcurrentRequests requests = new ConcurrentRequests(executor, 2);
+        List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 10; i++) {
+            int value = i;
+            tasks.add(tracked(() -> value));
+        }
+
+        List<Integer> results = requests.invokeAll(token, tasks);
+
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), results);
+        assertTrue(maxInFlight.get() <= 2);
+    }
+
+    public void testRequestStillInFlightKeepsItsPermitAfterFailure() throws Exception {
+        ConcurrentRequests requests = new ConcurrentRequests(executor, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        // a blocking http call doesn't stop on interrupt
+        Callable<Integer> stuck = tracked(() -> {
+            started.countDown();
+            awaitUninterruptibly(release);
+            return 0;
+        });
+        Callable<Integer> failing = () -> {
+            started.await();
+            throw new VkException("failed");
+        };
+        try {
+            requests.invokeAll(token, Arrays.asList(failing, stuck));
+            fail("expected VkException");
+        } catch (VkException e) {
+            // expected
+        }
+
+        executor.execute(() -> {
+            sleep(200);
+            release.countDown();
+        });
+        List<Callable<Integer>> next = new ArrayList<Callable<Integer>>();
+        for (int i = 0; i < 4; i++) {
+            next.add(tracked(() -> {
+                sleep(20);
+                return 1;
+            }));
+        }
+        requests.invokeAll(token, next);
+
+        assertTrue("in flight " + maxInFlight.get(), maxInFlight.get() <= 2);
+    }
+
+    private <T> Callable<T> tracked(Callable<T> task) {
+        return () -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                return task.call();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
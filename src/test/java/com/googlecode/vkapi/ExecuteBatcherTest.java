@@ -0,0 +1,127 @@
+package com.googlecode.vkapi;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.googlecode.vkapi.HttpClientWrapper.ContentHandler;
+import com.googlecode.vkapi.convert.JsonConverter;
+import com.googlecode.vkapi.convert.ResponseReaders;
+import com.googlecode.vkapi.convert.VkResponse;
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.VkOAuthToken;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkExceptions;
+import com.googlecode.vkapi.exceptions.VkIOException;
+
+import junit.framework.TestCase;
+
+public class ExecuteBatcherTest extends TestCase {
+
+    private final OAuthToken token = new VkOAuthToken("token", 3600);
+    private final UriCreator uriCreator = new UriCreator();
+    private final List<String> uris = new ArrayList<String>();
+    private ExecuteBatcher batcher;
+
+    @Override
+    protected void tearDown() {
+        if (batcher != null) {
+            batcher.close();
+        }
+    }
+
+    public void testErrorsAreGivenToFailedCallsInOrder() throws Exception {
+        batcher = batcher(4, "{\"response\":[[1,2],false,[3],false],\"execute_errors\":["
+                + "{\"method\":\"friends.getMutual\",\"error_code\":15,\"error_msg\":\"Access denied\"},"
+                + "{\"method\":\"friends.getMutual\",\"error_code\":18,\"error_msg\":\"User was deleted\"}]}");
+
+        List<CompletableFuture<IntIdSet>> results = submit(4);
+
+        assertEquals(IntIdSet.of(1, 2), results.get(0).get());
+        assertEquals(15, errorOf(results.get(1)).getError().getErrorCode());
+        assertEquals(IntIdSet.of(3), results.get(2).get());
+        assertEquals(18, errorOf(results.get(3)).getError().getErrorCode());
+        assertEquals(1, uris.size());
+        assertTrue(uris.get(0), uris.get(0).contains("/execute?"));
+    }
+
+    public void testCallsWithoutResultFail() throws Exception {
+        batcher = batcher(3, "{\"response\":[[1],false]}");
+
+        List<CompletableFuture<IntIdSet>> results = submit(3);
+
+        assertEquals(IntIdSet.of(1), results.get(0).get());
+        assertNull(errorOf(results.get(1)).getError());
+        assertNull(errorOf(results.get(2)).getError());
+    }
+
+    public void testErrorOfWholeRequestFailsAllCalls() throws Exception {
+        batcher = batcher(2, "{\"error\":{\"error_code\":10,\"error_msg\":\"Internal server error\"}}");
+
+        List<CompletableFuture<IntIdSet>> results = submit(2);
+
+        assertEquals(10, errorOf(results.get(0)).getError().getErrorCode());
+        assertEquals(10, errorOf(results.get(1)).getError().getErrorCode());
+    }
+
+    public void testSingleCallIsPerformedAlone() throws Exception {
+        batcher = batcher(1, "{\"response\":[5,6]}");
+
+        List<CompletableFuture<IntIdSet>> results = submit(1);
+
+        assertEquals(IntIdSet.of(5, 6), results.get(0).get());
+        assertEquals(1, uris.size());
+        assertTrue(uris.get(0), uris.get(0).contains("/friends.getMutual?"));
+    }
+
+    private List<CompletableFuture<IntIdSet>> submit(int count) {
+        List<CompletableFuture<IntIdSet>> results = new ArrayList<CompletableFuture<IntIdSet>>();
+        for (int i = 0; i < count; i++) {
+            String uri = uriCreator.mutualFriends(1, 100 + i, token);
+            results.add(batcher.submit(token, uri, ResponseReaders.INT_ID_SET));
+        }
+        return results;
+    }
+
+    private static VkException errorOf(CompletableFuture<?> result) throws InterruptedException {
+        try {
+            result.get();
+            fail("expected VkException");
+            return null;
+        } catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof VkException);
+            return (VkException) e.getCause();
+        }
+    }
+
+    /**
+     * @return batcher sending the calls at once and answering every request
+     * with the given json as {@link HttpVkApi} would
+     */
+    private ExecuteBatcher batcher(int maxCalls, final String json) {
+        ExecuteBatcher.Performer performer = new ExecuteBatcher.Performer() {
+            @Override
+            public <T> T perform(String uri, OAuthToken authToken, ContentHandler<VkResponse<T>> handler)
+                    throws VkException {
+                uris.add(uri);
+                VkResponse<T> response;
+                try {
+                    response = handler.handle(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+                } catch (IOException e) {
+                    throw new VkIOException("failed to read " + json, e);
+                }
+                if (response.isError()) {
+                    VkExceptions.throwAppropriate(response.getError(), authToken);
+                }
+                return response.getValue();
+            }
+        };
+        return new ExecuteBatcher(performer, uriCreator, JsonConverter.INSTANCE, 60000, maxCalls);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.googlecode.vkapi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.googlecode.vkapi.domain.group.VkGroup;
+import com.googlecode.vkapi.domain.group.VkGroupBuilder;
+import com.googlecode.vkapi.domain.user.IntIdSet;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.domain.user.VkUserBuilder;
+
+import junit.framework.TestCase;
+
+public class HttpVkApiTest extends TestCase {
+
+    public void testUsersInOrderOfIds() {
+        List<List<VkUser>> chunks = Arrays.asList(users(3, 1), users(2), Collections.<VkUser> emptyList());
+
+        List<VkUser> result = HttpVkApi.inOrderOf(new int[] { 1, 2, 4, 3 }, chunks);
+
+        List<Integer> ids = new ArrayList<Integer>();
+        for (VkUser user : result) {
+            ids.add(user.getVkUserId());
+        }
+        assertEquals(Arrays.asList(1, 2, 3), ids);
+    }
+
+    public void testTargetsInOrderOfIds() {
+        Map<Integer, IntIdSet> first = new LinkedHashMap<Integer, IntIdSet>();
+        first.put(30, IntIdSet.of(1));
+        first.put(10, IntIdSet.of(2, 3));
+        Map<Integer, IntIdSet> second = Collections.singletonMap(20, IntIdSet.empty());
+
+        Map<Integer, IntIdSet> result = HttpVkApi.inOrderOfTargets(new int[] { 10, 20, 30, 40 },
+                Arrays.asList(first, second));
+
+        assertEquals(Arrays.asList(10, 20, 30), new ArrayList<Integer>(result.keySet()));
+        assertEquals(IntIdSet.of(2, 3), result.get(10));
+        assertTrue(result.get(20).isEmpty());
+    }
+
+    public void testGroupsInOrderOfIds() {
+        List<Collection<VkGroup>> chunks = new ArrayList<Collection<VkGroup>>();
+        chunks.add(Arrays.asList(group(5000000000L), group(7)));
+        chunks.add(Arrays.asList(group(1)));
+
+        List<VkGroup> result = HttpVkApi.inOrderOfGroups(new long[] { 1, 2, 7, 5000000000L }, chunks);
+
+        assertEquals(3, result.size());
+        assertEquals(1, result.get(0).getGroupId());
+        assertEquals(7, result.get(1).getGroupId());
+        assertEquals(5000000000L, result.get(2).getGroupId());
+    }
+
+    private static List<VkUser> users(int... ids) {
+        List<VkUser> users = new ArrayList<VkUser>();
+        for (int id : ids) {
+            users.add(VkUserBuilder.user(id).build());
+        }
+        return users;
+    }
+
+    private static VkGroup group(long id) {
+        return VkGroupBuilder.group(id).build();
+    }
+
+}
@@ -0,0 +1,68 @@
+package com.googlecode.vkapi;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class QueryBuilderTest extends TestCase {
+
+    public void testKeepsSafeCharacters() {
+        assertEquals("az-AZ_09.~,", encode("az-AZ_09.~,"));
+    }
+
+    public void testEncodesAsciiAndCyrillic() {
+        assertEquals("a%20b%26c%3Dd%2B", encode("a b&c=d+"));
+        assertEquals("%D0%BF%D1%80%D0%B8", encode("при"));
+        assertEquals("%E2%82%AC", encode("€"));
+    }
+
+    public void testEncodesSurrogatePairAsOneCodePoint() {
+        assertEquals("%F0%9F%98%80", encode("😀"));
+        assertEquals("x%F0%9F%98%80y", encode("x😀y"));
+    }
+
+    public void testReplacesUnpairedSurrogates() {
+        assertEquals("%3F", encode("\uD83D"));
+        assertEquals("%3Fx", encode("\uD83Dx"));
+        assertEquals("x%3F", encode("x\uDE00"));
+        assertEquals("%3F%3F", encode("\uDE00\uD83D"));
+    }
+
+    public void testMatchesUtf8Bytes() {
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            char[] value = new char[random.nextInt(16)];
+            for (int j = 0; j < value.length; j++) {
+                // mostly around the surrogates to hit both pairs and unpaired ones
+                value[j] = random.nextBoolean() ? (char) (0xD7F0 + random.nextInt(0x830)) : (char) random.nextInt();
+            }
+            String string = new String(value);
+            assertEquals(string, encodeBytes(string), encode(string));
+        }
+    }
+
+    public void testEncodesNullAsString() {
+        assertEquals("null", encode(null));
+    }
+
+    private static String encode(String value) {
+        StringBuilder out = new StringBuilder();
+        QueryBuilder.encode(value, out);
+        return out.toString();
+    }
+
+    private static String encodeBytes(String value) {
+        StringBuilder out = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || "-_.~,".indexOf(c) >= 0) {
+                out.append(c);
+            } else {
+                out.append(String.format("%%%02X", b & 0xFF));
+            }
+        }
+        return out.toString();
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.googlecode.vkapi;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import com.googlecode.vkapi.convert.ResponseReaders;
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.VkOAuthToken;
+import com.googlecode.vkapi.domain.error.VkErrorResponse;
+import com.googlecode.vkapi.domain.user.VkUser;
+import com.googlecode.vkapi.exceptions.VkException;
+import com.googlecode.vkapi.exceptions.VkIOException;
+import com.googlecode.vkapi.exceptions.VkTokenExpiredException;
+
+import junit.framework.TestCase;
+
+public class RequestCoalescerTest extends TestCase {
+
+    private static final String URI = "https://api.vk.com/method/users.get?uids=1&access_token=token";
+
+    private final OAuthToken token = new VkOAuthToken("token", 3600);
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    public void testWithoutToken() {
+        assertEquals("https://api.vk.com/method/groups.getById?gids=1",
+                RequestCoalescer.withoutToken("https://api.vk.com/method/groups.getById?gids=1&access_token=abc"));
+        assertEquals("https://api.vk.com/method/groups.getById?gids=1",
+                RequestCoalescer.withoutToken("https://api.vk.com/method/groups.getById?access_token=abc&gids=1"));
+        assertEquals("https://api.vk.com/method/groups.getById?gids=1&my_access_token=abc",
+                RequestCoalescer.withoutToken("https://api.vk.com/method/groups.getById?gids=1&my_access_token=abc"));
+        assertEquals("https://api.vk.com/method/groups.getById?gids=1",
+                RequestCoalescer.withoutToken("https://api.vk.com/method/groups.getById?gids=1"));
+    }
+
+    public void testTokenIndependentMethods() {
+        assertTrue(RequestCoalescer.isTokenIndependent("https://api.vk.com/method/groups.getById?gids=1"));
+        assertTrue(RequestCoalescer.isTokenIndependent("https://api.vk.com/method/groups.getById"));
+        assertFalse(RequestCoalescer.isTokenIndependent("https://api.vk.com/method/groups.getMembers?gid=1"));
+        assertFalse(RequestCoalescer.isTokenIndependent("https://oauth.vk.com/access_token?code=1"));
+    }
+
+    public void testResultIsUnmodifiable() throws VkException {
+        List<VkUser> users = coalescer.call(URI, token, ResponseReaders.USER_LIST,
+                () -> new ArrayList<VkUser>());
+
+        try {
+            users.clear();
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testWaiterSharesResult() throws Exception {
+        List<VkUser> result = new ArrayList<VkUser>();
+        List<VkUser> waited = waitFor(() -> result);
+
+        assertEquals(result, waited);
+        try {
+            waited.clear();
+            fail("expected UnsupportedOperationException");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    public void testWaiterGetsItsOwnException() throws Exception {
+        VkException shared = new VkException(new VkErrorResponse(5, "User authorization failed"));
+        try {
+            waitFor(() -> {
+                throw shared;
+            });
+            fail("expected VkException");
+        } catch (VkTokenExpiredException e) {
+            assertNotSame(shared, e);
+            assertSame(shared, e.getCause());
+            assertSame(token, e.getAuthToken());
+        }
+    }
+
+    public void testWaiterKeepsIoErrorRetriable() {
+        IOException cause = new IOException("connection reset");
+        VkException exception = RequestCoalescer.forWaiter(new VkIOException("failed", cause), token);
+
+        assertTrue(exception instanceof VkIOException);
+        assertSame(cause, exception.getCause());
+    }
+
+    /**
+     * Performs the request in another thread and waits for it with an
+     * identical call
+     */
+    private List<VkUser> waitFor(RequestCoalescer.Request<List<VkUser>> request) throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread waiter = Thread.currentThread();
+
+        Thread leader = new Thread(() -> {
+            try {
+                coalescer.call(URI, token, ResponseReaders.USER_LIST, () -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new VkException("Interrupted");
+                    }
+                    return request.perform();
+                });
+            } catch (Exception e) {
+                // it's the waiter's exception that's checked
+            }
+        });
+        leader.start();
+        started.await();
+
+        Thread releaser = new Thread(() -> {
+            while (waiter.getState() != Thread.State.WAITING) {
+                Thread.yield();
+            }
+            release.countDown();
+        });
+        releaser.start();
+
+        try {
+            return coalescer.call(URI, token, ResponseReaders.USER_LIST, () -> {
+                throw new AssertionError("identical request performed twice");
+            });
+        } finally {
+            leader.join();
+            releaser.join();
+        }
+    }
+
+}
@@ -0,0 +1,157 @@
+package com.googlecode.vkapi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.googlecode.vkapi.domain.OAuthToken;
+import com.googlecode.vkapi.domain.VkOAuthToken;
+
+import junit.framework.TestCase;
+
+public class RequestSchedulerTest extends TestCase {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final OAuthToken busy = new VkOAuthToken("busy", 3600);
+    private final OAuthToken other = new VkOAuthToken("other", 3600);
+
+    public void testUnlimitedNeverDelays() {
+        RequestScheduler scheduler = RequestScheduler.unlimited();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(scheduler.schedule(busy).isDone());
+        }
+    }
+
+    public void testTokenIsSpacedByItsRate() {
+        RequestScheduler scheduler = new RequestScheduler(3, 3);
+        List<CompletableFuture<Void>> requests = enqueue(scheduler, busy, 4);
+
+        long next = scheduler.dispatch(0);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(requests.get(i).isDone());
+        }
+        assertFalse(requests.get(3).isDone());
+        assertTrue("next " + next, next > SECOND / 4 && next <= SECOND / 3);
+
+        assertEquals(Long.MAX_VALUE, scheduler.dispatch(next));
+        assertTrue(requests.get(3).isDone());
+    }
+
+    public void testTokensDontShareTheirLimits() {
+        RequestScheduler scheduler = new RequestScheduler(3, 3);
+        enqueue(scheduler, busy, 30);
+        CompletableFuture<Void> request = scheduler.enqueue(other);
+
+        scheduler.dispatch(0);
+        assertTrue(request.isDone());
+    }
+
+    public void testGlobalLimitAppliesToAllTokens() {
+        RequestScheduler scheduler = new RequestScheduler(100, 100, 3, 3);
+        for (int i = 0; i < 3; i++) {
+            scheduler.enqueue(new VkOAuthToken("token" + i, 3600));
+        }
+        CompletableFuture<Void> request = scheduler.enqueue(other);
+
+        long next = scheduler.dispatch(0);
+        assertFalse(request.isDone());
+        assertTrue("next " + next, next > SECOND / 4 && next <= SECOND / 3);
+    }
+
+    public void testGlobalSlotsGoRoundRobin() {
+        RequestScheduler scheduler = new RequestScheduler(100, 100, 3, 3);
+        List<CompletableFuture<Void>> requests = enqueue(scheduler, busy, 30);
+        requests.addAll(enqueue(scheduler, other, 2));
+
+        long[] allowed = run(scheduler, requests);
+
+        // the other token doesn't wait for the backlog of the busy one
+        assertTrue("allowed " + allowed[31], allowed[31] < 2 * SECOND);
+        assertWithinRate(allowed, 3, 3);
+    }
+
+    public void testBacklogOfSaturatedTokenDoesntExceedGlobalRate() {
+        RequestScheduler scheduler = new RequestScheduler(3, 3, 10, 10);
+        List<CompletableFuture<Void>> requests = enqueue(scheduler, busy, 60);
+        for (int i = 0; i < 10; i++) {
+            requests.addAll(enqueue(scheduler, new VkOAuthToken("token" + i, 3600), 6));
+        }
+
+        long[] allowed = run(scheduler, requests);
+
+        assertWithinRate(allowed, 10, 10);
+        for (int i = 60; i < allowed.length; i++) {
+            // 120 requests at 10 per second, the other tokens aren't put after
+            // the 20 seconds of the busy one
+            assertTrue("allowed " + allowed[i], allowed[i] < 14 * SECOND);
+        }
+    }
+
+    public void testCancelledRequestGivesItsSlotUp() {
+        RequestScheduler scheduler = new RequestScheduler(3, 3);
+        List<CompletableFuture<Void>> requests = enqueue(scheduler, busy, 4);
+        requests.get(0).cancel(false);
+
+        scheduler.dispatch(0);
+        assertTrue(requests.get(3).isDone());
+    }
+
+    public void testAcquireWaitsForTheSlot() throws InterruptedException {
+        RequestScheduler scheduler = new RequestScheduler(20, 1);
+        long start = System.nanoTime();
+        scheduler.acquire(busy);
+        scheduler.acquire(busy);
+        scheduler.acquire(busy);
+
+        long elapsed = System.nanoTime() - start;
+        assertTrue("elapsed " + elapsed, elapsed >= SECOND / 10 - SECOND / 100);
+    }
+
+    private static List<CompletableFuture<Void>> enqueue(RequestScheduler scheduler, OAuthToken token, int count) {
+        List<CompletableFuture<Void>> requests = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < count; i++) {
+            requests.add(scheduler.enqueue(token));
+        }
+        return requests;
+    }
+
+    /**
+     * Dispatches the requests in simulated time
+     *
+     * @return moments at which the requests were allowed
+     */
+    private static long[] run(RequestScheduler scheduler, List<CompletableFuture<Void>> requests) {
+        long[] allowed = new long[requests.size()];
+        long now = 0;
+        while (now != Long.MAX_VALUE) {
+            long next = scheduler.dispatch(now);
+            for (int i = 0; i < allowed.length; i++) {
+                if (allowed[i] == 0 && requests.get(i).isDone()) {
+                    allowed[i] = now + 1;
+                }
+            }
+            now = next;
+        }
+
+        for (int i = 0; i < allowed.length; i++) {
+            assertTrue("request " + i + " not allowed", allowed[i] > 0);
+            allowed[i]--;
+        }
+        return allowed;
+    }
+
+    private static void assertWithinRate(long[] allowed, int requestsPerSecond, int burst) {
+        for (long start : allowed) {
+            int inWindow = 0;
+            for (long moment : allowed) {
+                if (moment >= start && moment < start + SECOND) {
+                    inWindow++;
+                }
+            }
+            assertTrue(inWindow + " requests in a second", inWindow <= requestsPerSecond + burst);
+        }
+    }
+
+}
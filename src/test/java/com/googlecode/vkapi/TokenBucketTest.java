@@ -0,0 +1,54 @@
+package com.googlecode.vkapi;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TokenBucketTest extends TestCase {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final long INTERVAL = SECOND / 4;
+
+    public void testBurstGoesWithoutPause() {
+        TokenBucket bucket = new TokenBucket(4, 3);
+
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+        assertEquals(0, bucket.reserve(0));
+    }
+
+    public void testRequestsAfterBurstAreSpacedByInterval() {
+        TokenBucket bucket = new TokenBucket(4, 3);
+        for (int i = 0; i < 3; i++) {
+            bucket.reserve(0);
+        }
+
+        assertEquals(INTERVAL, bucket.reserve(0));
+        assertEquals(2 * INTERVAL, bucket.reserve(0));
+        assertEquals(3 * INTERVAL, bucket.reserve(0));
+    }
+
+    public void testSlotIsNotEarlierThanRequested() {
+        TokenBucket bucket = new TokenBucket(4, 1);
+
+        assertEquals(10 * SECOND, bucket.reserve(10 * SECOND));
+        assertEquals(10 * SECOND + INTERVAL, bucket.reserve(10 * SECOND));
+    }
+
+    public void testBurstIsRestoredAfterIdlePeriod() {
+        TokenBucket bucket = new TokenBucket(4, 2);
+        bucket.reserve(0);
+        bucket.reserve(0);
+        assertFalse(bucket.isIdle(0));
+
+        assertTrue(bucket.isIdle(SECOND));
+        assertEquals(SECOND, bucket.reserve(SECOND));
+        assertEquals(SECOND, bucket.reserve(SECOND));
+        assertEquals(SECOND + INTERVAL, bucket.reserve(SECOND));
+    }
+
+    public void testNewBucketIsIdle() {
+        assertTrue(new TokenBucket(3, 3).isIdle(0));
+    }
+
+}
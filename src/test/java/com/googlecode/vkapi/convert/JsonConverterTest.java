@@ -0,0 +1,87 @@
+package com.googlecode.vkapi.convert;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.googlecode.vkapi.domain.user.VkUser;
+
+import junit.framework.TestCase;
+
+public class JsonConverterTest extends TestCase {
+
+    private final JsonConverter converter = JsonConverter.INSTANCE;
+
+    public void testReadsResponse() throws IOException {
+        VkResponse<List<VkUser>> response = converter.readResponse(
+                stream("{\"response\":[{\"uid\":1,\"first_name\":\"Pavel\"}]}"), ResponseReaders.USER_LIST);
+
+        assertFalse(response.isError());
+        assertEquals(1, response.getValue().get(0).getVkUserId());
+    }
+
+    public void testReadsError() throws IOException {
+        VkResponse<List<VkUser>> response = converter.readResponse(
+                stream("{\"error\":{\"error_code\":6,\"error_msg\":\"Too many requests\"}}"),
+                ResponseReaders.USER_LIST);
+
+        assertTrue(response.isError());
+        assertEquals(6, response.getError().getErrorCode());
+    }
+
+    public void testTruncatedResponseIsIoError() {
+        assertUnreadable("{\"response\":[{\"uid\":1,\"first_na");
+        assertUnreadable("");
+    }
+
+    public void testUnexpectedStructureFailsFast() {
+        assertUnexpected("{\"response\":{\"uid\":1}}");
+        assertUnexpected("[]");
+        assertUnexpected("{\"other\":1}");
+    }
+
+    public void testBrokenExecuteResponseIsIoError() {
+        try {
+            converter.readExecuteResponse(stream("{\"response\":[1,"));
+            fail("expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    public void testUnexpectedExecuteStructureFailsFast() throws IOException {
+        try {
+            converter.readExecuteResponse(stream("{\"response\":{}}"));
+            fail("expected IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    private void assertUnreadable(String json) {
+        try {
+            converter.readResponse(stream(json), ResponseReaders.USER_LIST);
+            fail("expected IOException for " + json);
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    private void assertUnexpected(String json) {
+        try {
+            converter.readResponse(stream(json), ResponseReaders.USER_LIST);
+            fail("expected IllegalArgumentException for " + json);
+        } catch (IllegalArgumentException e) {
+            // expected
+        } catch (IOException e) {
+            fail("well-formed json is not retried, got " + e);
+        }
+    }
+
+    private static InputStream stream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.googlecode.vkapi.domain.user;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import junit.framework.TestCase;
+
+public class IntIdSetTest extends TestCase {
+
+    public void testSortsAndDeduplicates() {
+        IntIdSet set = IntIdSet.of(5, 1, 3, 5, 1);
+
+        assertEquals(3, set.size());
+        assertTrue(Arrays.equals(new int[] { 1, 3, 5 }, set.toArray()));
+        assertTrue(set.contains(3));
+        assertFalse(set.contains(2));
+    }
+
+    public void testEmpty() {
+        assertTrue(IntIdSet.of().isEmpty());
+        assertSame(IntIdSet.empty(), IntIdSetBuilder.ids().build());
+        assertEquals(IntIdSet.empty(), IntIdSet.of(1).intersect(IntIdSet.of(2)));
+    }
+
+    public void testGetOutOfBounds() {
+        IntIdSet set = IntIdSet.of(1, 2);
+        assertEquals(2, set.get(1));
+        try {
+            set.get(2);
+            fail("expected IndexOutOfBoundsException");
+        } catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testIntersectAndUnion() {
+        IntIdSet left = IntIdSet.of(1, 2, 4, 8, 16);
+        IntIdSet right = IntIdSet.of(2, 3, 4, 16, 32);
+
+        assertEquals(IntIdSet.of(2, 4, 16), left.intersect(right));
+        assertEquals(3, left.intersectionSize(right));
+        assertEquals(IntIdSet.of(1, 2, 3, 4, 8, 16, 32), left.union(right));
+        assertEquals(left, left.union(IntIdSet.empty()));
+    }
+
+    public void testBuilderGrowsAndMerges() {
+        IntIdSetBuilder builder = IntIdSetBuilder.withExpectedSize(1);
+        for (int id = 1000; id > 0; id--) {
+            builder.add(id);
+        }
+        builder.addAll(IntIdSet.of(1, 1001));
+
+        IntIdSet set = builder.build();
+        assertEquals(1001, set.size());
+        assertEquals(1, set.get(0));
+        assertEquals(1001, set.get(1000));
+    }
+
+    public void testEqualsAndBoxedCopy() {
+        assertEquals(IntIdSet.of(1, 2), IntIdSet.of(2, 1));
+        assertEquals(IntIdSet.of(1, 2).hashCode(), IntIdSet.of(2, 1).hashCode());
+        assertFalse(IntIdSet.of(1, 2).equals(IntIdSet.of(1, 3)));
+        assertEquals(new LinkedHashSet<Integer>(Arrays.asList(1, 2)), IntIdSet.of(2, 1).toSet());
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.googlecode.vkapi.domain.user;
+
+import junit.framework.TestCase;
+
+public class StringArenaTest extends TestCase {
+
+    private final StringArena arena = new StringArena(4, 8);
+
+    public void testKeepsValuesAndNulls() {
+        arena.set(0, "first");
+        arena.set(2, "third");
+        arena.set(3, (String) null);
+
+        assertEquals(4, arena.size());
+        assertEquals("first", arena.get(0));
+        assertTrue(arena.isNull(1));
+        assertNull(arena.get(1));
+        assertEquals("third", arena.get(2));
+        assertNull(arena.get(3));
+    }
+
+    public void testReplacesLastRow() {
+        arena.set(0, "first");
+        arena.set(1, "second");
+        arena.set(1, "2");
+
+        assertEquals(2, arena.size());
+        assertEquals("first", arena.get(0));
+        assertEquals("2", arena.get(1));
+    }
+
+    public void testInflatesOnWideCharacter() {
+        arena.set(0, "latin ü");
+        arena.set(1, "привет");
+
+        assertEquals("latin ü", arena.get(0));
+        assertEquals("привет", arena.get(1));
+        assertTrue(arena.contentEquals(1, "привет"));
+        assertFalse(arena.contentEquals(1, "привед"));
+    }
+
+    public void testSnapshotKeepsReplacedRow() {
+        arena.set(0, "first");
+        arena.set(1, "second");
+        StringArena snapshot = arena.snapshot();
+
+        arena.set(1, "changed");
+        arena.set(2, "third");
+
+        assertEquals(2, snapshot.size());
+        assertEquals("second", snapshot.get(1));
+        assertEquals("changed", arena.get(1));
+        assertEquals("third", arena.get(2));
+    }
+
+    public void testSnapshotKeepsLatin1AfterInflating() {
+        arena.set(0, "first");
+        StringArena snapshot = arena.snapshot();
+
+        arena.set(0, "первый");
+
+        assertEquals("first", snapshot.get(0));
+        assertEquals("первый", arena.get(0));
+    }
+
+    public void testBlankValues() {
+        arena.set(0, " \t");
+        arena.set(1, " x ");
+
+        assertFalse(arena.isNotBlank(0));
+        assertTrue(arena.isNotBlank(1));
+    }
+
+}